@@ -0,0 +1,92 @@
+/*
+ * Copyright 2014-2016 Daniel Davison (http://github.com/ddavison) and Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package io.ddavison.conductor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One {@link Conductor} action of a test, as seen by a {@link ConductorListener}.
+ */
+public class Action {
+    private final Locomotive locomotive;
+    private final String name;
+    private final String target;
+    private final long startMillis = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+
+    private long durationNanos = -1;
+    private Throwable failure;
+
+    Action(Locomotive locomotive, String name, String target) {
+        this.locomotive = locomotive;
+        this.name = name;
+        this.target = target;
+    }
+
+    void finished(Throwable failure) {
+        this.durationNanos = System.nanoTime() - startNanos;
+        this.failure = failure;
+    }
+
+    /**
+     * @return The test running the action
+     */
+    public Locomotive getLocomotive() {
+        return locomotive;
+    }
+
+    /**
+     * @return The name of the action, e.g. <code>click</code>
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return What the action is applied to, e.g. the locator or the url. <code>null</code> if nothing.
+     */
+    public String getTarget() {
+        return target;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    /**
+     * @return When the action started, from {@link System#nanoTime()}
+     */
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    /**
+     * @return How long the action took, -1 while it runs
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public long getDurationMillis() {
+        return durationNanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(durationNanos);
+    }
+
+    /**
+     * @return Why the action failed (an assertion or a WebDriver exception), <code>null</code> if it didn't.
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    @Override
+    public String toString() {
+        return target == null ? name : name + " " + target;
+    }
+}
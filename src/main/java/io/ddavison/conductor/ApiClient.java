@@ -0,0 +1,225 @@
+/*
+ * Copyright 2014-2016 Daniel Davison (http://github.com/ddavison) and Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package io.ddavison.conductor;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.Header;
+import org.apache.http.client.config.CookieSpecs;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPatch;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.cookie.ClientCookie;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.BasicCookieStore;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.cookie.BasicClientCookie;
+import org.apache.http.util.EntityUtils;
+import org.openqa.selenium.Cookie;
+import org.openqa.selenium.WebDriverException;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.fail;
+
+/**
+ * Calls the application's HTTP APIs as the user logged in the browser, to set up and verify data without going through
+ * the UI.<br><br>
+ * The cookies of the browser are sent with every call, and the cookies set (or deleted) by the response are set in the
+ * browser, so a session started on either side is shared by both.
+ * <blockquote>
+ * <code>
+ * navigateTo("/login").setText("#user", "admin").setText("#password", "secret").click("#login");<br>
+ * api().post("/api/orders", "{\"item\":\"book\"}").validateStatus(201);<br>
+ * navigateTo("/orders").validatePresent(".order");
+ * </code>
+ * </blockquote>
+ * Paths starting with <code>/</code> are resolved against the scheme, host and port of the page the browser is on (or of
+ * the url of the test, before any page is loaded), other paths against the page.  Cookies can only be shared with the
+ * domain of the page the browser is on.
+ * @see Locomotive#api()
+ */
+public class ApiClient {
+
+    private final Locomotive locomotive;
+    private final BasicCookieStore cookies = new BasicCookieStore();
+    private final CloseableHttpClient client;
+    private final Map<String, String> headers = new LinkedHashMap<String, String>();
+
+    ApiClient(Locomotive locomotive) {
+        this.locomotive = locomotive;
+        this.client = HttpClientBuilder.create()
+                .setDefaultCookieStore(cookies)
+                .setDefaultRequestConfig(RequestConfig.custom().setCookieSpec(CookieSpecs.STANDARD).build())
+                .build();
+    }
+
+    /**
+     * Send a header with every call, e.g. an api token or <code>Accept</code>.
+     * @param name the header
+     * @param value its value, <code>null</code> to stop sending it
+     * @return this
+     */
+    public ApiClient header(String name, String value) {
+        if (value == null) headers.remove(name);
+        else headers.put(name, value);
+        return this;
+    }
+
+    public ApiResponse get(String path) {
+        return execute(new HttpGet(), path, null);
+    }
+
+    public ApiResponse delete(String path) {
+        return execute(new HttpDelete(), path, null);
+    }
+
+    /**
+     * @param path the path or url
+     * @param json the body, sent as <code>application/json</code>
+     * @return The response
+     */
+    public ApiResponse post(String path, String json) {
+        return execute(new HttpPost(), path, json);
+    }
+
+    public ApiResponse put(String path, String json) {
+        return execute(new HttpPut(), path, json);
+    }
+
+    public ApiResponse patch(String path, String json) {
+        return execute(new HttpPatch(), path, json);
+    }
+
+    void close() {
+        try {
+            client.close();
+        } catch (IOException e) {
+            Locomotive.log.debug("Couldn't close the api client cleanly", e);
+        }
+    }
+
+    private ApiResponse execute(HttpRequestBase request, String path, String json) {
+        URI uri = resolve(path);
+        Action action = locomotive.begin("api", request.getMethod() + " " + uri.getPath());
+        try {
+            request.setURI(uri);
+            for (Map.Entry<String, String> header : headers.entrySet()) request.setHeader(header.getKey(), header.getValue());
+            if (json != null) ((HttpEntityEnclosingRequestBase) request).setEntity(new StringEntity(json, ContentType.APPLICATION_JSON));
+
+            Map<String, String> sent = fromBrowser(uri.getHost());
+            long start = System.nanoTime();
+            CloseableHttpResponse response = client.execute(request);
+            try {
+                Map<String, String> responseHeaders = new HashMap<String, String>();
+                for (Header header : response.getAllHeaders()) {
+                    String name = header.getName().toLowerCase();
+                    if (!responseHeaders.containsKey(name)) responseHeaders.put(name, header.getValue());
+                }
+                String body = response.getEntity() == null ? "" : EntityUtils.toString(response.getEntity(), "UTF-8");
+                ApiResponse apiResponse = new ApiResponse(request.getMethod() + " " + uri, response.getStatusLine().getStatusCode(),
+                        body, responseHeaders, (System.nanoTime() - start) / 1000000);
+                toBrowser(uri.getHost(), sent);
+                return apiResponse;
+            } finally {
+                response.close();
+            }
+        } catch (IOException e) {
+            action.finished(e);
+            fail("Couldn't call " + request.getMethod() + " " + uri + ": " + e.getMessage());
+            return null;
+        } catch (Throwable t) {
+            action.finished(t);
+            throw t;
+        } finally {
+            locomotive.end(action);
+        }
+    }
+
+    private URI resolve(String path) {
+        if (path.contains("://")) return URI.create(path);
+
+        URI page = URI.create(locomotive.driver.getCurrentUrl());
+        // e.g. about:blank
+        if (page.getHost() == null && StringUtils.isNotEmpty(locomotive.baseUrl)) page = URI.create(locomotive.baseUrl);
+        return page.resolve(path);
+    }
+
+    /**
+     * Replace the cookies of the client with those of the browser.
+     * @return The cookies sent, by name
+     */
+    private Map<String, String> fromBrowser(String host) {
+        cookies.clear();
+        Map<String, String> sent = new HashMap<String, String>();
+        Set<Cookie> browserCookies;
+        try {
+            browserCookies = locomotive.driver.manage().getCookies();
+        } catch (WebDriverException x) {
+            return sent;
+        }
+
+        for (Cookie cookie : browserCookies) {
+            BasicClientCookie copy = new BasicClientCookie(cookie.getName(), cookie.getValue());
+            String domain = StringUtils.isEmpty(cookie.getDomain()) ? host : cookie.getDomain();
+            if (domain.startsWith(".")) {
+                copy.setDomain(domain.substring(1));
+                copy.setAttribute(ClientCookie.DOMAIN_ATTR, domain);
+            } else {
+                copy.setDomain(domain);
+            }
+            copy.setPath(StringUtils.isEmpty(cookie.getPath()) ? "/" : cookie.getPath());
+            copy.setExpiryDate(cookie.getExpiry());
+            copy.setSecure(cookie.isSecure());
+            cookies.addCookie(copy);
+            sent.put(cookie.getName(), cookie.getValue());
+        }
+        return sent;
+    }
+
+    /**
+     * Set the cookies changed by the response in the browser, and delete those it expired.
+     */
+    private void toBrowser(String host, Map<String, String> sent) {
+        Map<String, String> kept = new HashMap<String, String>();
+        for (org.apache.http.cookie.Cookie cookie : cookies.getCookies()) {
+            if (cookie.isExpired(new Date())) continue;
+            kept.put(cookie.getName(), cookie.getValue());
+            if (cookie.getValue().equals(sent.get(cookie.getName()))) continue;
+
+            // a cookie without a domain attribute is for the host only, and must be set as such.
+            String domain = cookie instanceof ClientCookie && ((ClientCookie) cookie).containsAttribute(ClientCookie.DOMAIN_ATTR)
+                    ? cookie.getDomain() : null;
+            try {
+                locomotive.driver.manage().addCookie(new Cookie(cookie.getName(), cookie.getValue(), domain,
+                        cookie.getPath(), cookie.getExpiryDate(), cookie.isSecure()));
+            } catch (WebDriverException x) {
+                Locomotive.log.warn(String.format("Couldn't set cookie %s in the browser, is it on a page of %s? %s",
+                        cookie.getName(), host, x.getMessage()));
+            }
+        }
+        for (String name : sent.keySet()) {
+            if (!kept.containsKey(name)) locomotive.driver.manage().deleteCookieNamed(name);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2014-2016 Daniel Davison (http://github.com/ddavison) and Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package io.ddavison.conductor;
+
+import java.util.Map;
+
+import static org.junit.Assert.fail;
+
+/**
+ * The response of an {@link ApiClient} call, read in full.
+ */
+public class ApiResponse {
+
+    private final String request;
+    private final int status;
+    private final String body;
+    private final Map<String, String> headers;
+    private final long durationMillis;
+
+    ApiResponse(String request, int status, String body, Map<String, String> headers, long durationMillis) {
+        this.request = request;
+        this.status = status;
+        this.body = body;
+        this.headers = headers;
+        this.durationMillis = durationMillis;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    /**
+     * @param name the header, in any case
+     * @return Its first value, <code>null</code> if absent
+     */
+    public String getHeader(String name) {
+        return headers.get(name.toLowerCase());
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public ApiResponse validateStatus(int expected) {
+        if (status != expected) fail(String.format("%s: expected status %d but was %d. Body: %s", request, expected, status, body));
+        return this;
+    }
+
+    /**
+     * Validate that the status is 2xx.
+     * @return this
+     */
+    public ApiResponse validateSuccess() {
+        if (status < 200 || status >= 300) fail(String.format("%s failed with status %d. Body: %s", request, status, body));
+        return this;
+    }
+
+    public ApiResponse validateBodyContains(String text) {
+        if (!body.contains(text)) fail(String.format("%s: expected the body to contain [%s] but was: %s", request, text, body));
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return request + " -> " + status;
+    }
+}
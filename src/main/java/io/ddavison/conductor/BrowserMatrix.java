@@ -0,0 +1,188 @@
+/*
+ * Copyright 2014-2016 Daniel Davison (http://github.com/ddavison) and Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package io.ddavison.conductor;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.runner.Description;
+import org.junit.runner.Runner;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runners.BlockJUnit4ClassRunner;
+import org.junit.runners.Suite;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.RunnerScheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a test class on several browsers at once.<br><br>
+ * <blockquote><code>
+ * &#64;RunWith(BrowserMatrix.class)<br>
+ * &#64;Config(browsers = { Browser.CHROME, Browser.FIREFOX, Browser.EDGE }, url = "http://localhost:8080")<br>
+ * public class CheckoutTest extends Locomotive { ... }
+ * </code></blockquote>
+ * <code>CONDUCTOR_BROWSERS=chrome,firefox</code> overrides the browsers of the class.  Each browser runs the whole class
+ * on its own thread, so the matrix takes about as long as its slowest browser.  Tests are reported per browser, e.g.
+ * <code>testCheckout[firefox]</code>, and a summary per browser is logged at the end.
+ */
+public class BrowserMatrix extends Suite {
+
+    private static final Logger log = LogManager.getLogger(BrowserMatrix.class);
+
+    public BrowserMatrix(Class<?> klass) throws InitializationError {
+        super(klass, runners(klass));
+        setScheduler(new ConcurrentScheduler(getChildren().size()));
+    }
+
+    private static List<Runner> runners(Class<?> klass) throws InitializationError {
+        Browser[] browsers = LocomotiveConfig.forClass(klass).browsers();
+        if (browsers.length == 0) {
+            throw new InitializationError("No browsers to run " + klass.getName() + " on, set @Config(browsers = ...) or CONDUCTOR_BROWSERS");
+        }
+
+        List<Runner> runners = new ArrayList<Runner>();
+        for (Browser browser : browsers) runners.add(new BrowserRunner(klass, browser));
+        return runners;
+    }
+
+    @Override
+    public void run(RunNotifier notifier) {
+        List<Summary> summaries = new ArrayList<Summary>();
+        for (Runner runner : getChildren()) {
+            Summary summary = new Summary(((BrowserRunner) runner).browser);
+            summaries.add(summary);
+            notifier.addListener(summary);
+        }
+        try {
+            super.run(notifier);
+        } finally {
+            StringBuilder sb = new StringBuilder("\n=== Browser matrix: " + getDescription().getDisplayName() + " ===\n");
+            for (Summary summary : summaries) {
+                notifier.removeListener(summary);
+                sb.append(summary).append('\n');
+            }
+            log.info(sb);
+        }
+    }
+
+    /**
+     * The test class, with every test run on one browser.
+     */
+    static class BrowserRunner extends BlockJUnit4ClassRunner {
+        final Browser browser;
+
+        BrowserRunner(Class<?> klass, Browser browser) throws InitializationError {
+            super(klass);
+            this.browser = browser;
+        }
+
+        @Override
+        protected String getName() {
+            return "[" + browser.moniker + "]";
+        }
+
+        @Override
+        protected String testName(FrameworkMethod method) {
+            return method.getName() + "[" + browser.moniker + "]";
+        }
+
+        @Override
+        public void run(RunNotifier notifier) {
+            LocomotiveConfig.overrideBrowser(browser);
+            try {
+                super.run(notifier);
+            } finally {
+                LocomotiveConfig.overrideBrowser(null);
+            }
+        }
+    }
+
+    /**
+     * One thread per browser.
+     */
+    private static class ConcurrentScheduler implements RunnerScheduler {
+        private final ExecutorService executor;
+
+        ConcurrentScheduler(int browsers) {
+            final AtomicInteger count = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(Math.max(1, browsers), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    return new Thread(r, "conductor-browser-matrix-" + count.incrementAndGet());
+                }
+            });
+        }
+
+        @Override
+        public void schedule(Runnable childStatement) {
+            executor.submit(childStatement);
+        }
+
+        @Override
+        public void finished() {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Counts the tests of one browser, recognized by the suffix of their name.
+     */
+    private static class Summary extends RunListener {
+        private final Browser browser;
+        private final String suffix;
+        private final AtomicInteger run = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicInteger ignored = new AtomicInteger();
+
+        Summary(Browser browser) {
+            this.browser = browser;
+            this.suffix = "[" + browser.moniker + "]";
+        }
+
+        @Override
+        public void testFinished(Description description) {
+            if (ours(description)) run.incrementAndGet();
+        }
+
+        @Override
+        public void testFailure(Failure failure) {
+            if (ours(failure.getDescription())) failed.incrementAndGet();
+        }
+
+        @Override
+        public void testIgnored(Description description) {
+            if (ours(description)) ignored.incrementAndGet();
+        }
+
+        private boolean ours(Description description) {
+            return description.getMethodName() != null && description.getMethodName().endsWith(suffix);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("\t%-18s run=%d failed=%d ignored=%d", browser.moniker, run.get(), failed.get(), ignored.get());
+        }
+    }
+}
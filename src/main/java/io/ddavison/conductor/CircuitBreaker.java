@@ -0,0 +1,312 @@
+/*
+ * Copyright 2014-2016 Daniel Davison (http://github.com/ddavison) and Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package io.ddavison.conductor;
+
+import io.ddavison.conductor.util.JvmUtil;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.SessionNotCreatedException;
+import org.openqa.selenium.remote.UnreachableBrowserException;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Stops starting tests against an environment that is down, instead of letting each of them time out on its own.<br><br>
+ * Every test checks the hub and the application it uses before starting.  The first time a hub or application is seen
+ * it is probed (the hub's <code>/status</code>, the application's url); an environment that refuses the connection,
+ * can't be resolved, doesn't answer in time, or answers 502, 503 or 504, trips the breaker at once.  Other failures of
+ * the probe (e.g. a certificate the JVM doesn't trust, a proxy only the browser uses) don't tell it's down, they are
+ * left to the browser.  Applications tested through a hub aren't probed: the nodes may reach an
+ * application the test JVM can't, so only navigations that fail count for them.  Otherwise it trips after
+ * <code>CONDUCTOR_CIRCUIT_BREAKER_THRESHOLD</code> (default {@value #DEFAULT_THRESHOLD}) infrastructure failures in a row:
+ * connections refused or timing out, hubs failing to create sessions, pages that can't be reached.<br><br>
+ * While tripped, tests fail right away with the cause.  After <code>CONDUCTOR_CIRCUIT_BREAKER_COOLDOWN</code> seconds
+ * (default {@value #DEFAULT_COOLDOWN_SECONDS}) one test is let through as a probe: if it reaches the environment the
+ * breaker closes and the run resumes, if not it stays tripped for another cooldown.<br><br>
+ * On by default, <code>CONDUCTOR_CIRCUIT_BREAKER=false</code> turns it off.
+ */
+public class CircuitBreaker {
+
+    private static final Logger log = LogManager.getLogger(CircuitBreaker.class);
+
+    public static final int DEFAULT_THRESHOLD = 3;
+    public static final long DEFAULT_COOLDOWN_SECONDS = 30;
+    static final int PROBE_TIMEOUT_MILLIS = 5000;
+
+    private static CircuitBreaker instance;
+
+    private final int threshold;
+    private final long cooldownMillis;
+    private final Prober prober;
+    private final Map<String, Circuit> circuits = new HashMap<String, Circuit>();
+
+    public static boolean isEnabled() {
+        return !"false".equalsIgnoreCase(JvmUtil.getJvmProperty(Constants.JVM_CONDUCTOR_CIRCUIT_BREAKER));
+    }
+
+    public static synchronized CircuitBreaker get() {
+        if (instance == null) {
+            String threshold = JvmUtil.getJvmProperty(Constants.JVM_CONDUCTOR_CIRCUIT_BREAKER_THRESHOLD);
+            String cooldown = JvmUtil.getJvmProperty(Constants.JVM_CONDUCTOR_CIRCUIT_BREAKER_COOLDOWN);
+            instance = new CircuitBreaker(
+                    StringUtils.isEmpty(threshold) ? DEFAULT_THRESHOLD : Integer.parseInt(threshold.trim()),
+                    (StringUtils.isEmpty(cooldown) ? DEFAULT_COOLDOWN_SECONDS : Long.parseLong(cooldown.trim())) * 1000,
+                    new HttpProber());
+
+            Runtime.getRuntime().addShutdownHook(new Thread("conductor-circuit-breaker") {
+                @Override
+                public void run() {
+                    String report = instance.report();
+                    if (!report.isEmpty()) log.warn(report);
+                }
+            });
+        }
+        return instance;
+    }
+
+    CircuitBreaker(int threshold, long cooldownMillis, Prober prober) {
+        this.threshold = Math.max(1, threshold);
+        this.cooldownMillis = cooldownMillis;
+        this.prober = prober;
+    }
+
+    /**
+     * @param hub the url of a hub
+     * @return The name of its circuit.
+     */
+    public static String hub(String hub) {
+        return "hub " + hub;
+    }
+
+    /**
+     * @param url a url of the application
+     * @return The name of its circuit: one per scheme, host and port.
+     */
+    public static String application(String url) {
+        try {
+            URL parsed = new URL(url);
+            return "application " + parsed.getProtocol() + "://" + parsed.getAuthority();
+        } catch (IOException e) {
+            return "application " + url;
+        }
+    }
+
+    /**
+     * Let a test use the application.
+     * @param url the url of the application
+     * @param throughHub <code>true</code> if the browser runs on a hub's node, the application isn't probed then
+     * @throws OpenException if the application is known to be down
+     */
+    public void checkApplication(String url, boolean throughHub) {
+        check(application(url), throughHub ? null : url);
+    }
+
+    /**
+     * Let a test use an environment, probing it the first time.
+     * @param circuit the circuit of the environment, see {@link #hub(String)} and {@link #application(String)}
+     * @param url what to probe the first time, <code>null</code> not to probe it
+     * @throws OpenException if the environment is known to be down
+     */
+    public void check(String circuit, String url) {
+        Circuit state;
+        boolean probe = false;
+        synchronized (this) {
+            state = circuits.get(circuit);
+            if (state == null) {
+                state = new Circuit();
+                circuits.put(circuit, state);
+                probe = true;
+            }
+        }
+
+        // the probe is done by the first test only; the others wait for its result.
+        synchronized (state) {
+            if (probe) {
+                String down = url == null ? null : prober.probe(url);
+                state.probed = true;
+                state.notifyAll();
+                if (down != null) {
+                    log.warn("Pre-flight check of the " + circuit + " failed: " + down);
+                    trip(state, down);
+                }
+            }
+            while (!state.probed) {
+                try {
+                    state.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+
+            long now = System.currentTimeMillis();
+            if (state.openUntil == 0) return;
+            if (now >= state.openUntil) {
+                // half open: this test is the probe, the next ones wait for a cooldown again unless it succeeds.
+                state.openUntil = now + cooldownMillis;
+                log.info("Probing the " + circuit + " with a test");
+                return;
+            }
+            state.rejected++;
+            throw new OpenException(String.format("The %s is down, not starting the test: %s (%d failures in a row, retrying in %ds)",
+                    circuit, state.cause, state.failures, (state.openUntil - now + 999) / 1000));
+        }
+    }
+
+    /**
+     * The environment was reached.
+     * @param circuit the circuit of the environment
+     */
+    public void success(String circuit) {
+        Circuit state = circuit(circuit);
+        synchronized (state) {
+            if (state.openUntil != 0) log.info("The " + circuit + " is back, resuming");
+            state.failures = 0;
+            state.openUntil = 0;
+            state.cause = null;
+        }
+    }
+
+    /**
+     * The environment couldn't be reached, or failed.  Ignored unless it's a failure of the infrastructure.
+     * @param circuit the circuit of the environment
+     * @param failure what happened
+     */
+    public void failure(String circuit, Throwable failure) {
+        if (!isInfrastructure(failure)) return;
+
+        Circuit state = circuit(circuit);
+        synchronized (state) {
+            state.failures++;
+            String cause = cause(failure);
+            if (state.openUntil != 0 || state.failures >= threshold) trip(state, cause);
+            else state.cause = cause;
+        }
+    }
+
+    private void trip(Circuit state, String cause) {
+        state.failures = Math.max(state.failures, 1);
+        state.cause = cause;
+        state.openUntil = System.currentTimeMillis() + cooldownMillis;
+    }
+
+    private synchronized Circuit circuit(String circuit) {
+        Circuit state = circuits.get(circuit);
+        if (state == null) {
+            state = new Circuit();
+            state.probed = true;
+            circuits.put(circuit, state);
+        }
+        return state;
+    }
+
+    /**
+     * @return The circuits that tripped, and how many tests they stopped.  Empty if none did.
+     */
+    public synchronized String report() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Circuit> entry : new TreeMap<String, Circuit>(circuits).entrySet()) {
+            Circuit state = entry.getValue();
+            synchronized (state) {
+                if (state.rejected == 0) continue;
+                sb.append(String.format("\t%-60s %d tests not started, %s: %s\n", entry.getKey(), state.rejected,
+                        state.openUntil == 0 ? "recovered" : "still down", state.cause));
+            }
+        }
+        return sb.length() == 0 ? "" : "\n=== Environments down ===\n" + sb;
+    }
+
+    /**
+     * @return <code>true</code> if the failure is the environment's, not the test's.
+     */
+    static boolean isInfrastructure(Throwable failure) {
+        for (Throwable t = failure; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof ConnectException || t instanceof UnknownHostException || t instanceof NoRouteToHostException
+                    || t instanceof SocketTimeoutException || t instanceof UnreachableBrowserException
+                    || t instanceof SessionNotCreatedException) {
+                return true;
+            }
+            String message = t.getMessage();
+            // how browsers report pages that can't be reached.
+            if (message != null && (message.contains("net::ERR_") || message.contains("about:neterror")
+                    || message.contains("Error forwarding the new session"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String cause(Throwable failure) {
+        Throwable root = failure;
+        while (root.getCause() != null && root.getCause() != root) root = root.getCause();
+        String message = StringUtils.isEmpty(root.getMessage()) ? "" : ": " + root.getMessage().split("\n")[0];
+        return root.getClass().getSimpleName() + message;
+    }
+
+    private static class Circuit {
+        boolean probed;
+        int failures;
+        // 0 while closed
+        long openUntil;
+        String cause;
+        int rejected;
+    }
+
+    /**
+     * Checks that an environment answers.
+     */
+    interface Prober {
+        /**
+         * @return <code>null</code> if it's up, why it's down otherwise.
+         */
+        String probe(String url);
+    }
+
+    static class HttpProber implements Prober {
+        @Override
+        public String probe(String url) {
+            if (StringUtils.isEmpty(url)) return null;
+            try {
+                HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+                connection.setConnectTimeout(PROBE_TIMEOUT_MILLIS);
+                connection.setReadTimeout(PROBE_TIMEOUT_MILLIS);
+                try {
+                    int status = connection.getResponseCode();
+                    return status == 502 || status == 503 || status == 504 ? "HTTP " + status + " from " + url : null;
+                } finally {
+                    connection.disconnect();
+                }
+            } catch (IOException e) {
+                if (isInfrastructure(e)) return e.getClass().getSimpleName() + ": " + e.getMessage();
+                log.debug("Couldn't probe " + url + ", leaving it to the browser: " + e);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Thrown instead of starting a test against an environment that is down.
+     */
+    public static class OpenException extends IllegalStateException {
+        public OpenException(String message) {
+            super(message);
+        }
+    }
+}
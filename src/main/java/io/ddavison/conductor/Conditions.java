@@ -0,0 +1,153 @@
+/*
+ * Copyright 2014-2016 Daniel Davison (http://github.com/ddavison) and Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package io.ddavison.conductor;
+
+import com.google.common.base.Predicate;
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.support.ui.ExpectedCondition;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Conditions that are evaluated in a single poll, so that waiting for several of them costs one poll cycle instead of
+ * one per condition.
+ */
+public class Conditions {
+
+    /**
+     * Finds the element and checks that it can be interacted with, in one round trip.
+     * Arguments: the locator strategy and its value.  Returns the element, or null.
+     */
+    private static final String INTERACTABLE_SCRIPT =
+            "var strategy = arguments[0], value = arguments[1], e = null;" +
+            "switch (strategy) {" +
+            "  case 'cssSelector': e = document.querySelector(value); break;" +
+            "  case 'id': e = document.getElementById(value); break;" +
+            "  case 'name': e = document.getElementsByName(value)[0]; break;" +
+            "  case 'className': e = document.getElementsByClassName(value)[0]; break;" +
+            "  case 'tagName': e = document.getElementsByTagName(value)[0]; break;" +
+            "  case 'xpath': e = document.evaluate(value, document, null, XPathResult.FIRST_ORDERED_NODE_TYPE, null).singleNodeValue; break;" +
+            "}" +
+            "if (!e || e.nodeType !== 1 || e.disabled) return null;" +
+            "var style = window.getComputedStyle(e);" +
+            "if (style.visibility === 'hidden' || style.visibility === 'collapse') return null;" +
+            // no boxes: display:none on the element or one of its ancestors
+            "if (e.tagName !== 'OPTION' && e.getClientRects().length === 0) return null;" +
+            "return e;";
+
+    private static final List<String> SCRIPTABLE_STRATEGIES = Arrays.asList("cssSelector", "id", "name", "className", "tagName", "xpath");
+
+    /**
+     * A condition that holds when every one of the given conditions holds in the same poll.
+     * Conditions are evaluated in order, and the poll stops at the first one that doesn't hold.
+     * @param conditions the conditions
+     * @return The combined condition
+     */
+    public static ExpectedCondition<Boolean> all(final ExpectedCondition<?>... conditions) {
+        return new ExpectedCondition<Boolean>() {
+            @Override
+            public Boolean apply(WebDriver driver) {
+                for (ExpectedCondition<?> condition : conditions) {
+                    Object value = condition.apply(driver);
+                    if (value == null || Boolean.FALSE.equals(value)) return false;
+                }
+                return true;
+            }
+
+            @Override
+            public String toString() {
+                return "all of " + Arrays.toString(conditions);
+            }
+        };
+    }
+
+    /**
+     * Adapts a custom predicate, to combine it with {@link #all(ExpectedCondition[])}.
+     * @param predicate the predicate
+     * @return The condition
+     */
+    public static ExpectedCondition<Boolean> when(final Predicate<WebDriver> predicate) {
+        return new ExpectedCondition<Boolean>() {
+            @Override
+            public Boolean apply(WebDriver driver) {
+                return predicate.apply(driver);
+            }
+
+            @Override
+            public String toString() {
+                return String.valueOf(predicate);
+            }
+        };
+    }
+
+    /**
+     * A condition that holds when the element is present, visible and enabled, evaluated by a single script per poll.
+     * Locators that can't be evaluated in the page (e.g. link text) and browsers without javascript fall back to
+     * finding the element and checking it with WebDriver calls, still within the same poll.
+     * @param by the locator
+     * @return The condition, whose value is the element once it holds
+     */
+    public static ExpectedCondition<WebElement> interactable(final By by) {
+        final String[] locator = split(by);
+
+        return new ExpectedCondition<WebElement>() {
+            private boolean scriptable = locator != null;
+
+            @Override
+            public WebElement apply(WebDriver driver) {
+                if (scriptable && driver instanceof JavascriptExecutor) {
+                    try {
+                        Object element = ((JavascriptExecutor) driver).executeScript(INTERACTABLE_SCRIPT, locator[0], locator[1]);
+                        return element instanceof WebElement ? (WebElement) element : null;
+                    } catch (WebDriverException x) {
+                        scriptable = false; // e.g. javascript disabled, fall back for the rest of the wait.
+                    }
+                }
+
+                List<WebElement> elements = driver.findElements(by);
+                if (elements.isEmpty()) return null;
+                WebElement element = elements.get(0);
+                try {
+                    return element.isDisplayed() && element.isEnabled() ? element : null;
+                } catch (StaleElementReferenceException x) {
+                    return null;
+                }
+            }
+
+            @Override
+            public String toString() {
+                return "element to be interactable: " + by;
+            }
+        };
+    }
+
+    /**
+     * @param by e.g. <code>By.cssSelector: #login</code>
+     * @return the strategy and the value, e.g. <code>["cssSelector", "#login"]</code>. <code>null</code> if the locator
+     * can't be evaluated by {@link #INTERACTABLE_SCRIPT}.
+     */
+    static String[] split(By by) {
+        String description = by.toString();
+        if (!description.startsWith("By.")) return null;
+
+        int colon = description.indexOf(": ");
+        if (colon < 0) return null;
+
+        String strategy = description.substring(3, colon);
+        if (!SCRIPTABLE_STRATEGIES.contains(strategy)) return null;
+        return new String[] { strategy, description.substring(colon + 2) };
+    }
+}
@@ -293,6 +293,31 @@ public interface Conductor<Test> {
      */
     Test validateFalse(boolean condition);
 
+    /**
+     * Validates that the page looks like a baseline screenshot.<br><br>
+     * Baselines are PNGs named <code>&lt;name&gt;.png</code>, in <code>src/test/resources/baselines</code> (or <code>CONDUCTOR_BASELINES</code>).
+     * When the baseline doesn't exist yet (or <code>CONDUCTOR_UPDATE_BASELINES=true</code>), the screenshot becomes the baseline.
+     * @param name The name of the baseline
+     * @param ignore Elements whose area is not compared (e.g. clocks, ads)
+     * @return The implementing class for fluency
+     */
+    Test validateScreenshot(String name, By... ignore);
+
+    /**
+     * Validates that the current page loaded (load event end, since the navigation started) within a budget.
+     * @param millis the budget, in milliseconds
+     * @return The implementing class for fluency
+     */
+    Test validatePageLoadUnder(long millis);
+
+    /**
+     * Validates a page timing metric of the current page against a budget.
+     * @param metric e.g. {@link io.ddavison.conductor.timing.PageTiming#FIRST_CONTENTFUL_PAINT}
+     * @param millis the budget, in milliseconds
+     * @return The implementing class for fluency
+     */
+    Test validatePageTimingUnder(String metric, long millis);
+
     /**
      * Set and validate the text in a single step
      * @param css/by The element to set and validate the text of.
@@ -435,4 +460,18 @@ public interface Conductor<Test> {
      * @return The implementing class for fluency
      */
     Test waitForCondition(ExpectedCondition<?> condition, long timeOutInSeconds, long sleepInMillis);
+
+    /**
+     * Wait for several conditions, all evaluated in the same poll
+     * @param conditions the conditions to wait for
+     * @return The implementing class for fluency
+     */
+    Test waitForConditions(ExpectedCondition<?>... conditions);
+
+    /**
+     * Wait for an element to be present, visible and enabled
+     * @param by the element
+     * @return The element
+     */
+    WebElement waitForInteractable(By by);
 }
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2014-2016 Daniel Davison (http://github.com/ddavison) and Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package io.ddavison.conductor;
+
+import com.gargoylesoftware.htmlunit.Cache;
+import com.gargoylesoftware.htmlunit.WebClient;
+import io.ddavison.conductor.util.JvmUtil;
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.htmlunit.HtmlUnitDriver;
+
+/**
+ * The in-process browser of {@link Browser#HTMLUNIT}: no browser binary, no driver process.<br><br>
+ * Every session in the JVM shares one cache of scripts and stylesheets, so only the first test downloads and parses
+ * them.  Images are never downloaded.
+ * <ul>
+ *     <li><code>CONDUCTOR_HTMLUNIT_JS=false</code> - turn javascript off, for server-rendered pages (default on)</li>
+ *     <li><code>CONDUCTOR_HTMLUNIT_CACHE_SIZE</code> - how many responses the shared cache keeps (default {@value #DEFAULT_CACHE_SIZE})</li>
+ * </ul>
+ * Script errors of the page don't fail the test, as they wouldn't in a real browser.
+ */
+public class ConductorHtmlUnitDriver extends HtmlUnitDriver {
+
+    public static final int DEFAULT_CACHE_SIZE = 500;
+
+    private static final Cache cache = new Cache();
+
+    static {
+        cache.setMaxSize(JvmUtil.getJvmIntProperty(Constants.JVM_CONDUCTOR_HTMLUNIT_CACHE_SIZE, DEFAULT_CACHE_SIZE));
+    }
+
+    public ConductorHtmlUnitDriver(Capabilities capabilities) {
+        super(capabilities);
+    }
+
+    /**
+     * @return <code>false</code> if javascript is turned off with <code>CONDUCTOR_HTMLUNIT_JS=false</code>.
+     */
+    public static boolean isJavascriptEnabledByDefault() {
+        return !"false".equalsIgnoreCase(JvmUtil.getJvmProperty(Constants.JVM_CONDUCTOR_HTMLUNIT_JS));
+    }
+
+    /**
+     * @return The cache shared by every session.
+     */
+    public static Cache getSharedCache() {
+        return cache;
+    }
+
+    @Override
+    protected WebClient modifyWebClient(WebClient client) {
+        // called from the constructor of HtmlUnitDriver: only static state is available here.
+        client.setCache(cache);
+        client.getOptions().setDownloadImages(false);
+        client.getOptions().setThrowExceptionOnScriptError(false);
+        return client;
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright 2014-2016 Daniel Davison (http://github.com/ddavison) and Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package io.ddavison.conductor;
+
+/**
+ * Notified of every {@link Conductor} action (clicks, text entry, navigation, validations...) of every test in the JVM.
+ * Register with {@link Locomotive#addListener(ConductorListener)}.<br><br>
+ * Listeners are called on the test thread, inline with the test: keep them fast, and hand heavy work to another thread.
+ */
+public interface ConductorListener {
+
+    /**
+     * @param action the action about to run
+     */
+    void actionStarted(Action action);
+
+    /**
+     * @param action the action that just ran, with its duration and, if it failed, its failure
+     */
+    void actionFinished(Action action);
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2014-2016 Daniel Davison (http://github.com/ddavison) and Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package io.ddavison.conductor;
+
+import io.ddavison.conductor.impact.ImpactFilter;
+import io.ddavison.conductor.impact.ImpactIndex;
+import io.ddavison.conductor.impact.ImpactSelector;
+import io.ddavison.conductor.util.JvmUtil;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.runner.Description;
+import org.junit.runner.manipulation.NoTestsRemainException;
+import org.junit.runner.manipulation.Sorter;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runners.Suite;
+import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.RunnerBuilder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A suite that orders its tests so that consecutive tests can share a browser session.<br><br>
+ * <blockquote><code>
+ * &#64;RunWith(ConductorSuite.class)<br>
+ * &#64;Suite.SuiteClasses({ LoginTest.class, CartTest.class, CheckoutTest.class })<br>
+ * public class AllTests {}
+ * </code></blockquote>
+ * Test classes are grouped by browser and hub (see {@link LocomotiveConfig#sessionKey()}), then by starting url, so that
+ * with <code>CONDUCTOR_REUSE_SESSIONS=true</code> a session is switched only once per group, and the starting page is
+ * still in the browser cache.  Within those groups the declared order is kept.<br><br>
+ * With <code>CONDUCTOR_FAILURES_FIRST=true</code>, the tests that failed on the previous run (recorded in
+ * <code>CONDUCTOR_FAILURE_HISTORY</code>, default {@value Constants#DEFAULT_FAILURE_HISTORY}) run before everything else.<br><br>
+ * With <code>CONDUCTOR_IMPACT_CHANGES</code> set, only the tests impacted by the changes run, see {@link ImpactSelector}.
+ */
+public class ConductorSuite extends Suite {
+
+    private static final Logger log = LogManager.getLogger(ConductorSuite.class);
+
+    private final FailureHistory history;
+
+    public ConductorSuite(Class<?> klass, RunnerBuilder builder) throws InitializationError {
+        super(klass, builder);
+
+        String file = JvmUtil.getJvmProperty(Constants.JVM_CONDUCTOR_FAILURE_HISTORY);
+        history = new FailureHistory(new File(StringUtils.isEmpty(file) ? Constants.DEFAULT_FAILURE_HISTORY : file));
+
+        boolean failuresFirst = Boolean.parseBoolean(JvmUtil.getJvmProperty(Constants.JVM_CONDUCTOR_FAILURES_FIRST));
+        sort(new Sorter(new SessionOrder(failuresFirst ? history : null)));
+
+        ImpactSelector impact = ImpactSelector.fromConfiguration();
+        if (impact != null) {
+            File index = new File(StringUtils.defaultIfEmpty(JvmUtil.getJvmProperty(Constants.JVM_CONDUCTOR_IMPACT_INDEX), Constants.DEFAULT_IMPACT_INDEX));
+            try {
+                filter(new ImpactFilter(impact, ImpactIndex.load(index)));
+            } catch (NoTestsRemainException e) {
+                log.info("No test is impacted by " + JvmUtil.getJvmProperty(Constants.JVM_CONDUCTOR_IMPACT_CHANGES));
+            }
+        }
+    }
+
+    @Override
+    public void run(RunNotifier notifier) {
+        RunListener listener = history.listener();
+        notifier.addListener(listener);
+        try {
+            super.run(notifier);
+        } finally {
+            notifier.removeListener(listener);
+            history.save();
+        }
+    }
+
+    /**
+     * Orders tests by failures of the previous run (if any), then session key, then starting url.
+     */
+    static class SessionOrder implements Comparator<Description> {
+        private final FailureHistory history;
+        private final Map<Class<?>, LocomotiveConfig> configs = new HashMap<Class<?>, LocomotiveConfig>();
+
+        /**
+         * @param history the failures to run first, <code>null</code> to keep failures in their place
+         */
+        SessionOrder(FailureHistory history) {
+            this.history = history;
+        }
+
+        @Override
+        public int compare(Description a, Description b) {
+            if (history != null) {
+                int failed = Boolean.compare(history.failed(b), history.failed(a));
+                if (failed != 0) return failed;
+            }
+
+            LocomotiveConfig configA = config(a.getTestClass());
+            LocomotiveConfig configB = config(b.getTestClass());
+            if (configA == configB) return 0; // same class: keep the declared order
+
+            int session = key(configA).compareTo(key(configB));
+            if (session != 0) return session;
+            return url(configA).compareTo(url(configB));
+        }
+
+        private LocomotiveConfig config(Class<?> testClass) {
+            if (testClass == null) return null;
+            LocomotiveConfig config = configs.get(testClass);
+            if (config == null) {
+                config = LocomotiveConfig.forClass(testClass);
+                configs.put(testClass, config);
+            }
+            return config;
+        }
+
+        private static String key(LocomotiveConfig config) {
+            return config == null ? "" : config.sessionKey();
+        }
+
+        private static String url(LocomotiveConfig config) {
+            return config == null ? "" : config.url();
+        }
+    }
+
+    /**
+     * The tests that failed on the previous run, keyed by display name, and their classes.
+     */
+    static class FailureHistory {
+        private final File file;
+        private final Set<String> previous = new HashSet<String>();
+        private final Set<String> previousClasses = new HashSet<String>();
+        private final Map<String, String> current = new ConcurrentHashMap<String, String>();
+        private final Set<String> ran = Collections.synchronizedSet(new HashSet<String>());
+
+        FailureHistory(File file) {
+            this.file = file;
+            if (!file.isFile()) return;
+
+            Properties properties = new Properties();
+            try {
+                InputStream in = new FileInputStream(file);
+                try {
+                    properties.load(in);
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                log.warn("Couldn't read the failure history " + file + ": " + e.getMessage());
+            }
+            for (String test : properties.stringPropertyNames()) {
+                previous.add(test);
+                previousClasses.add(properties.getProperty(test));
+            }
+        }
+
+        boolean failed(Description description) {
+            if (description.getMethodName() != null) return previous.contains(description.getDisplayName());
+            return description.getClassName() != null && previousClasses.contains(description.getClassName());
+        }
+
+        RunListener listener() {
+            return new RunListener() {
+                @Override
+                public void testStarted(Description description) {
+                    ran.add(description.getDisplayName());
+                }
+
+                @Override
+                public void testFailure(Failure failure) {
+                    Description description = failure.getDescription();
+                    current.put(description.getDisplayName(), String.valueOf(description.getClassName()));
+                }
+            };
+        }
+
+        /**
+         * Keep the failures of this run, and the previous failures of tests that didn't run this time.
+         */
+        void save() {
+            Properties properties = new Properties();
+            properties.putAll(current);
+            Properties old = new Properties();
+            try {
+                if (file.isFile()) {
+                    InputStream in = new FileInputStream(file);
+                    try {
+                        old.load(in);
+                    } finally {
+                        in.close();
+                    }
+                }
+                for (String test : old.stringPropertyNames()) {
+                    if (!ran.contains(test)) properties.setProperty(test, old.getProperty(test));
+                }
+
+                File parent = file.getAbsoluteFile().getParentFile();
+                if (!parent.isDirectory() && !parent.mkdirs()) throw new IOException("Couldn't create " + parent);
+                OutputStream out = new FileOutputStream(file);
+                try {
+                    properties.store(out, "conductor tests that failed on the last run");
+                } finally {
+                    out.close();
+                }
+            } catch (IOException e) {
+                log.warn("Couldn't save the failure history " + file + ": " + e.getMessage());
+            }
+        }
+    }
+}
@@ -18,6 +18,11 @@ import java.lang.annotation.RetentionPolicy;
 public @interface Config {
     String url() default "";
     Browser browser() default Browser.NONE;
+
+    /**
+     * Run the test class on each of these browsers, concurrently, with <code>&#64;RunWith(BrowserMatrix.class)</code>.
+     */
+    Browser[] browsers() default {};
     String hub() default "";
     String baseUrl() default "";
     String path() default "";
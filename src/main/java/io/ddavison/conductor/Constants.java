@@ -7,9 +7,65 @@ public class Constants {
 
     public static final String JVM_CONDUCTOR_URL = "CONDUCTOR_URL";
     public static final String JVM_CONDUCTOR_BROWSER = "CONDUCTOR_BROWSER";
+    public static final String JVM_CONDUCTOR_BROWSERS = "CONDUCTOR_BROWSERS";
+    public static final String JVM_CONDUCTOR_SMOKE = "CONDUCTOR_SMOKE";
+    public static final String JVM_CONDUCTOR_HTMLUNIT_JS = "CONDUCTOR_HTMLUNIT_JS";
+    public static final String JVM_CONDUCTOR_HTMLUNIT_CACHE_SIZE = "CONDUCTOR_HTMLUNIT_CACHE_SIZE";
     public static final String JVM_CONDUCTOR_HUB = "CONDUCTOR_HUB";
     public static final String JVM_CONDUCTOR_BASE_URL = "CONDUCTOR_BASE_URL";
 
+    public static final String JVM_CONDUCTOR_HUB_MAX_CONNECTIONS = "CONDUCTOR_HUB_MAX_CONNECTIONS";
+    public static final String JVM_CONDUCTOR_HUB_CONNECT_TIMEOUT = "CONDUCTOR_HUB_CONNECT_TIMEOUT";
+    public static final String JVM_CONDUCTOR_HUB_SOCKET_TIMEOUT = "CONDUCTOR_HUB_SOCKET_TIMEOUT";
+    public static final String JVM_CONDUCTOR_HUB_COMPRESS_REQUESTS = "CONDUCTOR_HUB_COMPRESS_REQUESTS";
+
+    public static final String JVM_CONDUCTOR_SHARE_DRIVER_SERVICES = "CONDUCTOR_SHARE_DRIVER_SERVICES";
+
+    public static final String JVM_CONDUCTOR_PROFILE_TEMPLATES = "CONDUCTOR_PROFILE_TEMPLATES";
+    public static final String JVM_CONDUCTOR_PROFILE_DIR = "CONDUCTOR_PROFILE_DIR";
+    public static final String JVM_CONDUCTOR_WARMUP_URLS = "CONDUCTOR_WARMUP_URLS";
+
+    public static final String JVM_CONDUCTOR_ROUTER_PORT = "CONDUCTOR_ROUTER_PORT";
+    public static final String JVM_CONDUCTOR_ROUTER_MAX_SESSIONS = "CONDUCTOR_ROUTER_MAX_SESSIONS";
+    public static final String JVM_CONDUCTOR_ROUTER_QUEUE_TIMEOUT = "CONDUCTOR_ROUTER_QUEUE_TIMEOUT";
+
+    public static final String JVM_CONDUCTOR_CIRCUIT_BREAKER = "CONDUCTOR_CIRCUIT_BREAKER";
+    public static final String JVM_CONDUCTOR_CIRCUIT_BREAKER_THRESHOLD = "CONDUCTOR_CIRCUIT_BREAKER_THRESHOLD";
+    public static final String JVM_CONDUCTOR_CIRCUIT_BREAKER_COOLDOWN = "CONDUCTOR_CIRCUIT_BREAKER_COOLDOWN";
+
+    public static final String JVM_CONDUCTOR_TEST_TIMEOUT = "CONDUCTOR_TEST_TIMEOUT";
+    public static final String JVM_CONDUCTOR_COMMAND_TIMEOUT = "CONDUCTOR_COMMAND_TIMEOUT";
+
+    public static final String JVM_CONDUCTOR_BASELINES = "CONDUCTOR_BASELINES";
+    public static final String JVM_CONDUCTOR_UPDATE_BASELINES = "CONDUCTOR_UPDATE_BASELINES";
+
+    public static final String JVM_CONDUCTOR_PAGE_TIMING = "CONDUCTOR_PAGE_TIMING";
+    public static final String JVM_CONDUCTOR_WAIT_FOR_NETWORK_IDLE = "CONDUCTOR_WAIT_FOR_NETWORK_IDLE";
+    public static final String JVM_CONDUCTOR_ADAPTIVE_TIMEOUTS = "CONDUCTOR_ADAPTIVE_TIMEOUTS";
+    public static final String JVM_CONDUCTOR_LOCATOR_HISTORY = "CONDUCTOR_LOCATOR_HISTORY";
+
+    public static final String JVM_CONDUCTOR_REUSE_SESSIONS = "CONDUCTOR_REUSE_SESSIONS";
+    public static final String JVM_CONDUCTOR_MEMORY_MONITOR = "CONDUCTOR_MEMORY_MONITOR";
+    public static final String JVM_CONDUCTOR_MAX_SESSION_MEMORY = "CONDUCTOR_MAX_SESSION_MEMORY";
+    public static final String JVM_CONDUCTOR_MAX_HEAP_GROWTH = "CONDUCTOR_MAX_HEAP_GROWTH";
+    public static final String JVM_CONDUCTOR_FAILURES_FIRST = "CONDUCTOR_FAILURES_FIRST";
+    public static final String JVM_CONDUCTOR_FAILURE_HISTORY = "CONDUCTOR_FAILURE_HISTORY";
+
+    public static final String JVM_CONDUCTOR_IMPACT_INDEX = "CONDUCTOR_IMPACT_INDEX";
+    public static final String JVM_CONDUCTOR_IMPACT_CHANGES = "CONDUCTOR_IMPACT_CHANGES";
+
+    public static final String JVM_CONDUCTOR_TRACE = "CONDUCTOR_TRACE";
+    public static final String JVM_CONDUCTOR_FAILURE_ARTIFACTS = "CONDUCTOR_FAILURE_ARTIFACTS";
+
+    public static final String DEFAULT_BASELINES = "src/test/resources/baselines";
+    public static final String DEFAULT_SCREENSHOT_FAILURES = "target/conductor/screenshots";
+    public static final String DEFAULT_FAILURE_ARTIFACTS = "target/conductor/failures";
+    public static final String DEFAULT_FAILURE_HISTORY = ".conductor/failures.properties";
+    public static final String DEFAULT_IMPACT_INDEX = ".conductor/impact.index";
+    public static final String DEFAULT_LOCATOR_HISTORY = ".conductor/locators.properties";
+    public static final String DEFAULT_PROFILE_DIR = "target/conductor/profiles";
+    public static final String DEFAULT_TRACE = "target/conductor/trace.json";
+
     public static final String DEFAULT_PROPERTY_URL = "url";
     public static final String DEFAULT_PROPERTY_BROWSER = "browser";
     public static final String DEFAULT_PROPERTY_HUB = "hub";
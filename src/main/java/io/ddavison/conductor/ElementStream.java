@@ -0,0 +1,293 @@
+/*
+ * Copyright 2014-2016 Daniel Davison (http://github.com/ddavison) and Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package io.ddavison.conductor;
+
+import io.ddavison.conductor.trace.Tracer;
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WebElement;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The elements matching a locator, fetched lazily, a chunk at a time, as they are iterated over.<br><br>
+ * Each chunk is one script in the page that returns the next {@link #chunksOf(int) n} matches, so long lists are never
+ * pulled all at once, and a loop that stops early (<code>break</code>, {@link #first()}) stops fetching.  When the matches
+ * of the page run out, more can be loaded:
+ * <ul>
+ *     <li>{@link #scrollingForMore()} - scroll to the last match and wait for new ones, for infinite-scroll lists</li>
+ *     <li>{@link #nextPage(By)} - click "next" and wait for the next page of matches, for paginated lists</li>
+ * </ul>
+ * <blockquote><code>
+ * for (WebElement row : elements("#results tr").nextPage("a.next")) {<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;if (row.getText().contains("Order #1042")) break;<br>
+ * }
+ * </code></blockquote>
+ * Locators that can't be evaluated in the page (e.g. link text) are found with WebDriver, and sliced in chunks.
+ * @see Locomotive#elements(By)
+ */
+public class ElementStream implements Iterable<WebElement> {
+
+    public static final int DEFAULT_CHUNK = 50;
+
+    /**
+     * Finds every match of the locator into <code>all</code>.  Arguments: the locator strategy and its value.
+     */
+    private static final String FIND =
+            "var strategy = arguments[0], value = arguments[1], all = [];" +
+            "switch (strategy) {" +
+            "  case 'cssSelector': all = document.querySelectorAll(value); break;" +
+            "  case 'id': var e = document.getElementById(value); if (e) all = [e]; break;" +
+            "  case 'name': all = document.getElementsByName(value); break;" +
+            "  case 'className': all = document.getElementsByClassName(value); break;" +
+            "  case 'tagName': all = document.getElementsByTagName(value); break;" +
+            "  case 'xpath':" +
+            "    var found = document.evaluate(value, document, null, XPathResult.ORDERED_NODE_SNAPSHOT_TYPE, null);" +
+            "    for (var i = 0; i < found.snapshotLength; i++) all.push(found.snapshotItem(i));" +
+            "    break;" +
+            "}";
+
+    /**
+     * Arguments: the locator, the index of the first match to return and how many.
+     */
+    private static final String CHUNK_SCRIPT = FIND + "return Array.prototype.slice.call(all, arguments[2], arguments[2] + arguments[3]);";
+
+    private static final String COUNT_SCRIPT = FIND + "return all.length;";
+
+    /**
+     * Arguments: the locator.  Brings the last match into view, and the bottom of the page for lists loading on scroll.
+     */
+    private static final String SCROLL_SCRIPT = FIND +
+            "if (all.length) all[all.length - 1].scrollIntoView(false);" +
+            "window.scrollTo(0, Math.max(document.body.scrollHeight, document.documentElement.scrollHeight));";
+
+    private static final long POLL_MILLIS = 100;
+
+    private final Locomotive locomotive;
+    private final By by;
+    private final String[] locator;
+    private int chunk = DEFAULT_CHUNK;
+    private boolean scroll;
+    private By next;
+
+    ElementStream(Locomotive locomotive, By by) {
+        this.locomotive = locomotive;
+        this.by = by;
+        this.locator = Conditions.split(by);
+    }
+
+    /**
+     * @param size how many elements to fetch at once
+     * @return this
+     */
+    public ElementStream chunksOf(int size) {
+        if (size < 1) throw new IllegalArgumentException("Chunks of at least 1 element, not " + size);
+        this.chunk = size;
+        return this;
+    }
+
+    /**
+     * Once the matches of the page are iterated over, scroll down and wait for more, until none come.
+     * @return this
+     */
+    public ElementStream scrollingForMore() {
+        this.scroll = true;
+        return this;
+    }
+
+    public ElementStream nextPage(String css) {
+        return nextPage(By.cssSelector(css));
+    }
+
+    /**
+     * Once the matches of the page are iterated over, click the link to the next page and continue on it, until the
+     * link is gone or disabled.
+     * @param next the link to the next page
+     * @return this
+     */
+    public ElementStream nextPage(By next) {
+        this.next = next;
+        return this;
+    }
+
+    /**
+     * @return The first match, <code>null</code> if there's none.  Only the first chunk is fetched.
+     */
+    public WebElement first() {
+        Iterator<WebElement> elements = new Chunks(1);
+        return elements.hasNext() ? elements.next() : null;
+    }
+
+    @Override
+    public Iterator<WebElement> iterator() {
+        return new Chunks(chunk);
+    }
+
+    @Override
+    public String toString() {
+        return "elements " + by;
+    }
+
+    private class Chunks implements Iterator<WebElement> {
+        private final int size;
+        private final Deque<WebElement> buffer = new ArrayDeque<WebElement>();
+        // index of the next match to fetch on the current page.
+        private int offset;
+        private WebElement last;
+        private boolean exhausted;
+        private boolean scriptable = locator != null && locomotive.driver instanceof JavascriptExecutor;
+
+        Chunks(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!buffer.isEmpty()) return true;
+            if (exhausted) return false;
+
+            fetch();
+            if (buffer.isEmpty() && loadMore()) fetch();
+            if (buffer.isEmpty()) exhausted = true;
+            return !buffer.isEmpty();
+        }
+
+        @Override
+        public WebElement next() {
+            if (!hasNext()) throw new NoSuchElementException("No more " + by);
+            last = buffer.poll();
+            return last;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private void fetch() {
+            List<WebElement> found = slice(offset, size);
+            offset += found.size();
+            buffer.addAll(found);
+        }
+
+        @SuppressWarnings("unchecked")
+        private List<WebElement> slice(int from, int count) {
+            if (scriptable) try {
+                Object found = script(CHUNK_SCRIPT, from, count);
+                if (found instanceof List) return (List<WebElement>) found;
+            } catch (WebDriverException x) {
+                scriptable = false; // e.g. javascript disabled
+            }
+
+            List<WebElement> all = locomotive.driver.findElements(by);
+            if (from >= all.size()) return Collections.emptyList();
+            return all.subList(from, Math.min(all.size(), from + count));
+        }
+
+        private int count() {
+            if (scriptable) try {
+                return ((Number) script(COUNT_SCRIPT)).intValue();
+            } catch (WebDriverException x) {
+                scriptable = false;
+            }
+            return locomotive.driver.findElements(by).size();
+        }
+
+        private boolean loadMore() {
+            long start = System.nanoTime();
+            boolean loaded = false;
+            try {
+                if (next != null) loaded = clickNext();
+                else if (scroll) loaded = scrollDown();
+                return loaded;
+            } finally {
+                if (next != null || scroll) {
+                    Tracer.span(Tracer.WAIT, next != null ? "nextPage" : "scrollForMore", start, System.nanoTime(),
+                            "target", by, "loaded", loaded ? "true" : "false");
+                }
+            }
+        }
+
+        private boolean scrollDown() {
+            if (scriptable) {
+                script(SCROLL_SCRIPT);
+            } else if (last != null) {
+                locomotive.actions.moveToElement(last).perform();
+            }
+            final int before = offset;
+            return poll(new Check() {
+                @Override
+                public boolean holds() {
+                    return count() > before;
+                }
+            });
+        }
+
+        private boolean clickNext() {
+            List<WebElement> links = locomotive.driver.findElements(next);
+            if (links.isEmpty()) return false;
+            WebElement link = links.get(0);
+            if (!link.isDisplayed() || !link.isEnabled() || "true".equals(link.getAttribute("aria-disabled"))) return false;
+
+            final WebElement previous = last;
+            final int before = offset;
+            locomotive.click(next);
+
+            // a new page replaces the matches of this one, a "load more" button adds to them.
+            boolean loaded = poll(new Check() {
+                @Override
+                public boolean holds() {
+                    return stale(previous) || count() > before;
+                }
+            });
+            if (loaded && stale(previous)) offset = 0;
+            return loaded;
+        }
+
+        private boolean stale(WebElement element) {
+            if (element == null) return false;
+            try {
+                element.isEnabled();
+                return false;
+            } catch (StaleElementReferenceException x) {
+                return true;
+            }
+        }
+
+        private boolean poll(final Check check) {
+            return Polling.await(new Polling.Check<Boolean>() {
+                @Override
+                public Boolean poll() {
+                    return check.holds();
+                }
+            }, TimeUnit.SECONDS.toMillis(locomotive.MAX_TIMEOUT), POLL_MILLIS) != null;
+        }
+
+        private Object script(String script, Object... args) {
+            Object[] all = new Object[args.length + 2];
+            all[0] = locator[0];
+            all[1] = locator[1];
+            System.arraycopy(args, 0, all, 2, args.length);
+            return ((JavascriptExecutor) locomotive.driver).executeScript(script, all);
+        }
+    }
+
+    private interface Check {
+        boolean holds();
+    }
+}
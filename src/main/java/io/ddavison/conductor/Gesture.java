@@ -0,0 +1,256 @@
+/*
+ * Copyright 2014-2016 Daniel Davison (http://github.com/ddavison) and Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package io.ddavison.conductor;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.Keys;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.interactions.Actions;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A multi-step input sequence, performed as a single composite action.<br><br>
+ * Steps are only recorded until {@link #perform()}: then every target is located at once (a single script for all the
+ * css targets), and the whole sequence is dispatched as one {@link Actions} chain.
+ * <blockquote>
+ * <code>
+ * gesture()<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;.hoverOver("#menu")<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;.keyDown(Keys.SHIFT).click("#first").click("#last").keyUp(Keys.SHIFT)<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;.dragAndDrop("#last", "#trash")<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;.perform()<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;.validateNotPresent("#last");
+ * </code>
+ * </blockquote>
+ * @see Locomotive#gesture()
+ */
+public class Gesture {
+
+    private static final String FIND_ALL =
+            "var found = [];" +
+            "for (var i = 0; i < arguments[0].length; i++) found.push(document.querySelector(arguments[0][i]));" +
+            "return found;";
+
+    private final Locomotive locomotive;
+
+    // every distinct target, in order of first use. css targets are kept as strings so they can be found in one go.
+    private final Map<Object, WebElement> targets = new LinkedHashMap<Object, WebElement>();
+    private final List<Step> steps = new ArrayList<Step>();
+
+    Gesture(Locomotive locomotive) {
+        this.locomotive = locomotive;
+    }
+
+    public Gesture hoverOver(String css) {
+        return add(StepType.HOVER, css);
+    }
+
+    public Gesture hoverOver(By by) {
+        return add(StepType.HOVER, by);
+    }
+
+    public Gesture click(String css) {
+        return add(StepType.CLICK, css);
+    }
+
+    public Gesture click(By by) {
+        return add(StepType.CLICK, by);
+    }
+
+    /**
+     * Click where the mouse currently is.
+     * @return this
+     */
+    public Gesture click() {
+        return add(StepType.CLICK, null);
+    }
+
+    public Gesture doubleClick(String css) {
+        return add(StepType.DOUBLE_CLICK, css);
+    }
+
+    public Gesture doubleClick(By by) {
+        return add(StepType.DOUBLE_CLICK, by);
+    }
+
+    public Gesture contextClick(String css) {
+        return add(StepType.CONTEXT_CLICK, css);
+    }
+
+    public Gesture contextClick(By by) {
+        return add(StepType.CONTEXT_CLICK, by);
+    }
+
+    public Gesture clickAndHold(String css) {
+        return add(StepType.CLICK_AND_HOLD, css);
+    }
+
+    public Gesture clickAndHold(By by) {
+        return add(StepType.CLICK_AND_HOLD, by);
+    }
+
+    public Gesture release(String css) {
+        return add(StepType.RELEASE, css);
+    }
+
+    public Gesture release(By by) {
+        return add(StepType.RELEASE, by);
+    }
+
+    /**
+     * Release the mouse button where the mouse currently is.
+     * @return this
+     */
+    public Gesture release() {
+        return add(StepType.RELEASE, null);
+    }
+
+    public Gesture dragAndDrop(String sourceCss, String targetCss) {
+        return clickAndHold(sourceCss).hoverOver(targetCss).release(targetCss);
+    }
+
+    public Gesture dragAndDrop(By source, By target) {
+        return clickAndHold(source).hoverOver(target).release(target);
+    }
+
+    public Gesture moveByOffset(int x, int y) {
+        Step step = new Step(StepType.MOVE_BY_OFFSET, null);
+        step.x = x;
+        step.y = y;
+        steps.add(step);
+        return this;
+    }
+
+    public Gesture keyDown(Keys key) {
+        Step step = new Step(StepType.KEY_DOWN, null);
+        step.keys = new CharSequence[] { key };
+        steps.add(step);
+        return this;
+    }
+
+    public Gesture keyUp(Keys key) {
+        Step step = new Step(StepType.KEY_UP, null);
+        step.keys = new CharSequence[] { key };
+        steps.add(step);
+        return this;
+    }
+
+    /**
+     * Type into the element that currently has focus.
+     * @param keys what to type
+     * @return this
+     */
+    public Gesture sendKeys(CharSequence... keys) {
+        Step step = new Step(StepType.SEND_KEYS, null);
+        step.keys = keys;
+        steps.add(step);
+        return this;
+    }
+
+    public Gesture sendKeys(String css, CharSequence... keys) {
+        add(StepType.SEND_KEYS, css);
+        steps.get(steps.size() - 1).keys = keys;
+        return this;
+    }
+
+    public Gesture sendKeys(By by, CharSequence... keys) {
+        add(StepType.SEND_KEYS, by);
+        steps.get(steps.size() - 1).keys = keys;
+        return this;
+    }
+
+    /**
+     * Locate every target, then perform the whole sequence.
+     * @return The {@link Locomotive} for fluency
+     */
+    public Locomotive perform() {
+        return locomotive.act("gesture", null, new Locomotive.Body<Locomotive>() {
+            @Override
+            public Locomotive run() {
+                resolveTargets();
+
+                Actions actions = new Actions(locomotive.driver);
+                for (Step step : steps) {
+                    WebElement element = step.target == null ? null : targets.get(step.target);
+
+                    switch (step.type) {
+                        case HOVER:          actions.moveToElement(element); break;
+                        case CLICK:          if (element == null) actions.click(); else actions.click(element); break;
+                        case DOUBLE_CLICK:   actions.doubleClick(element); break;
+                        case CONTEXT_CLICK:  actions.contextClick(element); break;
+                        case CLICK_AND_HOLD: actions.clickAndHold(element); break;
+                        case RELEASE:        if (element == null) actions.release(); else actions.release(element); break;
+                        case MOVE_BY_OFFSET: actions.moveByOffset(step.x, step.y); break;
+                        case KEY_DOWN:       actions.keyDown((Keys) step.keys[0]); break;
+                        case KEY_UP:         actions.keyUp((Keys) step.keys[0]); break;
+                        case SEND_KEYS:      if (element == null) actions.sendKeys(step.keys); else actions.sendKeys(element, step.keys); break;
+                    }
+                }
+                actions.build().perform();
+
+                return locomotive;
+            }
+        });
+    }
+
+    private Gesture add(StepType type, Object target) {
+        if (target != null && !targets.containsKey(target)) targets.put(target, null);
+        steps.add(new Step(type, target));
+        return this;
+    }
+
+    /**
+     * Find all the css targets with one script, and wait (as usual) for any target that isn't there yet.
+     */
+    @SuppressWarnings("unchecked")
+    private void resolveTargets() {
+        List<String> selectors = new ArrayList<String>();
+        for (Object target : targets.keySet()) {
+            if (target instanceof String) selectors.add((String) target);
+        }
+
+        if (!selectors.isEmpty() && locomotive.driver instanceof JavascriptExecutor) {
+            for (String selector : selectors) locomotive.located(By.cssSelector(selector));
+            List<Object> found = (List<Object>) ((JavascriptExecutor) locomotive.driver).executeScript(FIND_ALL, selectors);
+            for (int i = 0; i < selectors.size(); i++) {
+                Object element = found.get(i);
+                if (element instanceof WebElement) targets.put(selectors.get(i), (WebElement) element);
+            }
+        }
+
+        for (Map.Entry<Object, WebElement> target : targets.entrySet()) {
+            if (target.getValue() != null) continue;
+            By by = target.getKey() instanceof By ? (By) target.getKey() : By.cssSelector((String) target.getKey());
+            target.setValue(locomotive.waitForElement(by));
+        }
+    }
+
+    private enum StepType {
+        HOVER, CLICK, DOUBLE_CLICK, CONTEXT_CLICK, CLICK_AND_HOLD, RELEASE, MOVE_BY_OFFSET, KEY_DOWN, KEY_UP, SEND_KEYS
+    }
+
+    private static class Step {
+        final StepType type;
+        final Object target;
+        CharSequence[] keys;
+        int x;
+        int y;
+
+        Step(StepType type, Object target) {
+            this.type = type;
+            this.target = target;
+        }
+    }
+}
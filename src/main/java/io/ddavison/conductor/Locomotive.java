@@ -10,33 +10,51 @@
 package io.ddavison.conductor;
 
 import com.google.common.base.Strings;
+import io.ddavison.conductor.artifacts.FailureArtifacts;
+import io.ddavison.conductor.impact.ImpactIndex;
+import io.ddavison.conductor.profile.ProfileTemplates;
+import io.ddavison.conductor.remote.DriverServices;
+import io.ddavison.conductor.remote.HubTransport;
+import io.ddavison.conductor.remote.SessionRouter;
+import io.ddavison.conductor.timing.LocatorTimeouts;
+import io.ddavison.conductor.timing.PageTiming;
+import io.ddavison.conductor.timing.PageTimings;
+import io.ddavison.conductor.trace.Tracer;
 import io.ddavison.conductor.util.JvmUtil;
+import io.ddavison.conductor.visual.PixelDiff;
+import io.ddavison.conductor.visual.Screenshot;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.commons.io.FileUtils;
 import org.junit.After;
+import org.junit.Rule;
+import org.junit.rules.TestName;
 import org.openqa.selenium.*;
 import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeDriverService;
 import org.openqa.selenium.edge.EdgeDriver;
+import org.openqa.selenium.edge.EdgeDriverService;
 import org.openqa.selenium.firefox.FirefoxDriver;
-import org.openqa.selenium.htmlunit.HtmlUnitDriver;
 import org.openqa.selenium.ie.InternetExplorerDriver;
+import org.openqa.selenium.ie.InternetExplorerDriverService;
 import org.openqa.selenium.interactions.Actions;
 import org.openqa.selenium.phantomjs.PhantomJSDriver;
+import org.openqa.selenium.phantomjs.PhantomJSDriverService;
 import org.openqa.selenium.remote.DesiredCapabilities;
 import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.service.DriverService;
 import org.openqa.selenium.safari.SafariDriver;
 import org.openqa.selenium.support.ui.ExpectedCondition;
-import org.openqa.selenium.support.ui.ExpectedConditions;
 import org.openqa.selenium.support.ui.Select;
-import org.openqa.selenium.support.ui.WebDriverWait;
 
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.util.*;
 import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -58,6 +76,8 @@ public class Locomotive implements Conductor<Locomotive> {
 
     public static final Logger log = LogManager.getLogger(Locomotive.class);
 
+    private static final List<ConductorListener> listeners = new java.util.concurrent.CopyOnWriteArrayList<ConductorListener>();
+
     /**
      * All test configuration in here
      */
@@ -69,10 +89,35 @@ public class Locomotive implements Conductor<Locomotive> {
     public int MAX_ATTEMPTS = 5;
     public int MAX_TIMEOUT = 5;
 
-    private int attempts = 0;
-
     public Actions actions;
 
+    @Rule
+    public TestName testName = new TestName();
+
+    /**
+     * The local driver process of this session, <code>null</code> for remote sessions.
+     */
+    private DriverService driverService;
+
+    private Watchdog.Guard guard;
+
+    // the circuit of the hub of this test, null for local sessions, see CircuitBreaker.
+    private String hubCircuit;
+
+    // records the locators this test looks up, null unless the impact index is on.
+    private ImpactIndex impact;
+
+    // the profile copied for this session from a warmed-up template, see ProfileTemplates; parked with the session.
+    private ProfileTemplates.Profile profile;
+
+    // the memory of a reused session at the end of its previous test.
+    private SessionMemory.Sample previousMemory;
+
+    // the sessions this test can share, see SessionPool.
+    private String sessionKey;
+
+    private final long startNanos = System.nanoTime();
+
     private Map<String, String> vars = new HashMap<String, String>();
 
     /**
@@ -83,6 +128,19 @@ public class Locomotive implements Conductor<Locomotive> {
     private Pattern p;
     private Matcher m;
 
+    // timing of the last page load recorded by this test.
+    private PageTiming pageTiming;
+
+    // url pattern of the page the test is on, as far as it knows without asking the browser.
+    private String page;
+
+    // created on first use, shares the cookies of this session.
+    private ApiClient api;
+
+    // pixel buffers reused by every screenshot validation of this test.
+    private int[] screenshotBuffer;
+    private int[] baselineBuffer;
+
     public Locomotive() {
         final Properties props = new Properties();
         try {
@@ -121,9 +179,11 @@ public class Locomotive implements Conductor<Locomotive> {
          */
         final Config testConfiguration = getClass().getAnnotation(Config.class);
 
-        configuration = new LocomotiveConfig(testConfiguration, props);
+        LocomotiveConfig locomotiveConfig = new LocomotiveConfig(testConfiguration, props);
+        configuration = locomotiveConfig;
+        sessionKey = locomotiveConfig.sessionKey();
 
-        Capabilities capabilities;
+        Capabilities capabilities = null;
 
         baseUrl = configuration.url();
 
@@ -134,20 +194,40 @@ public class Locomotive implements Conductor<Locomotive> {
         "\tBase url: %s\n", configuration.url(), configuration.browser().moniker, configuration.hub(), configuration.baseUrl()));
 
         boolean isLocal = StringUtils.isEmpty(configuration.hub());
+        // local sessions of the same browser can open their browser through one shared driver process.
+        boolean sharedService = isLocal && DriverServices.isEnabled() && DriverServices.supports(configuration.browser());
+        boolean launchesDriver = isLocal && !sharedService;
+
+        // don't start a browser for an environment that is known to be down.
+        if (CircuitBreaker.isEnabled()) {
+            if (!isLocal && !SessionRouter.EMBEDDED.equals(configuration.hub())) {
+                hubCircuit = CircuitBreaker.hub(configuration.hub());
+                CircuitBreaker.get().check(hubCircuit, configuration.hub().replaceAll("/+$", "") + "/status");
+            }
+            if (StringUtils.isNotEmpty(baseUrl)) CircuitBreaker.get().checkApplication(baseUrl, !isLocal);
+        }
 
-        switch (configuration.browser()) {
+        SessionPool.Session pooled = SessionPool.isEnabled() ? SessionPool.get().take(sessionKey) : null;
+        if (pooled != null) {
+            driver = pooled.driver;
+            driverService = pooled.service;
+            previousMemory = pooled.memory;
+            profile = pooled.profile;
+        } else switch (configuration.browser()) {
             case CHROME:
-                capabilities = DesiredCapabilities.chrome();
-                if (isLocal) try {
-                    driver = new ChromeDriver(capabilities);
+                capabilities = withProfile(DesiredCapabilities.chrome(), isLocal);
+                if (launchesDriver) try {
+                    ChromeDriverService service = ChromeDriverService.createDefaultService();
+                    driverService = service;
+                    driver = new ChromeDriver(service, capabilities);
                 } catch (Exception x) {
                     logFatal("Also see https://github.com/conductor-framework/conductor/wiki/WebDriver-Executables");
                     System.exit(1);
                 }
                 break;
             case FIREFOX:
-                capabilities = DesiredCapabilities.firefox();
-                if (isLocal) try {
+                capabilities = withProfile(DesiredCapabilities.firefox(), isLocal);
+                if (launchesDriver) try {
                     driver = new FirefoxDriver(capabilities);
                 } catch (Exception x) {
                     x.printStackTrace();
@@ -157,8 +237,10 @@ public class Locomotive implements Conductor<Locomotive> {
                 break;
             case INTERNET_EXPLORER:
                 capabilities = DesiredCapabilities.internetExplorer();
-                if (isLocal) try {
-                    driver = new InternetExplorerDriver(capabilities);
+                if (launchesDriver) try {
+                    InternetExplorerDriverService service = InternetExplorerDriverService.createDefaultService();
+                    driverService = service;
+                    driver = new InternetExplorerDriver(service, capabilities);
                 } catch (Exception x) {
                     x.printStackTrace();
                     logFatal("Also see https://github.com/conductor-framework/conductor/wiki/WebDriver-Executables");
@@ -167,8 +249,10 @@ public class Locomotive implements Conductor<Locomotive> {
                 break;
             case EDGE:
                 capabilities = DesiredCapabilities.edge();
-                if (isLocal) try {
-                    driver = new EdgeDriver(capabilities);
+                if (launchesDriver) try {
+                    EdgeDriverService service = EdgeDriverService.createDefaultService();
+                    driverService = service;
+                    driver = new EdgeDriver(service, capabilities);
                 } catch (Exception x) {
                     x.printStackTrace();
                     logFatal("Also see https://github.com/conductor-framework/conductor/wiki/WebDriver-Executables");
@@ -177,7 +261,7 @@ public class Locomotive implements Conductor<Locomotive> {
                 break;
             case SAFARI:
                 capabilities = DesiredCapabilities.safari();
-                if (isLocal) try {
+                if (launchesDriver) try {
                     driver = new SafariDriver(capabilities);
                 } catch (Exception x) {
                     x.printStackTrace();
@@ -187,32 +271,114 @@ public class Locomotive implements Conductor<Locomotive> {
                 break;
             case PHANTOMJS:
                 capabilities = DesiredCapabilities.phantomjs();
-                if (isLocal) try {
-                    driver = new PhantomJSDriver(capabilities);
+                if (launchesDriver) try {
+                    PhantomJSDriverService service = PhantomJSDriverService.createDefaultService(capabilities);
+                    driverService = service;
+                    driver = new PhantomJSDriver(service, capabilities);
                 } catch (Exception x) {
                     x.printStackTrace();
                     logFatal("Also see https://github.com/conductor-framework/conductor/wiki/WebDriver-Executables");
                     System.exit(1);
                 }
                 break;
+            case HTMLUNIT:
+                DesiredCapabilities htmlUnit = DesiredCapabilities.htmlUnit();
+                htmlUnit.setJavascriptEnabled(ConductorHtmlUnitDriver.isJavascriptEnabledByDefault());
+                capabilities = htmlUnit;
+                if (launchesDriver) driver = new ConductorHtmlUnitDriver(capabilities);
+                break;
             default:
                 System.err.println("Unknown browser: " + configuration.browser());
                 return;
         }
 
-        if (!isLocal)
+        if (pooled == null && sharedService) {
+            try {
+                driver = openThroughSharedService(capabilities);
+            } catch (Exception x) {
+                // retry once: on a new process if the shared one died, on the same one otherwise, since the browsers of
+                // the other tests are attached to it.
+                log.warn("Couldn't open a session through the shared " + configuration.browser().moniker + " driver process: " + x.getMessage());
+                DriverServices.get().sessionFailed(configuration.browser());
+                try {
+                    driver = openThroughSharedService(capabilities);
+                } catch (Exception y) {
+                    logFatal("Also see https://github.com/conductor-framework/conductor/wiki/WebDriver-Executables");
+                    throw new WebDriverException("Couldn't open a session through the shared " + configuration.browser().moniker + " driver process", y);
+                }
+            }
+        }
+
+        if (pooled == null && !isLocal)
             // they are using a hub.
             try {
-                driver = new RemoteWebDriver(new URL(configuration.hub()), capabilities); // just override the driver.
+                // just override the driver. commands go through the shared, pooled hub transport.
+                URL hub = new URL(SessionRouter.resolve(configuration.hub()));
+                driver = new RemoteWebDriver(HubTransport.get().executor(hub), capabilities);
+                if (hubCircuit != null) CircuitBreaker.get().success(hubCircuit);
             } catch (Exception x) {
+                if (hubCircuit != null) CircuitBreaker.get().failure(hubCircuit, x);
                 logFatal("Couldn't connect to hub: " + configuration.hub());
                 x.printStackTrace();
                 return;
             }
 
+        guard = Watchdog.get().guard(getClass().getName(), driver, driverService);
+
+        if (ImpactIndex.isEnabled()) {
+            impact = ImpactIndex.get();
+            impact.install();
+        }
+        if (Tracer.isEnabled()) Tracer.get().install();
+        if (FailureArtifacts.isEnabled()) FailureArtifacts.get().install();
+
         actions = new Actions(driver);
 
-        if (StringUtils.isNotEmpty(baseUrl)) driver.navigate().to(baseUrl);
+        if (StringUtils.isNotEmpty(baseUrl)) {
+            reach(baseUrl);
+            recordPageTiming(false);
+        }
+    }
+
+    /**
+     * Navigate, and let the {@link CircuitBreaker} know whether the application could be reached.  The requests of the
+     * new page are tracked when clicks wait for the network to be idle.
+     */
+    private void reach(String url) {
+        try {
+            driver.navigate().to(url);
+        } catch (RuntimeException x) {
+            if (CircuitBreaker.isEnabled()) CircuitBreaker.get().failure(CircuitBreaker.application(url), x);
+            throw x;
+        }
+        if (CircuitBreaker.isEnabled()) CircuitBreaker.get().success(CircuitBreaker.application(url));
+        page = PageTiming.pattern(url);
+        if (NetworkIdle.isAutomatic()) NetworkIdle.install(driver);
+    }
+
+    /**
+     * Start the browser with a copy of the warmed-up profile template, when turned on.  Without a template (e.g. the
+     * warm-up failed) the browser starts with a new profile, as usual.
+     */
+    private DesiredCapabilities withProfile(DesiredCapabilities capabilities, boolean isLocal) {
+        Browser browser = configuration.browser();
+        if (!isLocal || !ProfileTemplates.isEnabled() || !ProfileTemplates.supports(browser)) return capabilities;
+        try {
+            profile = ProfileTemplates.get().copy(browser, ProfileTemplates.warmupUrls(configuration.url()));
+            ProfileTemplates.use(browser, capabilities, profile.getDirectory());
+        } catch (Exception x) {
+            logWarn("Starting " + browser.moniker + " without the profile template: " + x.getMessage());
+        }
+        return capabilities;
+    }
+
+    /**
+     * A new browser, driven by the driver process shared by every local session of the browser.  Its process isn't
+     * this test's to stop: {@link #driverService} stays <code>null</code>.
+     */
+    private WebDriver openThroughSharedService(Capabilities capabilities) throws IOException {
+        URL service = DriverServices.get().url(configuration.browser());
+        return new RemoteWebDriver(HubTransport.get().executor(service), capabilities);
     }
 
     private String extractChromeDriver(Platform platform) throws IOException, RuntimeException {
@@ -260,33 +426,151 @@ public class Locomotive implements Conductor<Locomotive> {
 
     @After
     public void teardown() {
+        // also clears the interrupt of a session the watchdog reclaimed, before the next test runs on this thread.
+        if (guard != null) guard.close();
+        if (api != null) api.close();
+
+        if (guard != null && guard.reclaimed() != null) {
+            Tracer.span(Tracer.TEST, getTestName(), startNanos, System.nanoTime());
+            logWarn("Session was already reclaimed by the watchdog: " + guard.reclaimed());
+            if (profile != null) profile.delete();
+            return;
+        }
+
+        SessionMemory.Sample memory = SessionMemory.isEnabled() ? getMemory() : null;
+        Tracer.span(Tracer.TEST, getTestName(), startNanos, System.nanoTime(),
+                "rssMB", memory == null || memory.getRssBytes() < 0 ? null : memory.getRssBytes() >> 20,
+                "heapMB", memory == null || memory.getHeapBytes() < 0 ? null : memory.getHeapBytes() >> 20);
+
+        if (SessionPool.isEnabled()) {
+            String recycle = memory == null ? null : SessionMemory.get().recycleReason(memory, previousMemory);
+            if (recycle != null) log.info("Recycling the session of " + getTestName() + ": " + recycle);
+            else if (SessionPool.get().release(sessionKey, driver, driverService, memory, profile)) return;
+        }
         driver.quit();
+        if (profile != null) profile.delete();
     }
 
     /**
-     * Method that acts as an arbiter of implicit timeouts of sorts.. sort of like a Wait For Ajax method.
+     * Be notified of the actions of every test in the JVM.
+     * @param listener the listener
      */
-    public WebElement waitForElement(By by) {
-        int attempts = 0;
-        int size = driver.findElements(by).size();
-
-        while (size == 0) {
-            size = driver.findElements(by).size();
-            if (attempts == MAX_ATTEMPTS) fail(String.format("Could not find %s after %d seconds",
-                                                             by.toString(),
-                                                             MAX_ATTEMPTS));
-            attempts++;
+    public static void addListener(ConductorListener listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeListener(ConductorListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Start an action, to {@link #end(Action)} in a finally block.
+     * @param name the name of the action
+     * @param target what the action is applied to, may be <code>null</code>
+     * @return the action
+     */
+    Action begin(String name, Object target) {
+        Action action = new Action(this, name, target == null ? null : target.toString());
+        for (ConductorListener listener : listeners) {
             try {
-                Thread.sleep(1000); // sleep for 1 second.
-            } catch (Exception x) {
-                fail("Failed due to an exception during Thread.sleep!");
-                x.printStackTrace();
+                listener.actionStarted(action);
+            } catch (RuntimeException x) {
+                log.warn("Listener failed on " + action, x);
+            }
+        }
+        return action;
+    }
+
+    void end(Action action) {
+        if (action.getDurationNanos() < 0) action.finished(null);
+        for (ConductorListener listener : listeners) {
+            try {
+                listener.actionFinished(action);
+            } catch (RuntimeException x) {
+                log.warn("Listener failed on " + action, x);
+            }
+        }
+    }
+
+    /**
+     * What an action does, see {@link #act(String, Object, Body)}.
+     */
+    interface Body<T> {
+        T run();
+    }
+
+    /**
+     * Run an action: listeners are told when it starts and when it ends, with its failure if it throws.
+     * @param name the name of the action
+     * @param target what the action is applied to, may be <code>null</code>
+     * @param body what the action does
+     * @return What the body returned.
+     */
+    <T> T act(String name, Object target, Body<T> body) {
+        Action action = begin(name, target);
+        try {
+            return body.run();
+        } catch (Throwable t) {
+            action.finished(t);
+            throw t;
+        } finally {
+            end(action);
+        }
+    }
+
+    /**
+     * Method that acts as an arbiter of implicit timeouts of sorts: waits for the element to be present.  To wait for
+     * the requests of the page to complete, see {@link #waitForNetworkIdle()}.
+     * With <code>CONDUCTOR_ADAPTIVE_TIMEOUTS=true</code>, locators with a history wait as long as they usually take,
+     * see {@link LocatorTimeouts}.
+     */
+    public WebElement waitForElement(final By by) {
+        located(by);
+        long start = System.nanoTime();
+        LocatorTimeouts.Wait wait = waitFor(by, TimeUnit.SECONDS.toMillis(MAX_ATTEMPTS));
+        final AtomicInteger polls = new AtomicInteger();
+        try {
+            List<WebElement> found = Polling.await(new Polling.Check<List<WebElement>>() {
+                @Override
+                public List<WebElement> poll() {
+                    polls.incrementAndGet();
+                    List<WebElement> found = driver.findElements(by);
+                    return found.isEmpty() ? null : found;
+                }
+            }, wait.getTimeoutMillis(), wait.getPollMillis());
+            if (found == null) {
+                recordTimeout(by, wait);
+                fail(String.format("Could not find %s after %dms", by.toString(), wait.getTimeoutMillis()));
             }
+            recordAppearance(by, start);
+
+            if (found.size() > 1) System.err.println("WARN: There are more than 1 " + by.toString() + " 's!");
+
+            return found.get(0);
+        } finally {
+            Tracer.span(Tracer.WAIT, "waitForElement", start, System.nanoTime(), "target", by, "polls", Math.max(0, polls.get() - 1),
+                    "adaptive", wait.isAdaptive() ? "true" : null);
         }
+    }
 
-        if (size > 1) System.err.println("WARN: There are more than 1 " + by.toString() + " 's!");
+    /**
+     * Wait until the page has had no XHR, fetch nor short timer pending for {@value NetworkIdle#DEFAULT_IDLE_MILLIS}ms
+     * (for MAX_TIMEOUT seconds).  Use it instead of sleeping around transitions of single-page applications.
+     * @return The implementing class for fluency
+     */
+    public Locomotive waitForNetworkIdle() {
+        return waitForNetworkIdle(NetworkIdle.DEFAULT_IDLE_MILLIS);
+    }
 
-        return driver.findElement(by);
+    /**
+     * Wait until the page has had no XHR, fetch nor short timer pending for a quiet period (for MAX_TIMEOUT seconds).
+     * @param idleMillis the quiet period
+     * @return The implementing class for fluency
+     */
+    public Locomotive waitForNetworkIdle(long idleMillis) {
+        String pending = networkIdle(idleMillis);
+        if (pending != null) fail(String.format("Network not idle after %ds, %s", MAX_TIMEOUT, pending));
+        return this;
     }
 
     /**
@@ -308,45 +592,161 @@ public class Locomotive implements Conductor<Locomotive> {
         return waitForCondition(condition, timeOutInSeconds, 1000); // poll every second
     }
 
-    public Locomotive waitForCondition(ExpectedCondition<?> condition, long timeOutInSeconds, long sleepInMillis) {
-        WebDriverWait wait = new WebDriverWait(driver, timeOutInSeconds, sleepInMillis);
-        wait.until(condition);
+    public Locomotive waitForCondition(final ExpectedCondition<?> condition, long timeOutInSeconds, long sleepInMillis) {
+        long start = System.nanoTime();
+        try {
+            Object value = Polling.await(new Polling.Check<Object>() {
+                @Override
+                public Object poll() {
+                    return condition.apply(driver);
+                }
+            }, TimeUnit.SECONDS.toMillis(timeOutInSeconds), sleepInMillis);
+            if (value == null) {
+                throw new TimeoutException(String.format("Timed out after %d seconds waiting for %s", timeOutInSeconds, condition));
+            }
+        } finally {
+            Tracer.span(Tracer.WAIT, "waitForCondition", start, System.nanoTime(), "condition", condition);
+        }
         return this;
     }
 
+    /**
+     * Wait for several conditions at once: they are all evaluated in each poll, so the wait ends on the first poll
+     * where they all hold.
+     * @param conditions the conditions to wait for
+     * @return The implementing class for fluency
+     */
+    public Locomotive waitForConditions(ExpectedCondition<?>... conditions) {
+        return waitForCondition(Conditions.all(conditions));
+    }
+
+    /**
+     * Wait for an element to be present, visible and enabled (polling every 1s, for MAX_TIMEOUT seconds).
+     * Each poll is a single script in the browser when the locator allows it.
+     * @param by the element
+     * @return The element
+     */
+    public WebElement waitForInteractable(By by) {
+        located(by);
+        long start = System.nanoTime();
+        LocatorTimeouts.Wait wait = waitFor(by, TimeUnit.SECONDS.toMillis(MAX_TIMEOUT));
+        try {
+            final ExpectedCondition<WebElement> interactable = Conditions.interactable(by);
+            WebElement element = Polling.await(new Polling.Check<WebElement>() {
+                @Override
+                public WebElement poll() {
+                    return interactable.apply(driver);
+                }
+            }, wait.getTimeoutMillis(), wait.getPollMillis());
+            if (element == null) {
+                recordTimeout(by, wait);
+                throw new TimeoutException(String.format("Timed out after %dms waiting for %s", wait.getTimeoutMillis(), interactable));
+            }
+            recordAppearance(by, start);
+            return element;
+        } finally {
+            Tracer.span(Tracer.WAIT, "waitForInteractable", start, System.nanoTime(), "target", by);
+        }
+    }
+
     public Locomotive click(String css) {
         return click(By.cssSelector(css));
     }
 
-    public Locomotive click(By by) {
-        waitForCondition(ExpectedConditions.not(ExpectedConditions.invisibilityOfElementLocated(by)))
-        .waitForCondition(ExpectedConditions.elementToBeClickable(by));
-        waitForElement(by).click();
-        return this;
+    public Locomotive click(final By by) {
+        return act("click", by, new Body<Locomotive>() {
+            @Override
+            public Locomotive run() {
+                WebElement element = waitForInteractable(by);
+                // before the click, or the requests it starts aren't tracked.
+                if (NetworkIdle.isAutomatic()) NetworkIdle.install(driver);
+                element.click();
+                if (NetworkIdle.isAutomatic()) awaitNetworkIdle();
+                return Locomotive.this;
+            }
+        });
     }
 
     public Locomotive setText(String css, String text) {
         return setText(By.cssSelector(css), text);
     }
 
-    public Locomotive setText(By by, String text) {
-        waitForCondition(ExpectedConditions.not(ExpectedConditions.invisibilityOfElementLocated(by)))
-        .waitForCondition(ExpectedConditions.elementToBeClickable(by));
-        WebElement element = waitForElement(by);
-        element.clear();
-        element.sendKeys(text);
-        return this;
+    public Locomotive setText(final By by, final String text) {
+        return act("setText", by, new Body<Locomotive>() {
+            @Override
+            public Locomotive run() {
+                WebElement element = waitForInteractable(by);
+                element.clear();
+                element.sendKeys(text);
+                return Locomotive.this;
+            }
+        });
     }
 
     public Locomotive hoverOver(String css) {
         return hoverOver(By.cssSelector(css));
     }
 
-    public Locomotive hoverOver(By by) {
-        actions.moveToElement(driver.findElement(by)).perform();
+    public Locomotive hoverOver(final By by) {
+        return act("hoverOver", by, new Body<Locomotive>() {
+            @Override
+            public Locomotive run() {
+                located(by);
+                actions.moveToElement(driver.findElement(by)).perform();
+                return Locomotive.this;
+            }
+        });
+    }
+
+    /**
+     * Start a multi-step input sequence (hover, clicks, drag and drop, key chords...) that is performed as one action.
+     * @return A new gesture, performed with {@link Gesture#perform()}
+     */
+    public Gesture gesture() {
+        return new Gesture(this);
+    }
+
+    public ElementStream elements(String css) {
+        return elements(By.cssSelector(css));
+    }
+
+    /**
+     * The matches of a locator, fetched a chunk at a time as they are iterated over, e.g. to scan long lists that load
+     * on scroll or are paginated without pulling every row at once.
+     * @param by the locator
+     * @return The matches, lazily
+     */
+    public ElementStream elements(By by) {
+        located(by);
+        return new ElementStream(this, by);
+    }
+
+    /**
+     * Call the application's HTTP APIs with the cookies of this session, e.g. to set up data faster than through the UI.
+     * @return The api client of this test
+     */
+    public ApiClient api() {
+        if (api == null) api = new ApiClient(this);
+        return api;
+    }
+
+    /**
+     * Called by generated page objects when they are created, so that listeners know which pages a test uses.
+     * @param page the page object interface
+     * @return The implementing class for fluency
+     */
+    public Locomotive onPage(Class<?> page) {
+        end(begin("page", page.getName()));
         return this;
     }
 
+    /**
+     * @return The running test, as <code>class#method</code>
+     */
+    public String getTestName() {
+        return getClass().getName() + "#" + testName.getMethodName();
+    }
+
     public boolean isChecked(String css) {
         return isChecked(By.cssSelector(css));
     }
@@ -360,6 +760,7 @@ public class Locomotive implements Conductor<Locomotive> {
     }
 
     public boolean isPresent(By by) {
+        located(by);
         return driver.findElements(by).size() > 0;
     }
 
@@ -391,52 +792,64 @@ public class Locomotive implements Conductor<Locomotive> {
         return check(By.cssSelector(css));
     }
 
-    public Locomotive check(By by) {
-        if (!isChecked(by)) {
-            waitForCondition(ExpectedConditions.not(ExpectedConditions.invisibilityOfElementLocated(by)))
-            .waitForCondition(ExpectedConditions.elementToBeClickable(by));
-            waitForElement(by).click();
-            assertTrue(by.toString() + " did not check!", isChecked(by));
-        }
-        return this;
+    public Locomotive check(final By by) {
+        return act("check", by, new Body<Locomotive>() {
+            @Override
+            public Locomotive run() {
+                if (!isChecked(by)) {
+                    waitForInteractable(by).click();
+                    assertTrue(by.toString() + " did not check!", isChecked(by));
+                }
+                return Locomotive.this;
+            }
+        });
     }
 
     public Locomotive uncheck(String css) {
         return uncheck(By.cssSelector(css));
     }
 
-    public Locomotive uncheck(By by) {
-        if (isChecked(by)) {
-            waitForCondition(ExpectedConditions.not(ExpectedConditions.invisibilityOfElementLocated(by)))
-            .waitForCondition(ExpectedConditions.elementToBeClickable(by));
-            waitForElement(by).click();
-            assertFalse(by.toString() + " did not uncheck!", isChecked(by));
-        }
-        return this;
+    public Locomotive uncheck(final By by) {
+        return act("uncheck", by, new Body<Locomotive>() {
+            @Override
+            public Locomotive run() {
+                if (isChecked(by)) {
+                    waitForInteractable(by).click();
+                    assertFalse(by.toString() + " did not uncheck!", isChecked(by));
+                }
+                return Locomotive.this;
+            }
+        });
     }
 
     public Locomotive selectOptionByText(String css, String text) {
         return selectOptionByText(By.cssSelector(css), text);
     }
 
-    public Locomotive selectOptionByText(By by, String text) {
-        Select box = new Select(waitForElement(by));
-        waitForCondition(ExpectedConditions.not(ExpectedConditions.invisibilityOfElementLocated(by)))
-        .waitForCondition(ExpectedConditions.elementToBeClickable(by));
-        box.selectByVisibleText(text);
-        return this;
+    public Locomotive selectOptionByText(final By by, final String text) {
+        return act("selectOptionByText", by, new Body<Locomotive>() {
+            @Override
+            public Locomotive run() {
+                Select box = new Select(waitForInteractable(by));
+                box.selectByVisibleText(text);
+                return Locomotive.this;
+            }
+        });
     }
 
     public Locomotive selectOptionByValue(String css, String value) {
         return selectOptionByValue(By.cssSelector(css), value);
     }
 
-    public Locomotive selectOptionByValue(By by, String value) {
-        Select box = new Select(waitForElement(by));
-        waitForCondition(ExpectedConditions.not(ExpectedConditions.invisibilityOfElementLocated(by)))
-        .waitForCondition(ExpectedConditions.elementToBeClickable(by));
-        box.selectByValue(value);
-        return this;
+    public Locomotive selectOptionByValue(final By by, final String value) {
+        return act("selectOptionByValue", by, new Body<Locomotive>() {
+            @Override
+            public Locomotive run() {
+                Select box = new Select(waitForInteractable(by));
+                box.selectByValue(value);
+                return Locomotive.this;
+            }
+        });
     }
 
     @Override
@@ -445,62 +858,40 @@ public class Locomotive implements Conductor<Locomotive> {
     }
 
     @Override
-    public Locomotive selectOptionByIndex(By by, Integer i) {
-        Select box = new Select(waitForElement(by));
-        waitForCondition(ExpectedConditions.not(ExpectedConditions.invisibilityOfElementLocated(by)))
-        .waitForCondition(ExpectedConditions.elementToBeClickable(by));
-        box.selectByIndex(i);
-        return this;
+    public Locomotive selectOptionByIndex(final By by, final Integer i) {
+        return act("selectOptionByIndex", by, new Body<Locomotive>() {
+            @Override
+            public Locomotive run() {
+                Select box = new Select(waitForInteractable(by));
+                box.selectByIndex(i);
+                return Locomotive.this;
+            }
+        });
     }
 
     /* Window / Frame Switching */
 
-    public Locomotive waitForWindow(String regex) {
-        Set<String> windows = driver.getWindowHandles();
-
-        for (String window : windows) {
-            try {
-                driver.switchTo().window(window);
-
-                p = Pattern.compile(regex);
-                m = p.matcher(driver.getCurrentUrl());
-
-                if (m.find()) {
-                    attempts = 0;
-                    return switchToWindow(regex);
-                }
-                else {
-                    // try for title
-                    m = p.matcher(driver.getTitle());
-
-                    if (m.find()) {
-                        attempts = 0;
-                        return switchToWindow(regex);
+    public Locomotive waitForWindow(final String regex) {
+        final Pattern pattern = Pattern.compile(regex);
+        Boolean found = Polling.await(new Polling.Check<Boolean>() {
+            @Override
+            public Boolean poll() {
+                for (String window : driver.getWindowHandles()) {
+                    try {
+                        driver.switchTo().window(window);
+                        // url first, then title
+                        if (pattern.matcher(driver.getCurrentUrl()).find() || pattern.matcher(driver.getTitle()).find()) return true;
+                    } catch (NoSuchWindowException e) {
+                        // closed meanwhile
                     }
                 }
-            } catch(NoSuchWindowException e) {
-                if (attempts <= MAX_ATTEMPTS) {
-                    attempts++;
-
-                    try {Thread.sleep(1000);}catch(Exception x) { x.printStackTrace(); }
-
-                    return waitForWindow(regex);
-                } else {
-                    fail("Window with url|title: " + regex + " did not appear after " + MAX_ATTEMPTS + " tries. Exiting.");
-                }
+                System.out.println("#waitForWindow() : Window doesn't exist yet. [" + regex + "] Trying again.");
+                return null;
             }
-        }
+        }, TimeUnit.SECONDS.toMillis(MAX_ATTEMPTS), 1000);
 
-        // when we reach this point, that means no window exists with that title..
-        if (attempts == MAX_ATTEMPTS) {
-            fail("Window with title: " + regex + " did not appear after " + MAX_ATTEMPTS + " tries. Exiting.");
-            return this;
-        } else {
-            System.out.println("#waitForWindow() : Window doesn't exist yet. [" + regex + "] Trying again. " + (attempts+1) + "/" + MAX_ATTEMPTS);
-            attempts++;
-            try {Thread.sleep(1000);}catch(Exception x) { x.printStackTrace(); }
-            return waitForWindow(regex);
-        }
+        if (found == null) fail("Window with url|title: " + regex + " did not appear after " + MAX_ATTEMPTS + " tries. Exiting.");
+        return switchToWindow(regex);
     }
 
     public Locomotive switchToWindow(String regex) {
@@ -613,31 +1004,46 @@ public class Locomotive implements Conductor<Locomotive> {
         return validatePresent(By.cssSelector(css));
     }
 
-    public Locomotive validatePresent(By by) {
-        waitForElement(by);
-        assertTrue("Element " + by.toString() + " does not exist!",
-                isPresent(by));
-        return this;
+    public Locomotive validatePresent(final By by) {
+        return act("validatePresent", by, new Body<Locomotive>() {
+            @Override
+            public Locomotive run() {
+                waitForElement(by);
+                assertTrue("Element " + by.toString() + " does not exist!",
+                        isPresent(by));
+                return Locomotive.this;
+            }
+        });
     }
 
     public Locomotive validateNotPresent(String css) {
         return validateNotPresent(By.cssSelector(css));
     }
 
-    public Locomotive validateNotPresent(By by) {
-        assertFalse("Element " + by.toString() + " exists!", isPresent(by));
-        return this;
+    public Locomotive validateNotPresent(final By by) {
+        return act("validateNotPresent", by, new Body<Locomotive>() {
+            @Override
+            public Locomotive run() {
+                assertFalse("Element " + by.toString() + " exists!", isPresent(by));
+                return Locomotive.this;
+            }
+        });
     }
 
     public Locomotive validateText(String css, String text) {
         return validateText(By.cssSelector(css), text);
     }
 
-    public Locomotive validateText(By by, String text) {
-        String actual = getText(by);
+    public Locomotive validateText(final By by, final String text) {
+        return act("validateText", by, new Body<Locomotive>() {
+            @Override
+            public Locomotive run() {
+                String actual = getText(by);
 
-        assertTrue(String.format("Text does not match! [expected: %s] [actual: %s]", text, actual), text.equals(actual));
-        return this;
+                assertTrue(String.format("Text does not match! [expected: %s] [actual: %s]", text, actual), text.equals(actual));
+                return Locomotive.this;
+            }
+        });
     }
 
     @Deprecated
@@ -654,75 +1060,205 @@ public class Locomotive implements Conductor<Locomotive> {
         return validateTextNot(By.cssSelector(css), text);
     }
 
-    public Locomotive validateTextNot(By by, String text) {
-        String actual = getText(by);
+    public Locomotive validateTextNot(final By by, final String text) {
+        return act("validateTextNot", by, new Body<Locomotive>() {
+            @Override
+            public Locomotive run() {
+                String actual = getText(by);
 
-        assertFalse(String.format("Text matches! [expected: %s] [actual: %s]", text, actual), text.equals(actual));
-        return this;
+                assertFalse(String.format("Text matches! [expected: %s] [actual: %s]", text, actual), text.equals(actual));
+                return Locomotive.this;
+            }
+        });
     }
 
-    public Locomotive validateTextPresent(String text) {
-        assertTrue(driver.getPageSource().contains(text));
-        return this;
+    public Locomotive validateTextPresent(final String text) {
+        return act("validateTextPresent", text, new Body<Locomotive>() {
+            @Override
+            public Locomotive run() {
+                assertTrue(driver.getPageSource().contains(text));
+                return Locomotive.this;
+            }
+        });
     }
 
-    public Locomotive validateTextNotPresent(String text) {
-        assertFalse(driver.getPageSource().contains(text));
-        return this;
+    public Locomotive validateTextNotPresent(final String text) {
+        return act("validateTextNotPresent", text, new Body<Locomotive>() {
+            @Override
+            public Locomotive run() {
+                assertFalse(driver.getPageSource().contains(text));
+                return Locomotive.this;
+            }
+        });
     }
 
     public Locomotive validateChecked(String css) {
         return validateChecked(By.cssSelector(css));
     }
 
-    public Locomotive validateChecked(By by) {
-        assertTrue(by.toString() + " is not checked!", isChecked(by));
-        return this;
+    public Locomotive validateChecked(final By by) {
+        return act("validateChecked", by, new Body<Locomotive>() {
+            @Override
+            public Locomotive run() {
+                assertTrue(by.toString() + " is not checked!", isChecked(by));
+                return Locomotive.this;
+            }
+        });
     }
 
     public Locomotive validateUnchecked(String css) {
         return validateUnchecked(By.cssSelector(css));
     }
 
-    public Locomotive validateUnchecked(By by) {
-        assertFalse(by.toString() + " is not unchecked!", isChecked(by));
-        return this;
+    public Locomotive validateUnchecked(final By by) {
+        return act("validateUnchecked", by, new Body<Locomotive>() {
+            @Override
+            public Locomotive run() {
+                assertFalse(by.toString() + " is not unchecked!", isChecked(by));
+                return Locomotive.this;
+            }
+        });
     }
 
     public Locomotive validateAttribute(String css, String attr, String regex) {
         return validateAttribute(By.cssSelector(css), attr, regex);
     }
 
-    public Locomotive validateAttribute(By by, String attr, String regex) {
-        String actual = null;
-        try {
-            actual = getAttribute(by, attr);
-            if (actual.equals(regex)) return this; // test passes.
-        } catch (NoSuchElementException e) {
-            fail("No such element [" + by.toString() + "] exists.");
-        } catch (Exception x) {
-            fail("Cannot validate an attribute if an element doesn't have it!");
+    public Locomotive validateAttribute(final By by, final String attr, final String regex) {
+        return act("validateAttribute", by, new Body<Locomotive>() {
+            @Override
+            public Locomotive run() {
+                String actual = null;
+                try {
+                    actual = getAttribute(by, attr);
+                    if (actual.equals(regex)) return Locomotive.this; // test passes.
+                } catch (NoSuchElementException e) {
+                    fail("No such element [" + by.toString() + "] exists.");
+                } catch (Exception x) {
+                    fail("Cannot validate an attribute if an element doesn't have it!");
+                }
+
+                p = Pattern.compile(regex);
+                m = p.matcher(actual);
+
+                assertTrue(String.format("Attribute doesn't match! [Selector: %s] [Attribute: %s] [Desired value: %s] [Actual value: %s]",
+                        by.toString(),
+                        attr,
+                        regex,
+                        actual
+                        ), m.find());
+
+                return Locomotive.this;
+            }
+        });
+    }
+
+    public Locomotive validateUrl(final String regex) {
+        return act("validateUrl", regex, new Body<Locomotive>() {
+            @Override
+            public Locomotive run() {
+                p = Pattern.compile(regex);
+                m = p.matcher(driver.getCurrentUrl());
+
+                assertTrue("Url does not match regex [" + regex + "] (actual is: \""+driver.getCurrentUrl()+"\")", m.find());
+                return Locomotive.this;
+            }
+        });
+    }
+
+    public Locomotive validateScreenshot(String name, By... ignore) {
+        PixelDiff diff = new PixelDiff();
+
+        if (ignore.length > 0) {
+            // element rects are in css pixels, screenshots in device pixels.
+            Object ratio = ((JavascriptExecutor) driver).executeScript("return window.devicePixelRatio || 1;");
+            double scale = ratio instanceof Number ? ((Number) ratio).doubleValue() : 1;
+
+            for (By by : ignore) {
+                located(by);
+                for (WebElement element : driver.findElements(by)) {
+                    Point location = element.getLocation();
+                    Dimension size = element.getSize();
+                    diff.ignore(new java.awt.Rectangle(
+                            (int) Math.floor(location.getX() * scale),
+                            (int) Math.floor(location.getY() * scale),
+                            (int) Math.ceil(size.getWidth() * scale),
+                            (int) Math.ceil(size.getHeight() * scale)));
+                }
+            }
         }
 
-        p = Pattern.compile(regex);
-        m = p.matcher(actual);
+        return validateScreenshot(name, diff);
+    }
 
-        assertTrue(String.format("Attribute doesn't match! [Selector: %s] [Attribute: %s] [Desired value: %s] [Actual value: %s]",
-                by.toString(),
-                attr,
-                regex,
-                actual
-                ), m.find());
+    /**
+     * Validates that the page looks like a baseline screenshot, using a custom comparison.
+     * @param name The name of the baseline
+     * @param diff How to compare the screenshot to the baseline (tolerances, ignored regions)
+     * @return The implementing class for fluency
+     * @see #validateScreenshot(String, By...)
+     */
+    public Locomotive validateScreenshot(final String name, final PixelDiff diff) {
+        return act("validateScreenshot", name, new Body<Locomotive>() {
+            @Override
+            public Locomotive run() {
+                if (!(driver instanceof TakesScreenshot)) fail("Screenshots are not supported by " + configuration.browser().moniker);
+
+                String baselines = JvmUtil.getJvmProperty(Constants.JVM_CONDUCTOR_BASELINES);
+                File baseline = new File(StringUtils.isEmpty(baselines) ? Constants.DEFAULT_BASELINES : baselines, name + ".png");
+                File failure = new File(Constants.DEFAULT_SCREENSHOT_FAILURES, name + ".actual.png");
+
+                try {
+                    Screenshot actual = Screenshot.decode(((TakesScreenshot) driver).getScreenshotAs(OutputType.BYTES), screenshotBuffer);
+                    screenshotBuffer = actual.pixels;
+
+                    if (!baseline.exists() || Boolean.parseBoolean(JvmUtil.getJvmProperty(Constants.JVM_CONDUCTOR_UPDATE_BASELINES))) {
+                        actual.write(baseline);
+                        logWarn("Recorded a new baseline for [" + name + "] at " + baseline.getPath());
+                        return Locomotive.this;
+                    }
 
-        return this;
+                    Screenshot expected = Screenshot.read(baseline, baselineBuffer);
+                    baselineBuffer = expected.pixels;
+
+                    if (expected.width != actual.width || expected.height != actual.height) {
+                        actual.write(failure);
+                        fail(String.format("Screenshot [%s] is %dx%d, its baseline is %dx%d (actual saved to %s)",
+                                name, actual.width, actual.height, expected.width, expected.height, failure.getPath()));
+                    }
+
+                    PixelDiff.Result result = diff.compare(expected.pixels, actual.pixels, actual.width, actual.height);
+                    if (!result.matches()) {
+                        actual.write(failure);
+                        fail(String.format("Screenshot [%s] doesn't match its baseline: %s (actual saved to %s)", name, result, failure.getPath()));
+                    }
+                } catch (IOException e) {
+                    fail("Couldn't validate screenshot [" + name + "]: " + e.getMessage());
+                }
+                return Locomotive.this;
+            }
+        });
+    }
+
+    public Locomotive validatePageLoadUnder(long millis) {
+        return validatePageTimingUnder(PageTiming.LOAD, millis);
     }
 
-    public Locomotive validateUrl(String regex) {
-        p = Pattern.compile(regex);
-        m = p.matcher(driver.getCurrentUrl());
+    public Locomotive validatePageTimingUnder(final String metric, final long millis) {
+        return act("validatePageTimingUnder", metric, new Body<Locomotive>() {
+            @Override
+            public Locomotive run() {
+                PageTiming timing = getPageTiming();
+                if (timing == null) fail("The browser doesn't report page timings");
 
-        assertTrue("Url does not match regex [" + regex + "] (actual is: \""+driver.getCurrentUrl()+"\")", m.find());
-        return this;
+                Long value = timing.get(metric);
+                if (value == null) fail(String.format("The browser doesn't report [%s] of %s", metric, timing.getUrl()));
+
+                assertTrue(String.format("[%s] of %s is %dms, over the budget of %dms", metric, timing.getUrl(), value, millis),
+                        value <= millis);
+                return Locomotive.this;
+            }
+        });
     }
 
     public Locomotive validateTrue(boolean condition) {
@@ -738,23 +1274,130 @@ public class Locomotive implements Conductor<Locomotive> {
     /* ================================ */
 
     public Locomotive goBack() {
-        driver.navigate().back();
-        return this;
+        return act("goBack", null, new Body<Locomotive>() {
+            @Override
+            public Locomotive run() {
+                driver.navigate().back();
+                return Locomotive.this;
+            }
+        });
     }
 
     @Override
     public Locomotive refresh() {
-        driver.navigate().refresh();
-        return this;
+        return act("refresh", null, new Body<Locomotive>() {
+            @Override
+            public Locomotive run() {
+                driver.navigate().refresh();
+                recordPageTiming(false);
+                return Locomotive.this;
+            }
+        });
     }
 
-    public Locomotive navigateTo(String url) {
-        // absolute url
-        if (url.contains("://"))      driver.navigate().to(url);
-        else if (url.startsWith("/")) driver.navigate().to(baseUrl.concat(url));
-        else                          driver.navigate().to(driver.getCurrentUrl().concat(url));
+    public Locomotive navigateTo(final String url) {
+        return act("navigateTo", url, new Body<Locomotive>() {
+            @Override
+            public Locomotive run() {
+                // absolute url
+                if (url.contains("://"))      reach(url);
+                else if (url.startsWith("/")) reach(baseUrl.concat(url));
+                else                          reach(driver.getCurrentUrl().concat(url));
 
-        return this;
+                recordPageTiming(false);
+                if (NetworkIdle.isAutomatic()) awaitNetworkIdle();
+                return Locomotive.this;
+            }
+        });
+    }
+
+    /**
+     * @return The memory the browser of this test uses now, see {@link SessionMemory}.
+     */
+    public SessionMemory.Sample getMemory() {
+        return SessionMemory.get().sample(configuration.browser().moniker, driver, driverService);
+    }
+
+    /**
+     * @return The timing of the page currently loaded, <code>null</code> if the browser doesn't report it.
+     */
+    public PageTiming getPageTiming() {
+        return recordPageTiming(true);
+    }
+
+    /**
+     * The wait after clicks and navigations: a page that never goes quiet (long polling, streaming) doesn't fail them.
+     */
+    private void awaitNetworkIdle() {
+        String pending = networkIdle(NetworkIdle.DEFAULT_IDLE_MILLIS);
+        if (pending != null) log.warn(String.format("Network not idle after %ds, %s", MAX_TIMEOUT, pending));
+    }
+
+    private String networkIdle(long idleMillis) {
+        long start = System.nanoTime();
+        String pending = null;
+        try {
+            pending = NetworkIdle.await(driver, idleMillis, TimeUnit.SECONDS.toMillis(MAX_TIMEOUT));
+            return pending;
+        } finally {
+            Tracer.span(Tracer.WAIT, "waitForNetworkIdle", start, System.nanoTime(), "idle", idleMillis + "ms", "pending", pending);
+        }
+    }
+
+    /**
+     * @return How long to wait for an element: learned from its history with adaptive timeouts, the default otherwise.
+     */
+    private LocatorTimeouts.Wait waitFor(By by, long defaultTimeoutMillis) {
+        if (!LocatorTimeouts.isEnabled()) return new LocatorTimeouts.Wait(defaultTimeoutMillis, 1000, false);
+        return LocatorTimeouts.get().waitFor(currentPage(), by, defaultTimeoutMillis, 1000);
+    }
+
+    /**
+     * Called by every element lookup, so that the impact index knows the locators a test depends on.
+     */
+    void located(By by) {
+        if (impact != null) impact.located(getTestName(), by);
+    }
+
+    private void recordAppearance(By by, long startNanos) {
+        if (LocatorTimeouts.isEnabled()) {
+            LocatorTimeouts.get().record(currentPage(), by, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        }
+    }
+
+    private void recordTimeout(By by, LocatorTimeouts.Wait wait) {
+        if (LocatorTimeouts.isEnabled()) LocatorTimeouts.get().timedOut(currentPage(), by, wait.getTimeoutMillis());
+    }
+
+    /**
+     * The url pattern of the last navigation, or of the last page load recorded if later, so that waits don't cost a
+     * command to get the url.  Pages reached by clicks are only seen when page timing is on, until then their locators
+     * are keyed under the page the click was made on.
+     */
+    private String currentPage() {
+        return page != null ? page : PageTiming.pattern(baseUrl);
+    }
+
+    /**
+     * Read the timing of the current page, and add it to the run's {@link PageTimings} once per page load when page
+     * timings are turned on with <code>CONDUCTOR_PAGE_TIMING=true</code>.
+     * @param always read it even if page timings aren't turned on, without recording it then
+     * @return the timing, <code>null</code> if not read or not reported by the browser.
+     */
+    private PageTiming recordPageTiming(boolean always) {
+        boolean enabled = PageTimings.isEnabled();
+        if (!always && !enabled) return null;
+
+        PageTiming timing = PageTiming.collect(driver);
+        if (timing == null) return null;
+
+        // a page load that was already recorded, e.g. only the hash of the url changed.
+        if (pageTiming != null && pageTiming.getNavigationStart() == timing.getNavigationStart()) return pageTiming;
+
+        pageTiming = timing;
+        page = timing.getPattern();
+        if (enabled) PageTimings.get().record(timing);
+        return timing;
     }
 
     public Locomotive store(String key, String value) {
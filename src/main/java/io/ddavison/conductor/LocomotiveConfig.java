@@ -3,6 +3,8 @@ package io.ddavison.conductor;
 import io.ddavison.conductor.util.JvmUtil;
 import org.apache.commons.lang3.StringUtils;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.annotation.Annotation;
 import java.util.Properties;
 
@@ -18,6 +20,8 @@ import java.util.Properties;
  */
 public class LocomotiveConfig implements Config {
 
+    private static final ThreadLocal<Browser> browserOverride = new ThreadLocal<Browser>();
+
     private Config testConfig;
     private Properties properties;
 
@@ -50,8 +54,56 @@ public class LocomotiveConfig implements Config {
         return url;
     }
 
+    /**
+     * Resolve the configuration of a test class without starting it.
+     * @param testClass the test class
+     * @return The configuration its tests would run with
+     */
+    public static LocomotiveConfig forClass(Class<?> testClass) {
+        Properties properties = new Properties();
+        InputStream in = LocomotiveConfig.class.getResourceAsStream("/default.properties");
+        if (in != null) try {
+            properties.load(in);
+        } catch (IOException ignored) {
+        } finally {
+            try {
+                in.close();
+            } catch (IOException ignored) {
+            }
+        }
+        return new LocomotiveConfig(testClass.getAnnotation(Config.class), properties);
+    }
+
+    /**
+     * @return What tests must have in common to share a browser session: the browser and the hub.
+     */
+    public String sessionKey() {
+        return browser().moniker + "|" + hub();
+    }
+
+    /**
+     * Force the browser of the tests started on the current thread, over every other configuration.
+     * Used by runners that run the same tests on other browsers, e.g. the load runner.
+     * @param browser the browser, <code>null</code> to stop overriding it
+     */
+    public static void overrideBrowser(Browser browser) {
+        if (browser == null) browserOverride.remove();
+        else browserOverride.set(browser);
+    }
+
+    /**
+     * @return <code>true</code> on the smoke tier (<code>CONDUCTOR_SMOKE=true</code>): every test runs on
+     * {@link Browser#HTMLUNIT}, in process, whatever its configured browser and hub.
+     */
+    public static boolean isSmoke() {
+        return Boolean.parseBoolean(JvmUtil.getJvmProperty(Constants.JVM_CONDUCTOR_SMOKE));
+    }
+
     @Override
     public Browser browser() {
+        if (browserOverride.get() != null) return browserOverride.get();
+        if (isSmoke()) return Browser.HTMLUNIT;
+
         Browser browser = Browser.NONE;
         if (!StringUtils.isEmpty(properties.getProperty(Constants.DEFAULT_PROPERTY_BROWSER))) {
             browser = Browser.valueOf(properties.getProperty(Constants.DEFAULT_PROPERTY_BROWSER).toUpperCase());
@@ -62,12 +114,43 @@ public class LocomotiveConfig implements Config {
         if (!StringUtils.isEmpty(JvmUtil.getJvmProperty(Constants.JVM_CONDUCTOR_BROWSER))) {
             browser = Browser.valueOf(JvmUtil.getJvmProperty(Constants.JVM_CONDUCTOR_BROWSER).toUpperCase());
         }
+        if (browser == Browser.NONE && browsers().length > 0) {
+            browser = browsers()[0];
+        }
         return browser;
     }
 
+    /**
+     * The browsers of a {@link BrowserMatrix} run: <code>CONDUCTOR_BROWSERS</code> (comma separated) over the test's.
+     *
+     * @return The browsers, empty if there's no matrix.
+     */
+    @Override
+    public Browser[] browsers() {
+        if (isSmoke()) {
+            return new Browser[] { Browser.HTMLUNIT };
+        }
+        String browsers = JvmUtil.getJvmProperty(Constants.JVM_CONDUCTOR_BROWSERS);
+        if (!StringUtils.isEmpty(browsers)) {
+            String[] names = browsers.split(",");
+            Browser[] matrix = new Browser[names.length];
+            for (int i = 0; i < names.length; i++) {
+                matrix[i] = Browser.valueOf(names[i].trim().toUpperCase());
+            }
+            return matrix;
+        }
+        if (testConfig != null && testConfig.browsers().length > 0) {
+            return testConfig.browsers();
+        }
+        return new Browser[0];
+    }
+
     @Override
     public String hub() {
         String hub = "";
+        if (isSmoke()) {
+            return hub;
+        }
         if (!StringUtils.isEmpty(properties.getProperty(Constants.DEFAULT_PROPERTY_HUB))) {
             hub = properties.getProperty(Constants.DEFAULT_PROPERTY_HUB);
         }
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2014-2016 Daniel Davison (http://github.com/ddavison) and Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package io.ddavison.conductor;
+
+import io.ddavison.conductor.util.JvmUtil;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Waits for the page to stop talking to the server: no XHR nor fetch in flight, and no short timer pending, for a
+ * quiet period.<br><br>
+ * A tracker is injected in the page the first time it is waited on (or {@link #install(WebDriver) installed}); it counts
+ * the requests and timers the page starts from then on.  The whole wait is a single asynchronous script, so it costs one
+ * round trip however long it lasts.  Requests started before the tracker was injected (e.g. while the page loaded)
+ * aren't seen, the quiet period covers those that follow them.<br><br>
+ * With <code>CONDUCTOR_WAIT_FOR_NETWORK_IDLE=true</code>, every {@link Locomotive#click(org.openqa.selenium.By)} and
+ * {@link Locomotive#navigateTo(String)} waits for the network to be idle before returning.  The tracker is then
+ * installed after every navigation and before every click, so that the requests a click starts are seen.
+ */
+public class NetworkIdle {
+
+    public static final long DEFAULT_IDLE_MILLIS = 500;
+
+    // timers set for longer than this are background work (polling, session keep-alives), not part of a transition.
+    public static final long MAX_TIMER_MILLIS = 1000;
+
+    // the script timeout of a new WebDriver session.
+    public static final long DEFAULT_SCRIPT_TIMEOUT_MILLIS = 30000;
+
+    /**
+     * Installs the tracker in the page, once.  Arguments: the longest timer to track.
+     */
+    static final String TRACKER_SCRIPT =
+            "var maxTimer = arguments[0];" +
+            "if (!window.__conductorNetwork) (function () {" +
+            "  var t = window.__conductorNetwork = { requests: {}, timers: {}, next: 0, last: Date.now()," +
+            "    setTimeout: window.setTimeout, clearTimeout: window.clearTimeout };" +
+            "  function started(table, id, what) { table[id] = what; t.last = Date.now(); }" +
+            "  function done(table, id) { if (id in table) { delete table[id]; t.last = Date.now(); } }" +
+            "  var open = XMLHttpRequest.prototype.open, send = XMLHttpRequest.prototype.send;" +
+            "  XMLHttpRequest.prototype.open = function (method, url) {" +
+            "    this.__conductorUrl = method + ' ' + url; return open.apply(this, arguments); };" +
+            "  XMLHttpRequest.prototype.send = function () {" +
+            "    var xhr = this, id = ++t.next;" +
+            "    started(t.requests, id, xhr.__conductorUrl);" +
+            "    xhr.addEventListener('loadend', function () { done(t.requests, id); });" +
+            "    try { return send.apply(xhr, arguments); } catch (e) { done(t.requests, id); throw e; } };" +
+            "  if (window.fetch) { var fetch = window.fetch; window.fetch = function (input) {" +
+            "    var id = ++t.next;" +
+            "    started(t.requests, id, 'fetch ' + (input && input.url || input));" +
+            "    var end = function () { done(t.requests, id); };" +
+            "    return fetch.apply(this, arguments).then(function (r) { end(); return r; }, function (e) { end(); throw e; }); }; }" +
+            "  window.setTimeout = function (callback, delay) {" +
+            "    if (typeof callback !== 'function' || (delay || 0) > maxTimer) return t.setTimeout.apply(window, arguments);" +
+            "    var args = Array.prototype.slice.call(arguments, 2), self = this, handle;" +
+            "    handle = t.setTimeout.call(window, function () { done(t.timers, handle); callback.apply(self, args); }, delay);" +
+            "    started(t.timers, handle, 'timer ' + (delay || 0) + 'ms');" +
+            "    return handle; };" +
+            "  window.clearTimeout = function (handle) { done(t.timers, handle); return t.clearTimeout.apply(window, arguments); };" +
+            "})();";
+
+    /**
+     * Waits until nothing was pending for the quiet period, polling in the page.  Arguments: the longest timer to
+     * track, the quiet period and the timeout in ms, and the callback.  Calls back with null once idle, or with what's
+     * still pending on timeout.
+     */
+    static final String WAIT_SCRIPT = TRACKER_SCRIPT +
+            "var idle = arguments[1], timeout = arguments[2], callback = arguments[arguments.length - 1];" +
+            "var t = window.__conductorNetwork, start = Date.now();" +
+            "(function poll() {" +
+            "  var pending = [], k;" +
+            "  for (k in t.requests) pending.push(t.requests[k]);" +
+            "  for (k in t.timers) pending.push(t.timers[k]);" +
+            "  var now = Date.now();" +
+            "  if (pending.length === 0 && now - t.last >= idle) return callback(null);" +
+            "  if (now - start >= timeout) return callback(pending.length + ' pending: ' + pending.slice(0, 5).join(', '));" +
+            "  t.setTimeout.call(window, poll, Math.min(50, Math.max(10, idle / 4)));" +
+            "})();";
+
+    /**
+     * @return <code>true</code> if clicks and navigations wait for the network to be idle.
+     */
+    public static boolean isAutomatic() {
+        return Boolean.parseBoolean(JvmUtil.getJvmProperty(Constants.JVM_CONDUCTOR_WAIT_FOR_NETWORK_IDLE));
+    }
+
+    /**
+     * Track the requests of the current page from now on, without waiting.
+     * @param driver the session
+     */
+    public static void install(WebDriver driver) {
+        ((JavascriptExecutor) driver).executeScript(TRACKER_SCRIPT, MAX_TIMER_MILLIS);
+    }
+
+    /**
+     * Wait, then set the script timeout of the session back to {@value #DEFAULT_SCRIPT_TIMEOUT_MILLIS}ms.
+     * @param driver the session
+     * @param idleMillis how long nothing must be pending
+     * @param timeoutMillis how long to wait at most
+     * @return <code>null</code> once idle, or what was still pending when the wait timed out.
+     */
+    public static String await(WebDriver driver, long idleMillis, long timeoutMillis) {
+        return await(driver, idleMillis, timeoutMillis, DEFAULT_SCRIPT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param driver the session
+     * @param idleMillis how long nothing must be pending
+     * @param timeoutMillis how long to wait at most
+     * @param scriptTimeoutMillis the script timeout of the session, set back after the wait
+     * @return <code>null</code> once idle, or what was still pending when the wait timed out.
+     */
+    public static String await(WebDriver driver, long idleMillis, long timeoutMillis, long scriptTimeoutMillis) {
+        // the script must be allowed to run longer than the wait itself.
+        driver.manage().timeouts().setScriptTimeout(timeoutMillis + 5000, TimeUnit.MILLISECONDS);
+        try {
+            Object pending = ((JavascriptExecutor) driver).executeAsyncScript(WAIT_SCRIPT, MAX_TIMER_MILLIS, idleMillis, timeoutMillis);
+            return pending == null ? null : pending.toString();
+        } finally {
+            driver.manage().timeouts().setScriptTimeout(scriptTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2014-2016 Daniel Davison (http://github.com/ddavison) and Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package io.ddavison.conductor;
+
+import org.openqa.selenium.NotFoundException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The polling loop of every wait of {@link Locomotive}.<br><br>
+ * Polls run on the thread of the test, so the commands they send are watched by its {@link Watchdog} guard and traced
+ * with it, and an interrupt of the test (e.g. by the watchdog) ends the wait.  Like <code>WebDriverWait</code>, a poll
+ * that throws {@link NotFoundException} hasn't found what it waits for yet, any other exception ends the wait.
+ */
+public class Polling {
+
+    private Polling() {
+    }
+
+    /**
+     * What a wait polls for.
+     */
+    public interface Check<T> {
+        /**
+         * @return <code>null</code> or <code>false</code> if it doesn't hold yet, what the wait returns otherwise.
+         */
+        T poll();
+    }
+
+    /**
+     * Wait for a check to hold, polling it now and then every interval.
+     * @param check what to poll
+     * @param timeoutMillis how long to wait for
+     * @param intervalMillis how long between two polls
+     * @return What the check returned when it held, <code>null</code> if it didn't in time, or the thread was interrupted.
+     */
+    public static <T> T await(Check<T> check, long timeoutMillis, long intervalMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (true) {
+            try {
+                T polled = check.poll();
+                if (polled != null && !Boolean.FALSE.equals(polled)) return polled;
+            } catch (NotFoundException x) {
+                // not there yet.
+            }
+
+            long left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (left <= 0) return null;
+            try {
+                Thread.sleep(Math.min(Math.max(1, intervalMillis), left));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright 2014-2016 Daniel Davison (http://github.com/ddavison) and Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package io.ddavison.conductor;
+
+import io.ddavison.conductor.util.Histogram;
+import io.ddavison.conductor.util.JvmUtil;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.remote.service.DriverService;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * How much memory the browsers use, sampled at the end of every test, and the recycling of reused sessions that grew
+ * too big.<br><br>
+ * On with <code>CONDUCTOR_MEMORY_MONITOR=true</code>.  Two measures, each when available:
+ * <ul>
+ *     <li>the resident memory of the local driver process and everything it started (the browser and its renderers),
+ *     read from <code>/proc</code> on Linux</li>
+ *     <li>the javascript heap of the page, from <code>performance.memory</code> (Chrome)</li>
+ * </ul>
+ * A session parked by {@link SessionPool} is quit instead when its resident memory is over
+ * <code>CONDUCTOR_MAX_SESSION_MEMORY</code> MB (default {@value #DEFAULT_MAX_RSS_MB}), or when its javascript heap grew
+ * by more than <code>CONDUCTOR_MAX_HEAP_GROWTH</code> MB (default {@value #DEFAULT_MAX_HEAP_GROWTH_MB}) during the test.
+ * The next test starts a fresh browser.  Samples are added to the trace of the test, and summed up per browser when the
+ * JVM exits.
+ */
+public class SessionMemory {
+
+    private static final Logger log = LogManager.getLogger(SessionMemory.class);
+
+    public static final long DEFAULT_MAX_RSS_MB = 1024;
+    public static final long DEFAULT_MAX_HEAP_GROWTH_MB = 64;
+
+    private static final long MB = 1024 * 1024;
+
+    private static final String HEAP_SCRIPT =
+            "return window.performance && performance.memory ? performance.memory.usedJSHeapSize : null;";
+
+    private static SessionMemory instance;
+
+    private final File proc;
+    private final long maxRssBytes;
+    private final long maxHeapGrowthBytes;
+    private final ConcurrentMap<String, Histogram> rss = new ConcurrentHashMap<String, Histogram>();
+    private final ConcurrentMap<String, Histogram> heap = new ConcurrentHashMap<String, Histogram>();
+    private final AtomicInteger recycled = new AtomicInteger();
+    // the pid of a driver process never changes, and finding it reads every fd of every process.
+    private final Map<DriverService, Integer> driverPids = Collections.synchronizedMap(new WeakHashMap<DriverService, Integer>());
+
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(JvmUtil.getJvmProperty(Constants.JVM_CONDUCTOR_MEMORY_MONITOR));
+    }
+
+    public static synchronized SessionMemory get() {
+        if (instance == null) {
+            instance = new SessionMemory(new File("/proc"),
+                    megabytes(Constants.JVM_CONDUCTOR_MAX_SESSION_MEMORY, DEFAULT_MAX_RSS_MB) * MB,
+                    megabytes(Constants.JVM_CONDUCTOR_MAX_HEAP_GROWTH, DEFAULT_MAX_HEAP_GROWTH_MB) * MB);
+
+            Runtime.getRuntime().addShutdownHook(new Thread("conductor-session-memory") {
+                @Override
+                public void run() {
+                    String report = instance.report();
+                    if (!report.isEmpty()) log.info(report);
+                }
+            });
+        }
+        return instance;
+    }
+
+    SessionMemory(File proc, long maxRssBytes, long maxHeapGrowthBytes) {
+        this.proc = proc;
+        this.maxRssBytes = maxRssBytes;
+        this.maxHeapGrowthBytes = maxHeapGrowthBytes;
+    }
+
+    private static long megabytes(String property, long defaultValue) {
+        String value = JvmUtil.getJvmProperty(property);
+        return StringUtils.isEmpty(value) ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    /**
+     * @param browser what the sample is summed up under, e.g. the browser's name
+     * @param driver the session
+     * @param service its local driver process, <code>null</code> for remote and shared sessions: their memory can't be
+     *                told apart from the other sessions'.
+     * @return The memory of the session now.
+     */
+    public Sample sample(String browser, WebDriver driver, DriverService service) {
+        long rssBytes = -1;
+        if (service != null && service.getUrl() != null) rssBytes = treeRss(service);
+
+        long heapBytes = -1;
+        if (driver instanceof JavascriptExecutor) try {
+            Object used = ((JavascriptExecutor) driver).executeScript(HEAP_SCRIPT);
+            if (used instanceof Number) heapBytes = ((Number) used).longValue();
+        } catch (RuntimeException x) {
+            log.debug("Couldn't read the javascript heap: " + x.getMessage());
+        }
+
+        Sample sample = new Sample(rssBytes, heapBytes);
+        if (rssBytes >= 0) Histogram.in(rss, browser).record(rssBytes / MB);
+        if (heapBytes >= 0) Histogram.in(heap, browser).record(heapBytes / MB);
+        return sample;
+    }
+
+    /**
+     * @param now the memory of the session at the end of the test
+     * @param before its memory at the end of the previous test, <code>null</code> for a new session
+     * @return Why the session should be quit rather than reused, <code>null</code> if it can be reused.
+     */
+    public String recycleReason(Sample now, Sample before) {
+        String reason = null;
+        if (now.rssBytes > maxRssBytes) {
+            reason = String.format("%dMB resident, over %dMB", now.rssBytes / MB, maxRssBytes / MB);
+        } else if (before != null && now.heapBytes >= 0 && before.heapBytes >= 0
+                && now.heapBytes - before.heapBytes > maxHeapGrowthBytes) {
+            reason = String.format("javascript heap grew by %dMB, over %dMB", (now.heapBytes - before.heapBytes) / MB, maxHeapGrowthBytes / MB);
+        }
+        if (reason != null) recycled.incrementAndGet();
+        return reason;
+    }
+
+    /**
+     * @return The memory of the browsers per browser, and how many sessions were recycled.  Empty if nothing was sampled.
+     */
+    public String report() {
+        if (rss.isEmpty() && heap.isEmpty()) return "";
+
+        StringBuilder sb = new StringBuilder("\n=== Browser memory (MB) ===\n");
+        for (Map.Entry<String, Histogram> entry : new TreeMap<String, Histogram>(rss).entrySet()) {
+            sb.append(line(entry.getKey() + " resident", entry.getValue()));
+        }
+        for (Map.Entry<String, Histogram> entry : new TreeMap<String, Histogram>(heap).entrySet()) {
+            sb.append(line(entry.getKey() + " js heap", entry.getValue()));
+        }
+        sb.append(String.format("\t%d sessions recycled\n", recycled.get()));
+        return sb.toString();
+    }
+
+    private static String line(String name, Histogram histogram) {
+        return String.format("\t%-24s n=%-5d p50=%-6d p90=%-6d max=%d\n", name, histogram.getCount(),
+                histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(90), histogram.getMax());
+    }
+
+    /**
+     * @param service a local driver process
+     * @return The resident memory of the process and its descendants, in bytes.  -1 if unknown, e.g. not on Linux.
+     */
+    long treeRss(DriverService service) {
+        if (!new File(proc, "net/tcp").isFile()) return -1;
+        int port = service.getUrl().getPort();
+        try {
+            Integer pid = driverPids.get(service);
+            if (pid == null || !new File(proc, String.valueOf(pid)).isDirectory()) {
+                pid = listeningPid(port);
+                if (pid < 0) return -1;
+                driverPids.put(service, pid);
+            }
+
+            Map<Integer, List<Integer>> children = children();
+            long total = 0;
+            Deque<Integer> tree = new ArrayDeque<Integer>();
+            tree.add(pid);
+            while (!tree.isEmpty()) {
+                int next = tree.poll();
+                total += rss(next);
+                List<Integer> of = children.get(next);
+                if (of != null) tree.addAll(of);
+            }
+            return total;
+        } catch (IOException e) {
+            log.debug("Couldn't read the memory of the driver process on port " + port + ": " + e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * @return The process listening on the local port, -1 if not found.
+     */
+    int listeningPid(int port) throws IOException {
+        String inode = null;
+        for (String table : new String[] { "net/tcp", "net/tcp6" }) {
+            File file = new File(proc, table);
+            if (!file.isFile()) continue;
+            for (String line : Files.readAllLines(file.toPath(), StandardCharsets.US_ASCII)) {
+                String[] fields = line.trim().split("\\s+");
+                // sl local_address rem_address st ... inode; 0A is LISTEN
+                if (fields.length < 10 || !"0A".equals(fields[3])) continue;
+                String local = fields[1];
+                if (Integer.parseInt(local.substring(local.indexOf(':') + 1), 16) == port) {
+                    inode = fields[9];
+                    break;
+                }
+            }
+            if (inode != null) break;
+        }
+        if (inode == null) return -1;
+
+        String socket = "socket:[" + inode + "]";
+        for (int pid : pids()) {
+            File[] fds = new File(proc, pid + "/fd").listFiles();
+            if (fds == null) continue;
+            for (File fd : fds) {
+                try {
+                    if (socket.equals(Files.readSymbolicLink(fd.toPath()).toString())) return pid;
+                } catch (IOException | UnsupportedOperationException e) {
+                    // gone, or not ours to read.
+                }
+            }
+        }
+        return -1;
+    }
+
+    private Map<Integer, List<Integer>> children() {
+        Map<Integer, List<Integer>> children = new HashMap<Integer, List<Integer>>();
+        for (int pid : pids()) {
+            try {
+                String stat = new String(Files.readAllBytes(new File(proc, pid + "/stat").toPath()), StandardCharsets.US_ASCII);
+                // pid (comm) state ppid ...: the name may contain spaces and parentheses.
+                String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+                int ppid = Integer.parseInt(fields[1]);
+                List<Integer> of = children.get(ppid);
+                if (of == null) children.put(ppid, of = new ArrayList<Integer>());
+                of.add(pid);
+            } catch (IOException | RuntimeException e) {
+                // exited meanwhile.
+            }
+        }
+        return children;
+    }
+
+    private long rss(int pid) {
+        try {
+            for (String line : Files.readAllLines(new File(proc, pid + "/status").toPath(), StandardCharsets.US_ASCII)) {
+                if (line.startsWith("VmRSS:")) return Long.parseLong(line.substring(6).replace("kB", "").trim()) * 1024;
+            }
+        } catch (IOException | RuntimeException e) {
+            // exited meanwhile.
+        }
+        return 0;
+    }
+
+    private List<Integer> pids() {
+        List<Integer> pids = new ArrayList<Integer>();
+        String[] names = proc.list();
+        if (names == null) return pids;
+        for (String name : names) {
+            if (StringUtils.isNumeric(name)) pids.add(Integer.parseInt(name));
+        }
+        return pids;
+    }
+
+    /**
+     * The memory of a session at one point.
+     */
+    public static class Sample {
+        private final long rssBytes;
+        private final long heapBytes;
+
+        public Sample(long rssBytes, long heapBytes) {
+            this.rssBytes = rssBytes;
+            this.heapBytes = heapBytes;
+        }
+
+        /**
+         * @return The resident memory of the driver process and the browser, -1 if unknown.
+         */
+        public long getRssBytes() {
+            return rssBytes;
+        }
+
+        /**
+         * @return The javascript heap of the page, -1 if unknown.
+         */
+        public long getHeapBytes() {
+            return heapBytes;
+        }
+
+        @Override
+        public String toString() {
+            return (rssBytes < 0 ? "?" : rssBytes / MB) + "MB resident, " + (heapBytes < 0 ? "?" : heapBytes / MB) + "MB js heap";
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2014-2016 Daniel Davison (http://github.com/ddavison) and Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package io.ddavison.conductor;
+
+import io.ddavison.conductor.profile.ProfileTemplates;
+import io.ddavison.conductor.util.JvmUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.remote.service.DriverService;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Browser sessions kept alive between tests, opt-in with <code>CONDUCTOR_REUSE_SESSIONS=true</code>.<br><br>
+ * When a test is over its session is cleaned and parked, keyed by
+ * {@link LocomotiveConfig#sessionKey()}; the next test with the same browser and hub takes it instead of starting
+ * a browser.  Run the tests with {@link ConductorSuite} so that tests sharing a session run one after the other.
+ * Cleaning closes the windows the test opened, clears the storage and the cookies of the page it ended on, and leaves
+ * the browser on <code>about:blank</code>; a session that can't be cleaned is quit instead.
+ * Parked sessions are quit when the JVM exits, and the copies of the profile template they use deleted.  With {@link SessionMemory} on, sessions that grew too big are quit
+ * instead of parked.
+ */
+public class SessionPool {
+
+    private static final Logger log = LogManager.getLogger(SessionPool.class);
+
+    private static final String CLEAR_STORAGE =
+            "try { window.localStorage.clear(); } catch (e) {} try { window.sessionStorage.clear(); } catch (e) {}";
+
+    private static SessionPool instance;
+
+    private final Map<String, Deque<Session>> idle = new HashMap<String, Deque<Session>>();
+    private int reused;
+    private int parked;
+
+    /**
+     * @return <code>true</code> when tests reuse sessions.
+     */
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(JvmUtil.getJvmProperty(Constants.JVM_CONDUCTOR_REUSE_SESSIONS));
+    }
+
+    public static synchronized SessionPool get() {
+        if (instance == null) {
+            instance = new SessionPool();
+
+            Runtime.getRuntime().addShutdownHook(new Thread("conductor-session-pool-shutdown") {
+                @Override
+                public void run() {
+                    instance.quitAll();
+                }
+            });
+        }
+        return instance;
+    }
+
+    SessionPool() {
+    }
+
+    /**
+     * @param key the session key of the test
+     * @return an idle session for the key, <code>null</code> if there's none.
+     */
+    synchronized Session take(String key) {
+        Deque<Session> sessions = idle.get(key);
+        Session session = sessions == null ? null : sessions.pollFirst();
+        if (session != null) reused++;
+        return session;
+    }
+
+    /**
+     * Park a session once its test is over.
+     * @param key the session key of the test
+     * @param driver the session
+     * @param service its local driver process, <code>null</code> for remote sessions
+     * @param memory its memory at the end of the test, <code>null</code> if not sampled
+     * @param profile the copy of the profile template it uses, <code>null</code> if none
+     * @return <code>false</code> if the session couldn't be cleaned, and should be quit instead.
+     */
+    boolean release(String key, WebDriver driver, DriverService service, SessionMemory.Sample memory,
+                    ProfileTemplates.Profile profile) {
+        try {
+            clean(driver);
+        } catch (RuntimeException x) {
+            log.debug("Not reusing a session that couldn't be cleaned: " + x.getMessage());
+            return false;
+        }
+
+        synchronized (this) {
+            Deque<Session> sessions = idle.get(key);
+            if (sessions == null) {
+                sessions = new ArrayDeque<Session>();
+                idle.put(key, sessions);
+            }
+            sessions.addFirst(new Session(driver, service, memory, profile));
+            parked++;
+        }
+        return true;
+    }
+
+    /**
+     * Leave the session as a new one: a single window on <code>about:blank</code>, without the cookies and the storage
+     * of the page the test ended on.
+     */
+    static void clean(WebDriver driver) {
+        String main = driver.getWindowHandle();
+        for (String handle : driver.getWindowHandles()) {
+            if (handle.equals(main)) continue;
+            driver.switchTo().window(handle);
+            driver.close();
+        }
+        driver.switchTo().window(main);
+        driver.switchTo().defaultContent();
+
+        if (driver instanceof JavascriptExecutor) ((JavascriptExecutor) driver).executeScript(CLEAR_STORAGE);
+        driver.manage().deleteAllCookies();
+        driver.get("about:blank");
+    }
+
+    /**
+     * Quit every idle session.
+     */
+    public void quitAll() {
+        List<Session> sessions = new ArrayList<Session>();
+        synchronized (this) {
+            for (Deque<Session> deque : idle.values()) sessions.addAll(deque);
+            idle.clear();
+            if (parked > 0) log.info(String.format("Session pool: %d sessions reused, %d quit at the end", reused, sessions.size()));
+        }
+
+        for (Session session : sessions) {
+            try {
+                session.driver.quit();
+            } catch (RuntimeException x) {
+                log.debug("Couldn't quit an idle session: " + x.getMessage());
+            }
+            if (session.profile != null) session.profile.delete();
+        }
+    }
+
+    static class Session {
+        final WebDriver driver;
+        final DriverService service;
+        final SessionMemory.Sample memory;
+        final ProfileTemplates.Profile profile;
+
+        Session(WebDriver driver, DriverService service, SessionMemory.Sample memory, ProfileTemplates.Profile profile) {
+            this.driver = driver;
+            this.service = service;
+            this.memory = memory;
+            this.profile = profile;
+        }
+    }
+}
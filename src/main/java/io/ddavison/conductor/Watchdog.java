@@ -0,0 +1,260 @@
+/*
+ * Copyright 2014-2016 Daniel Davison (http://github.com/ddavison) and Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package io.ddavison.conductor;
+
+import io.ddavison.conductor.util.JvmUtil;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.remote.service.DriverService;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reclaims browsers whose test is stuck.<br><br>
+ * Every {@link Locomotive} registers its session, with a deadline for the whole test and one for any single WebDriver
+ * command.  A single daemon thread checks the deadlines; when one passes, the stuck command is reported along with what
+ * the test thread is doing, the test thread is interrupted, the session is quit (releasing the grid slot) and, for local
+ * browsers, the driver process is killed so that the stuck call returns.
+ * <br><br>
+ * Deadlines are in seconds, set with <code>CONDUCTOR_TEST_TIMEOUT</code> (default {@value #DEFAULT_TEST_TIMEOUT}) and
+ * <code>CONDUCTOR_COMMAND_TIMEOUT</code> (default {@value #DEFAULT_COMMAND_TIMEOUT}). 0 disables a deadline.
+ */
+public class Watchdog {
+
+    private static final Logger log = LogManager.getLogger(Watchdog.class);
+
+    public static final long DEFAULT_TEST_TIMEOUT = 900;
+    public static final long DEFAULT_COMMAND_TIMEOUT = 300;
+
+    // how long quitting a stuck session may take before the driver process is killed anyway.
+    private static final long QUIT_GRACE_SECONDS = 10;
+
+    private static Watchdog instance;
+
+    private final ConcurrentMap<Thread, Guard> guards = new ConcurrentHashMap<Thread, Guard>();
+    private final ScheduledExecutorService checker;
+    private final ExecutorService reaper;
+
+    public static synchronized Watchdog get() {
+        if (instance == null) instance = new Watchdog();
+        return instance;
+    }
+
+    private Watchdog() {
+        this(TimeUnit.SECONDS.toMillis(1));
+    }
+
+    Watchdog(long checkIntervalMillis) {
+        checker = Executors.newSingleThreadScheduledExecutor(daemon("conductor-watchdog"));
+        reaper = Executors.newCachedThreadPool(daemon("conductor-watchdog-reaper"));
+
+        checker.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                check();
+            }
+        }, checkIntervalMillis, checkIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Start guarding the session of the current test thread.
+     * @param name what to call the test in reports
+     * @param driver the session
+     * @param service the local driver process, <code>null</code> for remote sessions
+     * @return the guard, to {@link Guard#close()} when the test is over
+     */
+    public Guard guard(String name, WebDriver driver, DriverService service) {
+        return guard(name, driver, service,
+                TimeUnit.SECONDS.toMillis(seconds(Constants.JVM_CONDUCTOR_TEST_TIMEOUT, DEFAULT_TEST_TIMEOUT)),
+                TimeUnit.SECONDS.toMillis(seconds(Constants.JVM_CONDUCTOR_COMMAND_TIMEOUT, DEFAULT_COMMAND_TIMEOUT)));
+    }
+
+    Guard guard(String name, WebDriver driver, DriverService service, long testTimeoutMillis, long commandTimeoutMillis) {
+        Guard guard = new Guard(Thread.currentThread(), name, driver, service, testTimeoutMillis, commandTimeoutMillis);
+        guards.put(guard.thread, guard);
+        return guard;
+    }
+
+    /**
+     * Called by the transport when a WebDriver command is sent from the current thread.
+     * @param command e.g. <code>POST /session/:sessionId/element</code>
+     */
+    public static void commandStarted(String command) {
+        Watchdog watchdog = instance;
+        if (watchdog == null) return;
+        Guard guard = watchdog.guards.get(Thread.currentThread());
+        if (guard != null) guard.commandStarted(command);
+    }
+
+    /**
+     * Called by the transport when the current thread gets the response of its command.
+     */
+    public static void commandFinished() {
+        Watchdog watchdog = instance;
+        if (watchdog == null) return;
+        Guard guard = watchdog.guards.get(Thread.currentThread());
+        if (guard != null) guard.commandFinished();
+    }
+
+    private void check() {
+        long now = System.currentTimeMillis();
+        for (final Guard guard : guards.values()) {
+            final String reason = guard.overdue(now);
+            if (reason == null) continue;
+
+            final StackTraceElement[] stack = guard.thread.getStackTrace();
+            if (!guard.reclaim(reason)) continue;
+            reaper.submit(new Runnable() {
+                @Override
+                public void run() {
+                    reclaim(guard, reason, stack);
+                }
+            });
+        }
+    }
+
+    private void reclaim(final Guard guard, String reason, StackTraceElement[] stack) {
+        StringBuilder report = new StringBuilder(String.format("Watchdog: reclaiming the session of %s, %s.", guard.name, reason));
+        for (StackTraceElement frame : stack) report.append("\n\tat ").append(frame);
+        log.fatal(report.toString());
+
+        Future<?> quit = reaper.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    guard.driver.quit();
+                } catch (Exception x) {
+                    log.warn("Couldn't quit the session of " + guard.name + ": " + x.getMessage());
+                }
+            }
+        });
+
+        try {
+            quit.get(QUIT_GRACE_SECONDS, TimeUnit.SECONDS);
+        } catch (Exception x) {
+            quit.cancel(true);
+            log.warn("Quitting the session of " + guard.name + " is stuck too.");
+        } finally {
+            // kills the driver process, so that the stuck call on the test thread returns.
+            if (guard.service != null) guard.service.stop();
+        }
+    }
+
+    private static long seconds(String property, long defaultValue) {
+        String value = JvmUtil.getJvmProperty(property);
+        if (StringUtils.isEmpty(value)) return defaultValue;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn(String.format("Ignoring %s=%s, not a number. Using %d", property, value, defaultValue));
+            return defaultValue;
+        }
+    }
+
+    private static ThreadFactory daemon(final String name) {
+        return new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * The deadlines of one session.
+     */
+    public class Guard {
+        private final Thread thread;
+        private final String name;
+        private final WebDriver driver;
+        private final DriverService service;
+        private final long testDeadline;
+        private final long commandTimeout;
+
+        private volatile String command;
+        private volatile long commandStart;
+        private volatile String reclaimed;
+        private boolean closed;
+
+        Guard(Thread thread, String name, WebDriver driver, DriverService service, long testTimeoutMillis, long commandTimeoutMillis) {
+            this.thread = thread;
+            this.name = name;
+            this.driver = driver;
+            this.service = service;
+            this.testDeadline = testTimeoutMillis > 0 ? System.currentTimeMillis() + testTimeoutMillis : Long.MAX_VALUE;
+            this.commandTimeout = commandTimeoutMillis;
+        }
+
+        void commandStarted(String command) {
+            this.commandStart = System.currentTimeMillis();
+            this.command = command;
+        }
+
+        void commandFinished() {
+            this.command = null;
+        }
+
+        String overdue(long now) {
+            String current = command;
+            if (current != null && commandTimeout > 0 && now - commandStart > commandTimeout) {
+                return String.format("command [%s] has been running for %ds", current, (now - commandStart) / 1000);
+            }
+            if (now > testDeadline) {
+                return current == null
+                        ? "the test exceeded its deadline"
+                        : String.format("the test exceeded its deadline during command [%s]", current);
+            }
+            return null;
+        }
+
+        /**
+         * @return Why the watchdog reclaimed the session, or <code>null</code> if it didn't.
+         */
+        public String reclaimed() {
+            return reclaimed;
+        }
+
+        /**
+         * Interrupt the test thread, unless the test is already over.
+         * @return <code>false</code> if the guard was closed first.
+         */
+        synchronized boolean reclaim(String reason) {
+            if (closed) return false;
+            guards.remove(thread, this);
+            reclaimed = reason;
+            thread.interrupt(); // wakes up waits and sleeps
+            return true;
+        }
+
+        /**
+         * Stop guarding the session, the test is over.  Called on the test thread, it clears the interrupt of a
+         * reclaimed session, so that the waits of the next test on the thread don't end at once.
+         */
+        public synchronized void close() {
+            closed = true;
+            guards.remove(thread, this);
+            if (reclaimed != null && Thread.currentThread() == thread) Thread.interrupted();
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package io.ddavison.conductor.artifacts;
+
+import com.google.common.io.BaseEncoding;
+import io.ddavison.conductor.Action;
+import io.ddavison.conductor.ConductorListener;
+import io.ddavison.conductor.Constants;
+import io.ddavison.conductor.Locomotive;
+import io.ddavison.conductor.util.JvmUtil;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.TakesScreenshot;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.logging.LogEntry;
+import org.openqa.selenium.logging.LogType;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Captures what the browser looked like when an action of a test failed: screenshot, page source, url, windows and
+ * browser console.  Only the first failure of a test is captured.<br><br>
+ * The test thread only grabs the raw data from the browser; decoding, compressing and writing the files is done by a
+ * small pool of background threads with a bounded queue.  When the queue is full the test thread writes its own
+ * artifacts, so a broken environment failing every test can't pile up screenshots in memory.  Queued artifacts are
+ * written before the JVM exits.<br><br>
+ * On by default, written to {@value Constants#DEFAULT_FAILURE_ARTIFACTS}/&lt;test&gt;.
+ * <code>CONDUCTOR_FAILURE_ARTIFACTS=&lt;directory&gt;</code> writes them elsewhere, <code>false</code> turns them off.
+ */
+public class FailureArtifacts {
+
+    private static final Logger log = LogManager.getLogger(FailureArtifacts.class);
+
+    public static final int DEFAULT_THREADS = 2;
+    public static final int DEFAULT_QUEUE_CAPACITY = 16;
+
+    private static FailureArtifacts instance;
+
+    private final File directory;
+    private final ThreadPoolExecutor pipeline;
+    private final Set<String> captured = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final AtomicInteger written = new AtomicInteger();
+    private boolean installed;
+
+    public static boolean isEnabled() {
+        return !"false".equalsIgnoreCase(JvmUtil.getJvmProperty(Constants.JVM_CONDUCTOR_FAILURE_ARTIFACTS));
+    }
+
+    public static synchronized FailureArtifacts get() {
+        if (instance == null) {
+            String directory = JvmUtil.getJvmProperty(Constants.JVM_CONDUCTOR_FAILURE_ARTIFACTS);
+            if (StringUtils.isEmpty(directory) || "true".equalsIgnoreCase(directory)) directory = Constants.DEFAULT_FAILURE_ARTIFACTS;
+            instance = new FailureArtifacts(new File(directory), DEFAULT_THREADS, DEFAULT_QUEUE_CAPACITY);
+        }
+        return instance;
+    }
+
+    FailureArtifacts(File directory, int threads, int capacity) {
+        this.directory = directory;
+        final AtomicInteger count = new AtomicInteger();
+        this.pipeline = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(capacity),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "conductor-failure-artifacts-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Capture the failed actions of every test, and write what's queued when the JVM exits.
+     */
+    public synchronized void install() {
+        if (installed) return;
+        installed = true;
+
+        Locomotive.addListener(new ConductorListener() {
+            @Override
+            public void actionStarted(Action action) {
+            }
+
+            @Override
+            public void actionFinished(Action action) {
+                if (action.getFailure() != null) capture(action.getLocomotive(), action.toString(), action.getFailure());
+            }
+        });
+        Runtime.getRuntime().addShutdownHook(new Thread("conductor-failure-artifacts-drain") {
+            @Override
+            public void run() {
+                drain(30, TimeUnit.SECONDS);
+            }
+        });
+    }
+
+    /**
+     * Grab the state of the browser, and queue it to be written.  Does nothing if the test was already captured.
+     * @param locomotive the failing test
+     * @param action what failed, e.g. <code>validatePresent By.cssSelector: #total</code>
+     * @param failure why
+     */
+    public void capture(Locomotive locomotive, String action, Throwable failure) {
+        final String test = locomotive.getTestName();
+        if (!captured.add(test)) return;
+
+        final Grab grab = Grab.from(locomotive.driver, action, failure);
+        pipeline.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    write(test, grab);
+                    written.incrementAndGet();
+                } catch (IOException e) {
+                    log.warn("Couldn't write the failure artifacts of " + test + ": " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * @return The directory of the artifacts of a test.
+     */
+    public File directoryOf(String test) {
+        return new File(directory, test.replaceAll("[^A-Za-z0-9._#\\[\\]-]", "_"));
+    }
+
+    /**
+     * Write everything queued, and stop.
+     */
+    void drain(long timeout, TimeUnit unit) {
+        pipeline.shutdown();
+        try {
+            if (!pipeline.awaitTermination(timeout, unit)) log.warn("Gave up writing failure artifacts after " + unit.toSeconds(timeout) + "s");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (written.get() > 0) log.info(String.format("Failure artifacts of %d tests written to %s", written.get(), directory.getAbsolutePath()));
+    }
+
+    private void write(String test, Grab grab) throws IOException {
+        File dir = directoryOf(test);
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Couldn't create " + dir);
+
+        PrintWriter failure = new PrintWriter(new OutputStreamWriter(new FileOutputStream(new File(dir, "failure.txt")), "UTF-8"));
+        try {
+            failure.println("Test:    " + test);
+            failure.println("Action:  " + grab.action);
+            failure.println("Time:    " + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(new Date(grab.time)));
+            failure.println("Url:     " + grab.url);
+            failure.println("Windows: " + grab.windows);
+            failure.println();
+            grab.failure.printStackTrace(failure);
+        } finally {
+            failure.close();
+        }
+
+        if (grab.screenshot != null) {
+            OutputStream out = new FileOutputStream(new File(dir, "screenshot.png"));
+            try {
+                out.write(BaseEncoding.base64().decode(grab.screenshot));
+            } finally {
+                out.close();
+            }
+        }
+
+        if (grab.source != null) {
+            Writer out = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(new File(dir, "page.html.gz"))), "UTF-8");
+            try {
+                out.write(grab.source);
+            } finally {
+                out.close();
+            }
+        }
+
+        if (grab.console != null && !grab.console.isEmpty()) {
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(new File(dir, "console.log")), "UTF-8"));
+            try {
+                SimpleDateFormat format = new SimpleDateFormat("HH:mm:ss.SSS");
+                for (LogEntry entry : grab.console) {
+                    out.println(format.format(new Date(entry.getTimestamp())) + " " + entry.getLevel() + " " + entry.getMessage());
+                }
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * The raw state of the browser, as fetched from it: nothing decoded nor formatted.
+     */
+    static class Grab {
+        final String action;
+        final Throwable failure;
+        final long time = System.currentTimeMillis();
+        String url;
+        Set<String> windows;
+        String screenshot;
+        String source;
+        List<LogEntry> console;
+
+        Grab(String action, Throwable failure) {
+            this.action = action;
+            this.failure = failure;
+        }
+
+        /**
+         * Every part is optional: the session may be gone, or the browser may not support it.
+         */
+        static Grab from(WebDriver driver, String action, Throwable failure) {
+            Grab grab = new Grab(action, failure);
+            if (driver == null) return grab;
+
+            try {
+                grab.url = driver.getCurrentUrl();
+                grab.windows = driver.getWindowHandles();
+            } catch (RuntimeException x) {
+                log.debug("Couldn't get the url of a failed test: " + x.getMessage());
+            }
+            if (driver instanceof TakesScreenshot) try {
+                grab.screenshot = ((TakesScreenshot) driver).getScreenshotAs(OutputType.BASE64);
+            } catch (RuntimeException x) {
+                log.debug("Couldn't take a screenshot of a failed test: " + x.getMessage());
+            }
+            try {
+                grab.source = driver.getPageSource();
+            } catch (RuntimeException x) {
+                log.debug("Couldn't get the page source of a failed test: " + x.getMessage());
+            }
+            try {
+                grab.console = new ArrayList<LogEntry>(driver.manage().logs().get(LogType.BROWSER).getAll());
+            } catch (RuntimeException x) {
+                // not every browser keeps its console.
+            }
+            return grab;
+        }
+    }
+}
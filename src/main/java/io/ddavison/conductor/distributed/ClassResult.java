@@ -0,0 +1,40 @@
+package io.ddavison.conductor.distributed;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The outcome of one test class, as run by a worker.
+ */
+public class ClassResult {
+    public final String testClass;
+    public final String worker;
+    public final int runCount;
+    public final int failureCount;
+    public final int ignoreCount;
+    public final long millis;
+
+    /**
+     * One line per failure: <code>test header: message</code>
+     */
+    public final List<String> failures;
+
+    public ClassResult(String testClass, String worker, int runCount, int failureCount, int ignoreCount, long millis, List<String> failures) {
+        this.testClass = testClass;
+        this.worker = worker;
+        this.runCount = runCount;
+        this.failureCount = failureCount;
+        this.ignoreCount = ignoreCount;
+        this.millis = millis;
+        this.failures = new ArrayList<String>(failures);
+    }
+
+    public boolean wasSuccessful() {
+        return failureCount == 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [%s] run=%d failed=%d ignored=%d %dms", testClass, worker, runCount, failureCount, ignoreCount, millis);
+    }
+}
@@ -0,0 +1,492 @@
+package io.ddavison.conductor.distributed;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dispatches test classes to worker JVMs, on this machine or others.<br><br>
+ * Workers connect over a line based socket protocol and pull classes from a {@link WorkQueue} one at a time.
+ * A worker that stops sending heartbeats (or disconnects) is dropped, and the class it was running is given to another
+ * worker.  Results of every worker are aggregated here, and class durations are saved to schedule the next run better.
+ * <br><br>
+ * Running everything locally:
+ * <blockquote><code>java -cp &lt;test classpath&gt; io.ddavison.conductor.distributed.Coordinator --workers 4 com.acme.LoginTest com.acme.CartTest</code></blockquote>
+ * Workers on other machines join with {@link Worker}: <code>java -cp ... io.ddavison.conductor.distributed.Worker &lt;coordinator host&gt; &lt;port&gt;</code>
+ * <br><br>
+ * Protocol (worker &rarr; coordinator, tab separated):
+ * <ul>
+ *     <li><code>HELLO name</code> &rarr; <code>OK</code></li>
+ *     <li><code>PULL</code> &rarr; <code>RUN class</code>, <code>WAIT</code> (work may come back from a dead worker) or <code>DONE</code></li>
+ *     <li><code>FAILURE class test message</code> (any number, before the result)</li>
+ *     <li><code>RESULT class runCount failureCount ignoreCount millis</code></li>
+ *     <li><code>HEARTBEAT</code></li>
+ * </ul>
+ */
+public class Coordinator {
+
+    private static final Logger log = LogManager.getLogger(Coordinator.class);
+
+    static final String HELLO = "HELLO";
+    static final String OK = "OK";
+    static final String PULL = "PULL";
+    static final String RUN = "RUN";
+    static final String WAIT = "WAIT";
+    static final String DONE = "DONE";
+    static final String FAILURE = "FAILURE";
+    static final String RESULT = "RESULT";
+    static final String HEARTBEAT = "HEARTBEAT";
+    static final String SEPARATOR = "\t";
+
+    public static final long DEFAULT_HEARTBEAT_TIMEOUT = 15000;
+
+    /**
+     * How long {@link #main(String[])} waits for the whole run, in minutes.
+     */
+    public static final long DEFAULT_RUN_TIMEOUT = 120;
+
+    /**
+     * How many workers may die running the same class before it is reported as failed.
+     */
+    public static final int MAX_ATTEMPTS = 2;
+
+    private final Set<String> classes;
+    private final WorkQueue queue;
+    private final long heartbeatTimeout;
+    private final File durationsFile;
+    private final Map<String, Long> durations;
+
+    private final Map<String, ClassResult> results = Collections.synchronizedMap(new LinkedHashMap<String, ClassResult>());
+    private final Map<String, Integer> attempts = new ConcurrentHashMap<String, Integer>();
+    private final Map<String, Connection> connections = new ConcurrentHashMap<String, Connection>();
+    private final AtomicInteger workerCount = new AtomicInteger();
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    private final ServerSocket server;
+    private final ScheduledExecutorService monitor;
+
+    /**
+     * @param port the port to listen on, 0 for any free port
+     * @param classes the test classes to run
+     * @param heartbeatTimeout how long a worker may stay silent before it's considered dead, in ms
+     * @param durationsFile where class durations are kept between runs, may be <code>null</code>
+     * @throws IOException if the port can't be bound
+     */
+    public Coordinator(int port, Collection<String> classes, long heartbeatTimeout, File durationsFile) throws IOException {
+        this.classes = new LinkedHashSet<String>(classes);
+        this.heartbeatTimeout = heartbeatTimeout;
+        this.durationsFile = durationsFile;
+        this.durations = loadDurations(durationsFile);
+        this.queue = new WorkQueue(this.classes, durations);
+        this.server = new ServerSocket(port);
+        this.monitor = Executors.newSingleThreadScheduledExecutor(daemon("conductor-coordinator-monitor"));
+
+        if (this.classes.isEmpty()) done.countDown();
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Start accepting workers.
+     * @return this
+     */
+    public Coordinator start() {
+        Thread acceptor = daemon("conductor-coordinator").newThread(new Runnable() {
+            @Override
+            public void run() {
+                while (!server.isClosed()) {
+                    try {
+                        final Socket socket = server.accept();
+                        daemon("conductor-coordinator-worker").newThread(new Runnable() {
+                            @Override
+                            public void run() {
+                                serve(socket);
+                            }
+                        }).start();
+                    } catch (IOException e) {
+                        if (!server.isClosed()) log.error("Couldn't accept a worker", e);
+                    }
+                }
+            }
+        });
+        acceptor.start();
+
+        monitor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                long now = System.currentTimeMillis();
+                for (Connection connection : connections.values()) {
+                    if (now - connection.lastSeen > Coordinator.this.heartbeatTimeout) {
+                        lost(connection, "no heartbeat for " + (now - connection.lastSeen) + "ms");
+                    }
+                }
+            }
+        }, 250, 250, TimeUnit.MILLISECONDS);
+
+        log.info(String.format("Coordinator listening on port %d for %d test classes", getPort(), classes.size()));
+        return this;
+    }
+
+    /**
+     * Wait for every class to have a result.
+     * @param timeout how long to wait
+     * @param unit unit of the timeout
+     * @return the results, in the order they came in. Classes without a result yet are missing.
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public List<ClassResult> await(long timeout, TimeUnit unit) throws InterruptedException {
+        done.await(timeout, unit);
+        synchronized (results) {
+            return new ArrayList<ClassResult>(results.values());
+        }
+    }
+
+    /**
+     * @return <code>true</code> once every class has a result.
+     */
+    public boolean isDone() {
+        return done.getCount() == 0;
+    }
+
+    /**
+     * @return How many workers are connected.
+     */
+    public int getWorkers() {
+        return connections.size();
+    }
+
+    /**
+     * Stop listening, disconnect every worker and save the class durations.
+     */
+    public void stop() {
+        monitor.shutdownNow();
+        try {
+            server.close();
+        } catch (IOException ignored) {
+        }
+        for (Connection connection : connections.values()) connection.close();
+        saveDurations();
+    }
+
+    private void serve(Socket socket) {
+        Connection connection = null;
+        try {
+            connection = new Connection(socket);
+            String hello = connection.in.readLine();
+            if (hello == null || !hello.startsWith(HELLO)) {
+                socket.close();
+                return;
+            }
+
+            connection.id = hello.substring(HELLO.length()).trim() + "#" + workerCount.incrementAndGet();
+            connections.put(connection.id, connection);
+            queue.join(connection.id);
+            connection.send(OK);
+            log.info("Worker joined: " + connection.id);
+
+            List<String> failures = new ArrayList<String>();
+            String line;
+            while ((line = connection.in.readLine()) != null) {
+                connection.lastSeen = System.currentTimeMillis();
+
+                if (line.equals(HEARTBEAT)) continue;
+
+                if (line.equals(PULL)) {
+                    String next = queue.next(connection.id);
+                    if (next != null) connection.send(RUN + SEPARATOR + next);
+                    else if (done.getCount() == 0) connection.send(DONE);
+                    else connection.send(WAIT);
+                } else if (line.startsWith(FAILURE + SEPARATOR)) {
+                    String[] parts = line.split(SEPARATOR, 4);
+                    failures.add(unescape(parts[2]) + ": " + unescape(parts.length > 3 ? parts[3] : ""));
+                } else if (line.startsWith(RESULT + SEPARATOR)) {
+                    ClassResult result;
+                    try {
+                        String[] parts = line.split(SEPARATOR);
+                        result = new ClassResult(parts[1], connection.id,
+                                Integer.parseInt(parts[2]),
+                                Integer.parseInt(parts[3]),
+                                Integer.parseInt(parts[4]),
+                                Long.parseLong(parts[5]),
+                                failures);
+                    } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                        // a worker that can't speak the protocol can't be trusted with the next class either.
+                        lost(connection, "malformed result [" + line + "]");
+                        return;
+                    }
+                    queue.finished(connection.id);
+                    complete(result);
+                    failures.clear();
+                } else {
+                    log.warn(String.format("Unexpected message from %s: %s", connection.id, line));
+                }
+            }
+            lost(connection, "disconnected");
+        } catch (IOException e) {
+            if (connection != null && connection.id != null) lost(connection, e.getMessage());
+        }
+    }
+
+    private void complete(ClassResult result) {
+        synchronized (results) {
+            if (results.containsKey(result.testClass)) return; // a worker presumed dead finished after all
+            results.put(result.testClass, result);
+            if (result.runCount > 0) durations.put(result.testClass, result.millis);
+
+            log.info(result);
+            if (results.keySet().containsAll(classes)) done.countDown();
+        }
+    }
+
+    private void lost(Connection connection, String reason) {
+        if (connections.remove(connection.id) == null) return;
+        connection.close();
+
+        String running = queue.runningOn(connection.id);
+        if (running != null) {
+            Integer count = attempts.get(running);
+            count = count == null ? 1 : count + 1;
+            attempts.put(running, count);
+
+            if (count >= MAX_ATTEMPTS) {
+                queue.leave(connection.id, false);
+                complete(new ClassResult(running, connection.id, 0, 1, 0, 0,
+                        Collections.singletonList(running + ": " + count + " workers were lost running it")));
+            } else {
+                queue.leave(connection.id, true);
+            }
+        } else {
+            queue.leave(connection.id, true);
+        }
+
+        log.warn(String.format("Worker lost: %s (%s)%s", connection.id, reason, running == null ? "" : ", requeued " + running));
+    }
+
+    private static Map<String, Long> loadDurations(File file) {
+        Map<String, Long> durations = new ConcurrentHashMap<String, Long>();
+        if (file == null || !file.isFile()) return durations;
+
+        Properties properties = new Properties();
+        try {
+            InputStream in = new FileInputStream(file);
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+            for (String name : properties.stringPropertyNames()) {
+                durations.put(name, Long.parseLong(properties.getProperty(name).trim()));
+            }
+        } catch (IOException | NumberFormatException e) {
+            log.warn("Couldn't read class durations from " + file + ": " + e.getMessage());
+        }
+        return durations;
+    }
+
+    private void saveDurations() {
+        if (durationsFile == null) return;
+
+        Properties properties = new Properties();
+        for (Map.Entry<String, Long> entry : durations.entrySet()) {
+            properties.setProperty(entry.getKey(), String.valueOf(entry.getValue()));
+        }
+        try {
+            File parent = durationsFile.getAbsoluteFile().getParentFile();
+            if (!parent.isDirectory() && !parent.mkdirs()) throw new IOException("Couldn't create " + parent);
+
+            OutputStream out = new FileOutputStream(durationsFile);
+            try {
+                properties.store(out, "conductor test class durations (ms)");
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            log.warn("Couldn't save class durations to " + durationsFile + ": " + e.getMessage());
+        }
+    }
+
+    static String escape(String value) {
+        if (value == null) return "";
+        return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    static String unescape(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != '\\' || i == value.length() - 1) {
+                sb.append(c);
+                continue;
+            }
+            char next = value.charAt(++i);
+            switch (next) {
+                case 't': sb.append('\t'); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                default:  sb.append(next);
+            }
+        }
+        return sb.toString();
+    }
+
+    static ThreadFactory daemon(final String name) {
+        return new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    private static class Connection {
+        final Socket socket;
+        final BufferedReader in;
+        final PrintWriter out;
+        volatile long lastSeen = System.currentTimeMillis();
+        volatile String id;
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+            this.out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"));
+        }
+
+        synchronized void send(String line) {
+            out.print(line);
+            out.print('\n');
+            out.flush();
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Run test classes on local worker JVMs.<br>
+     * Arguments: <code>[--workers N] [--port P] [--durations file] [--timeout minutes] class...</code><br>
+     * The run ends when every class has a result, when every worker is gone (the local ones exited, none connected),
+     * or after the timeout (default {@value #DEFAULT_RUN_TIMEOUT} minutes); classes without a result fail the run.
+     * @param args the arguments
+     * @throws Exception if the run couldn't happen
+     */
+    public static void main(String[] args) throws Exception {
+        int workers = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        int port = 0;
+        File durationsFile = new File(".conductor/durations.properties");
+        long timeoutMinutes = DEFAULT_RUN_TIMEOUT;
+        List<String> testClasses = new ArrayList<String>();
+
+        List<String> arguments = Arrays.asList(args);
+        for (int i = 0; i < arguments.size(); i++) {
+            String argument = arguments.get(i);
+            if (argument.equals("--workers")) workers = Integer.parseInt(arguments.get(++i));
+            else if (argument.equals("--port")) port = Integer.parseInt(arguments.get(++i));
+            else if (argument.equals("--durations")) durationsFile = new File(arguments.get(++i));
+            else if (argument.equals("--timeout")) timeoutMinutes = Long.parseLong(arguments.get(++i));
+            else testClasses.add(argument);
+        }
+
+        Coordinator coordinator = new Coordinator(port, testClasses, DEFAULT_HEARTBEAT_TIMEOUT, durationsFile).start();
+
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<Process> processes = new ArrayList<Process>();
+        for (int i = 0; i < workers; i++) {
+            processes.add(new ProcessBuilder(java,
+                    "-cp", System.getProperty("java.class.path"),
+                    Worker.class.getName(),
+                    InetAddress.getLoopbackAddress().getHostAddress(),
+                    String.valueOf(coordinator.getPort()),
+                    "local-" + (i + 1))
+                    .inheritIO()
+                    .start());
+        }
+
+        long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(timeoutMinutes);
+        while (!coordinator.isDone()) {
+            coordinator.await(1, TimeUnit.SECONDS);
+            if (coordinator.isDone()) break;
+            if (coordinator.getWorkers() == 0 && !anyAlive(processes)) {
+                log.error("Every worker is gone before every class ran");
+                break;
+            }
+            if (System.currentTimeMillis() > deadline) {
+                log.error(String.format("Timed out after %d minutes before every class ran", timeoutMinutes));
+                break;
+            }
+        }
+        List<ClassResult> results = coordinator.await(0, TimeUnit.MILLISECONDS);
+        coordinator.stop();
+        for (Process process : processes) process.destroy();
+
+        int run = 0, failed = 0, ignored = 0;
+        Map<String, Integer> perWorker = new HashMap<String, Integer>();
+        StringBuilder report = new StringBuilder("\n=== Results ===\n");
+        for (ClassResult result : results) {
+            run += result.runCount;
+            failed += result.failureCount;
+            ignored += result.ignoreCount;
+            Integer count = perWorker.get(result.worker);
+            perWorker.put(result.worker, count == null ? 1 : count + 1);
+
+            report.append('\t').append(result).append('\n');
+            for (String failure : result.failures) report.append("\t\t").append(failure).append('\n');
+        }
+        report.append(String.format("Tests run: %d, Failures: %d, Ignored: %d%n", run, failed, ignored));
+        report.append("Classes per worker: ").append(perWorker).append('\n');
+        System.out.println(report);
+
+        System.exit(failed == 0 && results.size() == testClasses.size() ? 0 : 1);
+    }
+
+    private static boolean anyAlive(List<Process> processes) {
+        for (Process process : processes) {
+            try {
+                process.exitValue();
+            } catch (IllegalThreadStateException e) {
+                return true; // still running
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,180 @@
+package io.ddavison.conductor.distributed;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The test classes left to run, split in one deque per worker.<br><br>
+ * Classes are dealt longest first (by their historical duration), a worker takes from the head of its own deque,
+ * and a worker whose deque is empty steals the tail half of the deque with the most work left.  Fast workers end up
+ * running more classes, and the short classes left at the end of the run keep every worker busy until the last one.
+ */
+class WorkQueue {
+
+    private static final long UNKNOWN_DURATION = TimeUnit.HOURS.toMillis(1);
+
+    private final Map<String, Long> durations;
+    private final Map<String, Deque<String>> deques = new LinkedHashMap<String, Deque<String>>();
+    private final Map<String, String> running = new HashMap<String, String>();
+    private final Deque<String> unassigned = new ArrayDeque<String>();
+
+    /**
+     * @param classes the test classes to run
+     * @param durations how long each class took on previous runs, in ms. Unknown classes are scheduled first.
+     */
+    WorkQueue(Collection<String> classes, Map<String, Long> durations) {
+        this.durations = durations;
+        unassigned.addAll(longestFirst(classes));
+    }
+
+    /**
+     * A worker joined: deal it its share of the work that isn't assigned yet.
+     * @param worker the worker id
+     */
+    synchronized void join(String worker) {
+        if (!deques.containsKey(worker)) deques.put(worker, new ArrayDeque<String>());
+        redistribute();
+    }
+
+    /**
+     * A worker left (or died): its queued classes are given back to the others.
+     * @param worker the worker id
+     * @param requeueRunning whether the class that was running on the worker should be run again
+     * @return the class that was running on the worker, <code>null</code> if none.
+     */
+    synchronized String leave(String worker, boolean requeueRunning) {
+        Deque<String> deque = deques.remove(worker);
+        String inFlight = running.remove(worker);
+
+        List<String> requeued = new ArrayList<String>();
+        if (inFlight != null && requeueRunning) requeued.add(inFlight);
+        if (deque != null) requeued.addAll(deque);
+
+        unassigned.addAll(longestFirst(requeued));
+        redistribute();
+        return inFlight;
+    }
+
+    /**
+     * @param worker the worker asking for work
+     * @return the next class for the worker, stolen from another worker if needed. <code>null</code> if there's nothing left to give out.
+     */
+    synchronized String next(String worker) {
+        Deque<String> own = deques.get(worker);
+        if (own == null) return null;
+
+        if (own.isEmpty()) steal(own);
+
+        String next = own.pollFirst();
+        if (next == null) next = unassigned.pollFirst();
+        if (next != null) running.put(worker, next);
+        return next;
+    }
+
+    /**
+     * @param worker the worker id
+     * @return the class running on the worker, <code>null</code> if none.
+     */
+    synchronized String runningOn(String worker) {
+        return running.get(worker);
+    }
+
+    /**
+     * The worker finished its running class.
+     * @param worker the worker id
+     */
+    synchronized void finished(String worker) {
+        running.remove(worker);
+    }
+
+    /**
+     * @return <code>true</code> when nothing is queued nor running anymore.
+     */
+    synchronized boolean isDrained() {
+        if (!unassigned.isEmpty() || !running.isEmpty()) return false;
+        for (Deque<String> deque : deques.values()) {
+            if (!deque.isEmpty()) return false;
+        }
+        return true;
+    }
+
+    synchronized Map<String, List<String>> snapshot() {
+        Map<String, List<String>> snapshot = new LinkedHashMap<String, List<String>>();
+        for (Map.Entry<String, Deque<String>> entry : deques.entrySet()) {
+            snapshot.put(entry.getKey(), new ArrayList<String>(entry.getValue()));
+        }
+        return snapshot;
+    }
+
+    private void steal(Deque<String> thief) {
+        Deque<String> victim = null;
+        long most = 0;
+        for (Deque<String> deque : deques.values()) {
+            long work = work(deque);
+            if (deque != thief && deque.size() > 0 && work >= most) {
+                victim = deque;
+                most = work;
+            }
+        }
+        if (victim == null) return;
+
+        // take the tail half, keeping the longest-first order
+        int count = Math.max(1, victim.size() / 2);
+        Deque<String> stolen = new ArrayDeque<String>();
+        for (int i = 0; i < count; i++) stolen.addFirst(victim.pollLast());
+        thief.addAll(stolen);
+    }
+
+    /**
+     * Deal the unassigned classes, longest first, to the worker with the least work queued.
+     */
+    private void redistribute() {
+        if (deques.isEmpty()) return;
+
+        String next;
+        while ((next = unassigned.pollFirst()) != null) {
+            Deque<String> target = null;
+            long least = Long.MAX_VALUE;
+            for (Deque<String> deque : deques.values()) {
+                long work = work(deque);
+                if (work < least) {
+                    target = deque;
+                    least = work;
+                }
+            }
+            target.addLast(next);
+        }
+    }
+
+    private long work(Deque<String> deque) {
+        long work = 0;
+        for (String testClass : deque) work += duration(testClass);
+        return work;
+    }
+
+    private long duration(String testClass) {
+        Long duration = durations.get(testClass);
+        // never run before: assume it's long, so that it isn't the one left running at the very end.
+        return duration == null ? UNKNOWN_DURATION : duration;
+    }
+
+    private List<String> longestFirst(Collection<String> classes) {
+        List<String> sorted = new ArrayList<String>(classes);
+        Collections.sort(sorted, new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                return Long.compare(duration(b), duration(a));
+            }
+        });
+        return sorted;
+    }
+}
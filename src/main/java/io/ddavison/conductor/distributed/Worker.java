@@ -0,0 +1,136 @@
+package io.ddavison.conductor.distributed;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
+import org.junit.runner.Result;
+import org.junit.runner.notification.Failure;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static io.ddavison.conductor.distributed.Coordinator.*;
+
+/**
+ * Pulls test classes from a {@link Coordinator} and runs them with JUnit, one at a time, until there are none left.
+ * <br><br>
+ * <code>java -cp &lt;test classpath&gt; io.ddavison.conductor.distributed.Worker &lt;coordinator host&gt; &lt;port&gt; [name]</code>
+ */
+public class Worker implements Runnable {
+
+    private static final Logger log = LogManager.getLogger(Worker.class);
+
+    public static final long HEARTBEAT_INTERVAL = 2000;
+
+    // how long to wait before asking again, when the remaining classes are all running elsewhere.
+    private static final long WAIT_INTERVAL = 500;
+
+    private final String host;
+    private final int port;
+    private final String name;
+
+    private PrintWriter out;
+
+    public Worker(String host, int port, String name) {
+        this.host = host;
+        this.port = port;
+        this.name = name;
+    }
+
+    @Override
+    public void run() {
+        try {
+            work();
+        } catch (IOException e) {
+            log.error(String.format("Worker %s lost the coordinator at %s:%d", name, host, port), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void work() throws IOException, InterruptedException {
+        Socket socket = new Socket(host, port);
+        ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(daemon("conductor-worker-heartbeat"));
+        try {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+            out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"));
+
+            send(HELLO + " " + name);
+            if (!OK.equals(in.readLine())) throw new IOException("The coordinator refused " + name);
+
+            heartbeat.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    send(HEARTBEAT);
+                }
+            }, HEARTBEAT_INTERVAL, HEARTBEAT_INTERVAL, TimeUnit.MILLISECONDS);
+
+            while (true) {
+                send(PULL);
+                String line = in.readLine();
+                if (line == null || line.equals(DONE)) break;
+
+                if (line.equals(WAIT)) {
+                    Thread.sleep(WAIT_INTERVAL);
+                } else if (line.startsWith(RUN + SEPARATOR)) {
+                    execute(line.substring(RUN.length() + SEPARATOR.length()));
+                }
+            }
+        } finally {
+            heartbeat.shutdownNow();
+            socket.close();
+        }
+    }
+
+    private void execute(String testClass) {
+        log.info(String.format("Worker %s running %s", name, testClass));
+        long start = System.currentTimeMillis();
+
+        Class<?> type;
+        try {
+            type = Class.forName(testClass, true, Thread.currentThread().getContextClassLoader());
+        } catch (ClassNotFoundException | LinkageError e) {
+            send(FAILURE + SEPARATOR + escape(testClass) + SEPARATOR + escape(testClass) + SEPARATOR + escape("Couldn't load: " + e));
+            send(RESULT + SEPARATOR + testClass + SEPARATOR + 0 + SEPARATOR + 1 + SEPARATOR + 0 + SEPARATOR + (System.currentTimeMillis() - start));
+            return;
+        }
+
+        Result result = new JUnitCore().run(Request.aClass(type));
+        for (Failure failure : result.getFailures()) {
+            send(FAILURE + SEPARATOR + escape(testClass) + SEPARATOR + escape(failure.getTestHeader()) + SEPARATOR + escape(failure.getMessage()));
+        }
+        send(RESULT + SEPARATOR + testClass
+                + SEPARATOR + result.getRunCount()
+                + SEPARATOR + result.getFailureCount()
+                + SEPARATOR + result.getIgnoreCount()
+                + SEPARATOR + (System.currentTimeMillis() - start));
+    }
+
+    private synchronized void send(String line) {
+        out.print(line);
+        out.print('\n');
+        out.flush();
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: Worker <coordinator host> <port> [name]");
+            System.exit(2);
+        }
+        // e.g. 12345@build-agent-3
+        String name = args.length > 2 ? args[2] : ManagementFactory.getRuntimeMXBean().getName();
+
+        new Worker(args[0], Integer.parseInt(args[1]), name).run();
+        // drivers and pools may have left non-daemon threads behind.
+        System.exit(0);
+    }
+}
@@ -0,0 +1,38 @@
+package io.ddavison.conductor.impact;
+
+import org.junit.runner.Description;
+import org.junit.runner.manipulation.Filter;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Runs only the tests impacted by a change.
+ * @see io.ddavison.conductor.ConductorSuite
+ */
+public class ImpactFilter extends Filter {
+
+    private final ImpactSelector selector;
+    private final Map<String, Set<String>> index;
+
+    public ImpactFilter(ImpactSelector selector, Map<String, Set<String>> index) {
+        this.selector = selector;
+        this.index = index;
+    }
+
+    @Override
+    public boolean shouldRun(Description description) {
+        if (description.isTest()) {
+            return selector.isImpacted(index.get(description.getClassName() + "#" + description.getMethodName()));
+        }
+        for (Description child : description.getChildren()) {
+            if (shouldRun(child)) return true;
+        }
+        return description.getChildren().isEmpty();
+    }
+
+    @Override
+    public String describe() {
+        return "tests impacted by the changes";
+    }
+}
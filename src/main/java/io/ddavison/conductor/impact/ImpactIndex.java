@@ -0,0 +1,192 @@
+package io.ddavison.conductor.impact;
+
+import io.ddavison.conductor.Action;
+import io.ddavison.conductor.ConductorListener;
+import io.ddavison.conductor.Constants;
+import io.ddavison.conductor.Locomotive;
+import io.ddavison.conductor.timing.PageTiming;
+import io.ddavison.conductor.util.JvmUtil;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.By;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * What each test touched: the url patterns it navigated to, the locators it looked up and the page objects it used.
+ * <br><br>
+ * Recording is on when <code>CONDUCTOR_IMPACT_INDEX</code> names the index file: the actions of every test are
+ * recorded through the {@link io.ddavison.conductor.Conductor} action layer, its locators by the element lookups of
+ * {@link Locomotive} (acted on, read or checked for presence alike), and the entries of the tests that ran
+ * replace theirs in the file when the JVM exits.  {@link ImpactSelector} reads it back to pick the tests impacted by a
+ * change.<br><br>
+ * One line per entry: <code>test &lt;tab&gt; kind:value</code>, with a test as <code>class#method</code> and kind one of
+ * {@value #URL}, {@value #LOCATOR} or {@value #PAGE}.
+ */
+public class ImpactIndex {
+
+    private static final Logger log = LogManager.getLogger(ImpactIndex.class);
+
+    public static final String URL = "url";
+    public static final String LOCATOR = "locator";
+    public static final String PAGE = "page";
+
+    private static final List<String> NAVIGATIONS = Arrays.asList("navigateTo", "refresh", "goBack");
+
+    private static ImpactIndex instance;
+
+    private final File file;
+    private final ConcurrentMap<String, Set<String>> recorded = new ConcurrentHashMap<String, Set<String>>();
+    private boolean installed;
+
+    public static boolean isEnabled() {
+        return StringUtils.isNotEmpty(JvmUtil.getJvmProperty(Constants.JVM_CONDUCTOR_IMPACT_INDEX));
+    }
+
+    public static synchronized ImpactIndex get() {
+        if (instance == null) instance = new ImpactIndex(new File(JvmUtil.getJvmProperty(Constants.JVM_CONDUCTOR_IMPACT_INDEX)));
+        return instance;
+    }
+
+    ImpactIndex(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Start recording the actions of every test, and save them when the JVM exits.
+     */
+    public synchronized void install() {
+        if (installed) return;
+        installed = true;
+
+        Locomotive.addListener(new Recorder());
+        Runtime.getRuntime().addShutdownHook(new Thread("conductor-impact-index") {
+            @Override
+            public void run() {
+                save();
+            }
+        });
+    }
+
+    /**
+     * Record a locator the test looked up.
+     * @param test the test, as <code>class#method</code>
+     * @param by the locator
+     */
+    public void located(String test, By by) {
+        record(test, LOCATOR, by.toString());
+    }
+
+    void record(String test, String kind, String value) {
+        Set<String> entries = recorded.get(test);
+        if (entries == null) {
+            Set<String> created = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            entries = recorded.putIfAbsent(test, created);
+            if (entries == null) entries = created;
+        }
+        entries.add(kind + ":" + value);
+    }
+
+    /**
+     * Merge the entries recorded in this JVM into the index file.
+     */
+    void save() {
+        if (recorded.isEmpty()) return;
+
+        Map<String, Set<String>> index = load(file);
+        for (Map.Entry<String, Set<String>> entry : recorded.entrySet()) {
+            index.put(entry.getKey(), new TreeSet<String>(entry.getValue()));
+        }
+
+        try {
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (!parent.isDirectory() && !parent.mkdirs()) throw new IOException("Couldn't create " + parent);
+
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+            try {
+                for (Map.Entry<String, Set<String>> test : index.entrySet()) {
+                    for (String entry : test.getValue()) out.print(test.getKey() + "\t" + entry + "\n");
+                }
+            } finally {
+                out.close();
+            }
+            log.debug(String.format("Impact index: %d tests recorded in %s", recorded.size(), file));
+        } catch (IOException e) {
+            log.warn("Couldn't save the impact index " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @param file the index file
+     * @return Entries (<code>kind:value</code>) keyed by test. Empty if the file doesn't exist.
+     */
+    public static Map<String, Set<String>> load(File file) {
+        Map<String, Set<String>> index = new TreeMap<String, Set<String>>();
+        if (!file.isFile()) return index;
+
+        try {
+            BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            try {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    int tab = line.indexOf('\t');
+                    if (tab < 0) continue;
+
+                    String test = line.substring(0, tab);
+                    Set<String> entries = index.get(test);
+                    if (entries == null) {
+                        entries = new TreeSet<String>();
+                        index.put(test, entries);
+                    }
+                    entries.add(line.substring(tab + 1));
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            log.warn("Couldn't read the impact index " + file + ": " + e.getMessage());
+        }
+        return index;
+    }
+
+    private class Recorder implements ConductorListener {
+        @Override
+        public void actionStarted(Action action) {
+        }
+
+        @Override
+        public void actionFinished(Action action) {
+            Locomotive locomotive = action.getLocomotive();
+            String test = locomotive.getTestName();
+
+            if (StringUtils.isNotEmpty(locomotive.baseUrl)) record(test, URL, PageTiming.pattern(locomotive.baseUrl));
+
+            if (action.getName().equals("page")) {
+                record(test, PAGE, action.getTarget());
+            } else if (NAVIGATIONS.contains(action.getName())) {
+                try {
+                    record(test, URL, PageTiming.pattern(locomotive.driver.getCurrentUrl()));
+                } catch (RuntimeException x) {
+                    // the session is gone, the test failed anyway.
+                }
+            }
+        }
+    }
+}
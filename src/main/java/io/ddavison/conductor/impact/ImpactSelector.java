@@ -0,0 +1,122 @@
+package io.ddavison.conductor.impact;
+
+import io.ddavison.conductor.Constants;
+import io.ddavison.conductor.util.JvmUtil;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * Picks the tests impacted by a change, from an {@link ImpactIndex}.<br><br>
+ * A change is <code>kind:value</code>:
+ * <ul>
+ *     <li><code>url:shop.example.com/checkout*</code> - a url pattern, <code>*</code> matches anything, otherwise any recorded pattern containing the value</li>
+ *     <li><code>locator:#pay</code> - any recorded locator containing the value</li>
+ *     <li><code>page:com.acme.CheckoutPage</code> - a page object interface, simple names match too</li>
+ * </ul>
+ * Tests that aren't in the index (new tests, or never recorded) are always impacted.
+ */
+public class ImpactSelector {
+
+    private final List<String[]> changes = new ArrayList<String[]>();
+
+    /**
+     * @param changes the changes, as <code>kind:value</code>
+     */
+    public ImpactSelector(Collection<String> changes) {
+        for (String change : changes) {
+            int colon = change.indexOf(':');
+            if (colon < 0) throw new IllegalArgumentException("Not a kind:value change: " + change);
+            this.changes.add(new String[] { change.substring(0, colon).trim(), change.substring(colon + 1).trim() });
+        }
+    }
+
+    /**
+     * @return A selector for the comma separated changes of <code>CONDUCTOR_IMPACT_CHANGES</code>, <code>null</code> if not set.
+     */
+    public static ImpactSelector fromConfiguration() {
+        String changes = JvmUtil.getJvmProperty(Constants.JVM_CONDUCTOR_IMPACT_CHANGES);
+        if (StringUtils.isEmpty(changes)) return null;
+
+        List<String> list = new ArrayList<String>();
+        for (String change : changes.split(",")) {
+            if (!change.trim().isEmpty()) list.add(change.trim());
+        }
+        return new ImpactSelector(list);
+    }
+
+    /**
+     * @param entries what a test touched, <code>null</code> if unknown
+     * @return <code>true</code> if any change matches any entry, or if the entries are unknown.
+     */
+    public boolean isImpacted(Set<String> entries) {
+        if (entries == null) return true;
+
+        for (String entry : entries) {
+            int colon = entry.indexOf(':');
+            if (colon < 0) continue;
+            String kind = entry.substring(0, colon);
+            String value = entry.substring(colon + 1);
+
+            for (String[] change : changes) {
+                if (change[0].equals(kind) && matches(kind, change[1], value)) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param index the index
+     * @return The tests of the index impacted by the changes
+     */
+    public Set<String> select(Map<String, Set<String>> index) {
+        Set<String> selected = new TreeSet<String>();
+        for (Map.Entry<String, Set<String>> test : index.entrySet()) {
+            if (isImpacted(test.getValue())) selected.add(test.getKey());
+        }
+        return selected;
+    }
+
+    static boolean matches(String kind, String change, String recorded) {
+        if (kind.equals(ImpactIndex.URL)) {
+            if (!change.contains("*")) return recorded.contains(change);
+            StringBuilder regex = new StringBuilder();
+            for (String part : change.split("\\*", -1)) {
+                if (regex.length() > 0) regex.append(".*");
+                regex.append(Pattern.quote(part));
+            }
+            return Pattern.compile(regex.toString()).matcher(recorded).matches();
+        }
+        if (kind.equals(ImpactIndex.LOCATOR)) return recorded.contains(change);
+        if (kind.equals(ImpactIndex.PAGE)) return recorded.equals(change) || recorded.endsWith("." + change);
+        return false;
+    }
+
+    /**
+     * Print the test classes impacted by changes, one per line.<br>
+     * Arguments: <code>indexFile change...</code>
+     * @param args the arguments
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: ImpactSelector <index file> <kind:value>...");
+            System.exit(2);
+        }
+
+        ImpactSelector selector = new ImpactSelector(Arrays.asList(args).subList(1, args.length));
+        Set<String> classes = new TreeSet<String>();
+        for (String test : selector.select(ImpactIndex.load(new File(args[0])))) {
+            int hash = test.indexOf('#');
+            classes.add(hash < 0 ? test : test.substring(0, hash));
+        }
+        for (String testClass : classes) System.out.println(testClass);
+    }
+}
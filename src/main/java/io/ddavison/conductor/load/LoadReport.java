@@ -0,0 +1,122 @@
+package io.ddavison.conductor.load;
+
+import io.ddavison.conductor.util.Histogram;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latencies and errors of a {@link LoadRunner} run, in milliseconds.<br>
+ * A transaction is one test method, an action is one {@link io.ddavison.conductor.Conductor} call (click, navigateTo...).
+ */
+public class LoadReport {
+
+    private final ConcurrentMap<String, Histogram> transactions = new ConcurrentHashMap<String, Histogram>();
+    private final ConcurrentMap<String, Histogram> actions = new ConcurrentHashMap<String, Histogram>();
+    private final ConcurrentMap<String, AtomicLong> errors = new ConcurrentHashMap<String, AtomicLong>();
+    private final AtomicLong iterations = new AtomicLong();
+
+    private final int users;
+    private volatile long elapsedMillis;
+
+    LoadReport(int users) {
+        this.users = users;
+    }
+
+    void transaction(String name, long millis, boolean failed) {
+        Histogram.in(transactions, name).record(millis);
+        if (failed) error(name);
+    }
+
+    void action(String name, long millis, boolean failed) {
+        Histogram.in(actions, name).record(millis);
+        if (failed) error(name);
+    }
+
+    void iteration() {
+        iterations.incrementAndGet();
+    }
+
+    void finished(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public int getUsers() {
+        return users;
+    }
+
+    /**
+     * @return How many times a virtual user ran the whole test class
+     */
+    public long getIterations() {
+        return iterations.get();
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return Duration of each test method, keyed by method name
+     */
+    public Map<String, Histogram> getTransactions() {
+        return Collections.<String, Histogram>unmodifiableMap(new TreeMap<String, Histogram>(transactions));
+    }
+
+    /**
+     * @return Duration of each action, keyed by action name
+     */
+    public Map<String, Histogram> getActions() {
+        return Collections.<String, Histogram>unmodifiableMap(new TreeMap<String, Histogram>(actions));
+    }
+
+    /**
+     * @param name a transaction or action name
+     * @return How many times it failed
+     */
+    public long getErrors(String name) {
+        AtomicLong count = errors.get(name);
+        return count == null ? 0 : count.get();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(String.format("\n=== Load: %d users, %d iterations in %.1fs ===\n",
+                users, iterations.get(), elapsedMillis / 1000.0));
+        sb.append("Transactions:\n");
+        append(sb, getTransactions());
+        sb.append("Actions:\n");
+        append(sb, getActions());
+        return sb.toString();
+    }
+
+    private void append(StringBuilder sb, Map<String, Histogram> histograms) {
+        double seconds = Math.max(elapsedMillis, 1) / 1000.0;
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            Histogram histogram = entry.getValue();
+            sb.append(String.format("\t%-30s count=%d errors=%d rate=%.2f/s p50=%d p90=%d p99=%d max=%d (ms)\n",
+                    entry.getKey(),
+                    histogram.getCount(),
+                    getErrors(entry.getKey()),
+                    histogram.getCount() / seconds,
+                    histogram.getValueAtPercentile(50),
+                    histogram.getValueAtPercentile(90),
+                    histogram.getValueAtPercentile(99),
+                    histogram.getMax()));
+        }
+    }
+
+    private void error(String name) {
+        AtomicLong count = errors.get(name);
+        if (count == null) {
+            AtomicLong created = new AtomicLong();
+            count = errors.putIfAbsent(name, created);
+            if (count == null) count = created;
+        }
+        count.incrementAndGet();
+    }
+}
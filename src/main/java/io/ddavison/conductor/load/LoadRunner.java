@@ -0,0 +1,300 @@
+package io.ddavison.conductor.load;
+
+import io.ddavison.conductor.Action;
+import io.ddavison.conductor.Browser;
+import io.ddavison.conductor.ConductorListener;
+import io.ddavison.conductor.Locomotive;
+import io.ddavison.conductor.LocomotiveConfig;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.runner.Description;
+import org.junit.runner.Runner;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runner.notification.StoppedByUserException;
+import org.junit.runners.BlockJUnit4ClassRunner;
+import org.junit.runners.model.InitializationError;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs an existing {@link Locomotive} test class as a browser-level load: every virtual user runs the whole class in a
+ * loop, on its own session.<br><br>
+ * <blockquote><code>
+ * LoadReport report = LoadRunner.of(CheckoutTest.class)<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;.users(20)<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;.rampUp(60, TimeUnit.SECONDS)<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;.thinkTime(1, 3, TimeUnit.SECONDS)<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;.duration(10, TimeUnit.MINUTES)<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;.browser(Browser.HTMLUNIT)<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;.run();
+ * </code></blockquote>
+ * Each test method is a transaction; the duration of every transaction and of every action of the test is recorded
+ * in the {@link LoadReport}.  Think time is spent between transactions.
+ */
+public class LoadRunner {
+
+    private static final Logger log = LogManager.getLogger(LoadRunner.class);
+
+    private final Class<?> testClass;
+    private int users = 1;
+    private long rampUpMillis;
+    private long minThinkMillis;
+    private long maxThinkMillis;
+    private int iterations;
+    private long durationMillis;
+    private Browser browser;
+
+    private LoadRunner(Class<?> testClass) {
+        this.testClass = testClass;
+    }
+
+    /**
+     * @param testClass a {@link Locomotive} test class
+     * @return A runner for the class, with one user running it once until configured otherwise
+     */
+    public static LoadRunner of(Class<?> testClass) {
+        return new LoadRunner(testClass);
+    }
+
+    /**
+     * @param users how many sessions run the test concurrently
+     * @return this
+     */
+    public LoadRunner users(int users) {
+        this.users = users;
+        return this;
+    }
+
+    /**
+     * @param time how long it takes for all the users to be started, evenly spread
+     * @param unit unit of the time
+     * @return this
+     */
+    public LoadRunner rampUp(long time, TimeUnit unit) {
+        this.rampUpMillis = unit.toMillis(time);
+        return this;
+    }
+
+    /**
+     * @param min the shortest pause between two transactions of a user
+     * @param max the longest pause
+     * @param unit unit of the pauses
+     * @return this
+     */
+    public LoadRunner thinkTime(long min, long max, TimeUnit unit) {
+        this.minThinkMillis = unit.toMillis(min);
+        this.maxThinkMillis = unit.toMillis(Math.max(min, max));
+        return this;
+    }
+
+    /**
+     * @param iterations how many times each user runs the class
+     * @return this
+     */
+    public LoadRunner iterations(int iterations) {
+        this.iterations = iterations;
+        return this;
+    }
+
+    /**
+     * @param time how long the users keep running the class, the transaction running at the end is finished
+     * @param unit unit of the time
+     * @return this
+     */
+    public LoadRunner duration(long time, TimeUnit unit) {
+        this.durationMillis = unit.toMillis(time);
+        return this;
+    }
+
+    /**
+     * @param browser the browser of every session, e.g. {@link Browser#HTMLUNIT}, over the configuration of the test
+     * @return this
+     */
+    public LoadRunner browser(Browser browser) {
+        this.browser = browser;
+        return this;
+    }
+
+    /**
+     * Run the load and wait for it to finish.
+     * @return The report
+     * @throws InitializationError if the class isn't a valid JUnit test class
+     * @throws InterruptedException if interrupted while waiting for the users
+     */
+    public LoadReport run() throws InitializationError, InterruptedException {
+        new BlockJUnit4ClassRunner(testClass); // fail fast on an invalid class
+
+        final LoadReport report = new LoadReport(users);
+        final long start = System.currentTimeMillis();
+        final long deadline = durationMillis > 0 ? start + durationMillis : Long.MAX_VALUE;
+        final int maxIterations = iterations > 0 || durationMillis > 0 ? iterations : 1;
+
+        ActionRecorder recorder = new ActionRecorder(report);
+        Locomotive.addListener(recorder);
+
+        log.info(String.format("Starting %d users on %s (ramp-up %dms)", users, testClass.getName(), rampUpMillis));
+        List<Thread> threads = new ArrayList<Thread>();
+        try {
+            for (int i = 0; i < users; i++) {
+                final long delay = users > 1 ? rampUpMillis * i / (users - 1) : 0;
+                Thread thread = new Thread(new VirtualUser(report, recorder, start + delay, deadline, maxIterations),
+                        "conductor-load-user-" + (i + 1));
+                thread.setDaemon(true);
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) thread.join();
+        } finally {
+            Locomotive.removeListener(recorder);
+            for (Thread thread : threads) thread.interrupt();
+        }
+
+        report.finished(System.currentTimeMillis() - start);
+        log.info(report);
+        return report;
+    }
+
+    private long thinkTime(Random random) {
+        if (maxThinkMillis <= 0) return 0;
+        return minThinkMillis + (long) (random.nextDouble() * (maxThinkMillis - minThinkMillis));
+    }
+
+    /**
+     * Records the actions of the virtual user threads only, other tests may run in the same JVM.
+     */
+    private static class ActionRecorder implements ConductorListener {
+        private final LoadReport report;
+        private final ThreadLocal<Boolean> virtualUser = new ThreadLocal<Boolean>();
+
+        ActionRecorder(LoadReport report) {
+            this.report = report;
+        }
+
+        @Override
+        public void actionStarted(Action action) {
+        }
+
+        @Override
+        public void actionFinished(Action action) {
+            if (virtualUser.get() == null) return;
+            report.action(action.getName(), action.getDurationMillis(), action.getFailure() != null);
+        }
+    }
+
+    private class VirtualUser implements Runnable {
+        private final LoadReport report;
+        private final ActionRecorder recorder;
+        private final long startAt;
+        private final long deadline;
+        private final int maxIterations;
+        private final Random random = new Random();
+
+        VirtualUser(LoadReport report, ActionRecorder recorder, long startAt, long deadline, int maxIterations) {
+            this.report = report;
+            this.recorder = recorder;
+            this.startAt = startAt;
+            this.deadline = deadline;
+            this.maxIterations = maxIterations;
+        }
+
+        @Override
+        public void run() {
+            recorder.virtualUser.set(true);
+            LocomotiveConfig.overrideBrowser(browser);
+            try {
+                long wait = startAt - System.currentTimeMillis();
+                if (wait > 0) Thread.sleep(wait);
+
+                Runner runner = new BlockJUnit4ClassRunner(testClass);
+                for (int i = 0; maxIterations <= 0 || i < maxIterations; i++) {
+                    if (System.currentTimeMillis() >= deadline) break;
+
+                    RunNotifier notifier = new RunNotifier();
+                    notifier.addListener(new TransactionRecorder(notifier));
+                    try {
+                        runner.run(notifier);
+                    } catch (StoppedByUserException x) {
+                        break;
+                    }
+                    report.iteration();
+                }
+            } catch (InterruptedException x) {
+                Thread.currentThread().interrupt();
+            } catch (InitializationError x) {
+                log.error("Couldn't run " + testClass.getName(), x);
+            } finally {
+                LocomotiveConfig.overrideBrowser(null);
+                recorder.virtualUser.remove();
+            }
+        }
+
+        private class TransactionRecorder extends RunListener {
+            private final RunNotifier notifier;
+            private long started;
+            private boolean failed;
+
+            TransactionRecorder(RunNotifier notifier) {
+                this.notifier = notifier;
+            }
+
+            @Override
+            public void testStarted(Description description) {
+                started = System.nanoTime();
+                failed = false;
+            }
+
+            @Override
+            public void testFailure(Failure failure) {
+                failed = true;
+                log.debug(Thread.currentThread().getName() + ": " + failure.getTestHeader() + " failed: " + failure.getMessage());
+            }
+
+            @Override
+            public void testFinished(Description description) throws Exception {
+                report.transaction(description.getMethodName(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), failed);
+
+                if (System.currentTimeMillis() >= deadline) {
+                    notifier.pleaseStop();
+                    return;
+                }
+                long think = thinkTime(random);
+                if (think > 0) Thread.sleep(think);
+            }
+        }
+    }
+
+    /**
+     * Arguments: <code>testClass [--users N] [--ramp-up seconds] [--think-time minMs-maxMs] [--iterations N] [--duration seconds] [--browser name]</code>
+     * @param args the arguments
+     * @throws Exception if the load couldn't run
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("Usage: LoadRunner <test class> [--users N] [--ramp-up seconds] [--think-time minMs-maxMs] [--iterations N] [--duration seconds] [--browser name]");
+            System.exit(2);
+        }
+
+        LoadRunner runner = LoadRunner.of(Class.forName(args[0]));
+        for (int i = 1; i < args.length; i++) {
+            String argument = args[i];
+            if (argument.equals("--users")) runner.users(Integer.parseInt(args[++i]));
+            else if (argument.equals("--ramp-up")) runner.rampUp(Long.parseLong(args[++i]), TimeUnit.SECONDS);
+            else if (argument.equals("--iterations")) runner.iterations(Integer.parseInt(args[++i]));
+            else if (argument.equals("--duration")) runner.duration(Long.parseLong(args[++i]), TimeUnit.SECONDS);
+            else if (argument.equals("--browser")) runner.browser(Browser.valueOf(args[++i].toUpperCase()));
+            else if (argument.equals("--think-time")) {
+                String[] range = args[++i].split("-");
+                runner.thinkTime(Long.parseLong(range[0]), Long.parseLong(range[range.length - 1]), TimeUnit.MILLISECONDS);
+            }
+        }
+
+        LoadReport report = runner.run();
+        System.out.println(report);
+        System.exit(0);
+    }
+}
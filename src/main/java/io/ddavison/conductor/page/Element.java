@@ -0,0 +1,146 @@
+/*
+ * Copyright 2014-2016 Daniel Davison (http://github.com/ddavison) and Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package io.ddavison.conductor.page;
+
+import io.ddavison.conductor.Locomotive;
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WebElement;
+
+/**
+ * A lazily resolved handle on an element of a {@link Page}.<br><br>
+ * Actions (clicks, text, checkboxes, validations) are the {@link Locomotive} actions on its locator, so they wait for
+ * the element to be interactable, verify their result and are seen by listeners like any other action.  Reads are
+ * served by the element located the first time it is read, through {@link Locomotive#waitForElement(By)}; when
+ * that element is stale, it is located again.
+ */
+public class Element {
+
+    private final Locomotive locomotive;
+    private final By by;
+
+    private WebElement cached;
+
+    public Element(Locomotive locomotive, By by) {
+        this.locomotive = locomotive;
+        this.by = by;
+    }
+
+    public By by() {
+        return by;
+    }
+
+    /**
+     * @return The resolved element, waiting for it if it hasn't been located yet.
+     */
+    public WebElement resolve() {
+        if (cached == null) cached = locomotive.waitForElement(by);
+        return cached;
+    }
+
+    /**
+     * Forget the resolved element, so that it gets located again on next use.
+     * @return this element
+     */
+    public Element invalidate() {
+        cached = null;
+        return this;
+    }
+
+    public Element click() {
+        locomotive.click(by);
+        return this;
+    }
+
+    public Element setText(String text) {
+        locomotive.setText(by, text);
+        return this;
+    }
+
+    public Element hoverOver() {
+        locomotive.hoverOver(by);
+        return this;
+    }
+
+    public Element check() {
+        locomotive.check(by);
+        return this;
+    }
+
+    public Element uncheck() {
+        locomotive.uncheck(by);
+        return this;
+    }
+
+    public boolean isChecked() {
+        return fresh().isSelected();
+    }
+
+    public boolean isPresent() {
+        if (cached != null) try {
+            cached.isEnabled(); // cheapest call that fails on a stale element
+            return true;
+        } catch (WebDriverException x) {
+            invalidate();
+        }
+        return locomotive.isPresent(by);
+    }
+
+    public String getText() {
+        WebElement e = fresh();
+        String tag = e.getTagName();
+        if (tag.equalsIgnoreCase("input") || tag.equalsIgnoreCase("select") || tag.equalsIgnoreCase("textarea"))
+            return e.getAttribute("value");
+        return e.getText();
+    }
+
+    public String getAttribute(String attribute) {
+        return fresh().getAttribute(attribute);
+    }
+
+    public Element validatePresent() {
+        locomotive.validatePresent(by);
+        return this;
+    }
+
+    public Element validateNotPresent() {
+        invalidate();
+        locomotive.validateNotPresent(by);
+        return this;
+    }
+
+    public Element validateText(String text) {
+        locomotive.validateText(by, text);
+        return this;
+    }
+
+    public Element validateAttribute(String attr, String regex) {
+        locomotive.validateAttribute(by, attr, regex);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return by.toString();
+    }
+
+    /**
+     * @return The cached element if it is still attached to the page, otherwise a newly located one.
+     */
+    private WebElement fresh() {
+        if (cached != null) try {
+            cached.isEnabled();
+            return cached;
+        } catch (WebDriverException x) {
+            invalidate();
+        }
+        return resolve();
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2014-2016 Daniel Davison (http://github.com/ddavison) and Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package io.ddavison.conductor.page;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an interface as a page object.<br><br>
+ * At compile time, an implementation named <code>&lt;Interface&gt;Impl</code> is generated next to it.
+ * Every method of the interface must return an {@link Element} and be annotated with {@link Locate}.
+ * <blockquote>
+ * <code>
+ * {@literal @}Page<br>
+ * public interface LoginPage {<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;{@literal @}Locate(css = "#username") Element username();<br>
+ * }<br><br>
+ * LoginPage login = new LoginPageImpl(this);<br>
+ * login.username().setText("ddavison");
+ * </code>
+ * </blockquote>
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface Page {
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2014-2016 Daniel Davison (http://github.com/ddavison) and Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package io.ddavison.conductor.page;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates the implementation of every {@link Page} interface at compile time.<br><br>
+ * The generated class holds one static {@link org.openqa.selenium.By} per {@link Locate}d method and
+ * lazily creates a single {@link Element} for it, so no reflection is involved when a page is used.
+ * <br><br>
+ * The processor is registered through <code>META-INF/services</code>; having conductor on the compile
+ * classpath is enough to enable it.
+ */
+@SupportedAnnotationTypes("io.ddavison.conductor.page.Page")
+public class PageProcessor extends AbstractProcessor {
+
+    static final String SUFFIX = "Impl";
+
+    // the field of the generated class holding the test.
+    private static final String LOCOMOTIVE = "locomotive";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (javax.lang.model.element.Element annotated : roundEnv.getElementsAnnotatedWith(Page.class)) {
+            if (annotated.getKind() != ElementKind.INTERFACE) {
+                error(annotated, "@Page can only be used on interfaces");
+                continue;
+            }
+
+            TypeElement page = (TypeElement) annotated;
+            List<Locator> locators = locators(page);
+            if (locators == null) continue;
+
+            try {
+                write(page, locators);
+            } catch (IOException e) {
+                error(page, "Couldn't generate the page object: " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    private List<Locator> locators(TypeElement page) {
+        List<Locator> locators = new ArrayList<Locator>();
+        boolean valid = true;
+
+        // includes the methods inherited from super interfaces
+        for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(page))) {
+            if (!method.getModifiers().contains(Modifier.ABSTRACT)) continue;
+            if (Object.class.getName().equals(((TypeElement) method.getEnclosingElement()).getQualifiedName().toString())) continue;
+
+            Locate locate = method.getAnnotation(Locate.class);
+            if (locate == null) {
+                error(method, "Every method of a @Page must be annotated with @Locate");
+                valid = false;
+                continue;
+            }
+            if (!method.getParameters().isEmpty()) {
+                error(method, "@Locate methods can't take parameters");
+                valid = false;
+                continue;
+            }
+            if (!Element.class.getCanonicalName().equals(method.getReturnType().toString())) {
+                error(method, "@Locate methods must return " + Element.class.getCanonicalName());
+                valid = false;
+                continue;
+            }
+
+            String by = by(locate);
+            if (by == null) {
+                error(method, "@Locate needs exactly one of css, xpath, id, name, className or linkText");
+                valid = false;
+                continue;
+            }
+            locators.add(new Locator(method, by));
+        }
+        return valid && namesAreUnique(locators) ? locators : null;
+    }
+
+    /**
+     * Each method becomes a field and a constant of the generated class, next to its <code>locomotive</code> field.
+     * @return <code>false</code> if two of them would have the same name, reported as errors.
+     */
+    private boolean namesAreUnique(List<Locator> locators) {
+        Map<String, String> fields = new HashMap<String, String>();
+        for (Locator locator : locators) fields.put(locator.method, locator.method);
+
+        boolean valid = true;
+        Map<String, String> constants = new HashMap<String, String>();
+        for (Locator locator : locators) {
+            if (LOCOMOTIVE.equals(locator.method)) {
+                error(locator.element, "A @Page can't have a method named " + LOCOMOTIVE + ", the generated page object uses that name");
+                valid = false;
+                continue;
+            }
+            String constant = locator.constant();
+            String clash = constants.containsKey(constant) ? constants.get(constant) : fields.get(constant);
+            if (clash != null) {
+                error(locator.element, String.format("The constant %s generated for %s() clashes with %s in the generated page object, rename it",
+                        constant, locator.method, clash.equals(locator.method) ? "its own field" : "that of " + clash + "()"));
+                valid = false;
+                continue;
+            }
+            constants.put(constant, locator.method);
+        }
+        return valid;
+    }
+
+    private void write(TypeElement page, List<Locator> locators) throws IOException {
+        String packageName = processingEnv.getElementUtils().getPackageOf(page).getQualifiedName().toString();
+        String interfaceName = page.getQualifiedName().toString();
+        String simpleName = simpleName(page) + SUFFIX;
+        String qualifiedName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, page);
+        PrintWriter out = new PrintWriter(file.openWriter());
+        try {
+            if (!packageName.isEmpty()) out.printf("package %s;%n%n", packageName);
+
+            out.printf("/**%n * Generated by %s from {@link %s}. Do not edit.%n */%n", PageProcessor.class.getName(), interfaceName);
+            out.printf("public final class %s implements %s {%n%n", simpleName, interfaceName);
+
+            for (Locator locator : locators) {
+                out.printf("    private static final org.openqa.selenium.By %s = %s;%n", locator.constant(), locator.by);
+            }
+            out.printf("%n    private final io.ddavison.conductor.Locomotive locomotive;%n");
+            for (Locator locator : locators) {
+                out.printf("    private io.ddavison.conductor.page.Element %s;%n", locator.method);
+            }
+
+            out.printf("%n    public %s(io.ddavison.conductor.Locomotive locomotive) {%n", simpleName);
+            out.printf("        this.locomotive = locomotive;%n");
+            out.printf("        locomotive.onPage(%s.class);%n", interfaceName);
+            out.printf("    }%n");
+
+            for (Locator locator : locators) {
+                out.printf("%n    @Override%n");
+                out.printf("    public io.ddavison.conductor.page.Element %s() {%n", locator.method);
+                out.printf("        if (%s == null) %s = new io.ddavison.conductor.page.Element(locomotive, %s);%n",
+                        locator.method, locator.method, locator.constant());
+                out.printf("        return %s;%n", locator.method);
+                out.printf("    }%n");
+            }
+            out.printf("}%n");
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @return The name of the page, including its enclosing types for nested interfaces (e.g. <code>Pages_Login</code>)
+     */
+    private String simpleName(TypeElement page) {
+        String name = page.getSimpleName().toString();
+        javax.lang.model.element.Element enclosing = page.getEnclosingElement();
+        while (enclosing != null && !(enclosing instanceof PackageElement)) {
+            name = enclosing.getSimpleName() + "_" + name;
+            enclosing = enclosing.getEnclosingElement();
+        }
+        return name;
+    }
+
+    private static String by(Locate locate) {
+        String by = null;
+        int strategies = 0;
+
+        if (!locate.css().isEmpty())       { by = "org.openqa.selenium.By.cssSelector(" + literal(locate.css()) + ")"; strategies++; }
+        if (!locate.xpath().isEmpty())     { by = "org.openqa.selenium.By.xpath(" + literal(locate.xpath()) + ")"; strategies++; }
+        if (!locate.id().isEmpty())        { by = "org.openqa.selenium.By.id(" + literal(locate.id()) + ")"; strategies++; }
+        if (!locate.name().isEmpty())      { by = "org.openqa.selenium.By.name(" + literal(locate.name()) + ")"; strategies++; }
+        if (!locate.className().isEmpty()) { by = "org.openqa.selenium.By.className(" + literal(locate.className()) + ")"; strategies++; }
+        if (!locate.linkText().isEmpty())  { by = "org.openqa.selenium.By.linkText(" + literal(locate.linkText()) + ")"; strategies++; }
+
+        return strategies == 1 ? by : null;
+    }
+
+    static String literal(String value) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"':  sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20 || c > 0x7e) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private void error(javax.lang.model.element.Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    private static class Locator {
+        final ExecutableElement element;
+        final String method;
+        final String by;
+
+        Locator(ExecutableElement element, String by) {
+            this.element = element;
+            this.method = element.getSimpleName().toString();
+            this.by = by;
+        }
+
+        String constant() {
+            return method.replaceAll("([a-z0-9])([A-Z])", "$1_$2").toUpperCase();
+        }
+    }
+}
@@ -0,0 +1,361 @@
+package io.ddavison.conductor.profile;
+
+import io.ddavison.conductor.Browser;
+import io.ddavison.conductor.Constants;
+import io.ddavison.conductor.util.JvmUtil;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.firefox.FirefoxDriver;
+import org.openqa.selenium.remote.DesiredCapabilities;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Browser profiles cloned from a warmed-up template, so that new local sessions start with the application's scripts,
+ * stylesheets and fonts already in their HTTP cache.<br><br>
+ * On with <code>CONDUCTOR_PROFILE_TEMPLATES=true</code>, for Chrome and Firefox.  The first session of a browser opens
+ * the pages of <code>CONDUCTOR_WARMUP_URLS</code> (comma separated, relative to the url of the test; default the url of
+ * the test) in a new profile under <code>CONDUCTOR_PROFILE_DIR</code> (default {@value Constants#DEFAULT_PROFILE_DIR}),
+ * which is kept for the next runs as long as the warm-up urls don't change, for up to a day.<br><br>
+ * Each session then gets its own copy of the template: the entries of the HTTP cache are hard links to the template's,
+ * made read-only so that a browser replaces an entry rather than writing to it, everything else is copied.  Where
+ * read-only files don't stop the browser (running as root, as in most CI containers) or where the links share the
+ * read-only attribute of the template (Windows), the entries are copied too.  Copies are deleted when their session is
+ * quit, or when the JVM exits.
+ */
+public class ProfileTemplates {
+
+    private static final Logger log = LogManager.getLogger(ProfileTemplates.class);
+
+    public static final long MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    // directories of the HTTP cache of chrome and firefox. their entries are written once, then replaced.
+    private static final List<String> CACHE_DIRECTORIES = Arrays.asList("Cache", "Cache_Data", "Code Cache", "cache2", "entries");
+
+    // held by the browser that has the profile open, never part of a copy.
+    private static final List<String> LOCKS = Arrays.asList("SingletonLock", "SingletonCookie", "SingletonSocket", "lock", "parent.lock", ".parentlock");
+
+    private static ProfileTemplates instance;
+
+    private final File root;
+    private final Warmer warmer;
+    private final AtomicInteger copies = new AtomicInteger();
+    // null until the templates' file system was checked.
+    private Boolean linkCache;
+
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(JvmUtil.getJvmProperty(Constants.JVM_CONDUCTOR_PROFILE_TEMPLATES));
+    }
+
+    public static synchronized ProfileTemplates get() {
+        if (instance == null) {
+            String root = JvmUtil.getJvmProperty(Constants.JVM_CONDUCTOR_PROFILE_DIR);
+            instance = new ProfileTemplates(new File(StringUtils.isEmpty(root) ? Constants.DEFAULT_PROFILE_DIR : root), new LocalWarmer());
+
+            Runtime.getRuntime().addShutdownHook(new Thread("conductor-profile-templates-cleanup") {
+                @Override
+                public void run() {
+                    delete(instance.sessions());
+                }
+            });
+        }
+        return instance;
+    }
+
+    ProfileTemplates(File root, Warmer warmer) {
+        this(root, warmer, null);
+    }
+
+    ProfileTemplates(File root, Warmer warmer, Boolean linkCache) {
+        this.root = root;
+        this.warmer = warmer;
+        this.linkCache = linkCache;
+    }
+
+    /**
+     * @return <code>true</code> if the browser's profile can be given as a directory.
+     */
+    public static boolean supports(Browser browser) {
+        return browser == Browser.CHROME || browser == Browser.FIREFOX;
+    }
+
+    /**
+     * @param base the url the relative warm-up urls are relative to, e.g. the url of the test
+     * @return The pages to warm the template up with.
+     */
+    public static List<String> warmupUrls(String base) {
+        String urls = JvmUtil.getJvmProperty(Constants.JVM_CONDUCTOR_WARMUP_URLS);
+        if (StringUtils.isEmpty(urls)) return StringUtils.isEmpty(base) ? Collections.<String>emptyList() : Collections.singletonList(base);
+
+        List<String> resolved = new ArrayList<String>();
+        for (String url : urls.split(",")) {
+            url = url.trim();
+            if (url.isEmpty()) continue;
+            if (url.contains("://") || StringUtils.isEmpty(base)) resolved.add(url);
+            else resolved.add(base.replaceAll("/+$", "") + (url.startsWith("/") ? url : "/" + url));
+        }
+        return resolved;
+    }
+
+    /**
+     * Make the browser use a profile directory.
+     * @param browser the browser
+     * @param capabilities the capabilities of the new session
+     * @param profile the profile directory
+     */
+    public static void use(Browser browser, DesiredCapabilities capabilities, File profile) {
+        Map<String, Object> options = new HashMap<String, Object>();
+        if (browser == Browser.CHROME) {
+            options.put("args", Collections.singletonList("--user-data-dir=" + profile.getAbsolutePath()));
+            capabilities.setCapability("chromeOptions", options);
+        } else if (browser == Browser.FIREFOX) {
+            options.put("args", Arrays.asList("-profile", profile.getAbsolutePath()));
+            capabilities.setCapability("moz:firefoxOptions", options);
+        } else {
+            throw new IllegalArgumentException("No profile directory for " + browser);
+        }
+    }
+
+    /**
+     * @param browser the browser
+     * @param warmupUrls the pages the template is warmed up with
+     * @return A new profile for one session, copied from the template of the browser.
+     * @throws IOException if the template couldn't be made, or copied
+     */
+    public Profile copy(Browser browser, List<String> warmupUrls) throws IOException {
+        File template = template(browser, warmupUrls);
+        File copy = new File(sessions(), browser.name().toLowerCase() + "-" + System.currentTimeMillis() + "-" + copies.incrementAndGet());
+        copyTree(template.toPath(), copy.toPath(), linkCache());
+        return new Profile(copy);
+    }
+
+    private synchronized boolean linkCache() throws IOException {
+        if (linkCache == null) {
+            linkCache = linksProtected(root.toPath());
+            if (!linkCache) log.info("The profile templates' cache entries can't be protected here, they are copied");
+        }
+        return linkCache;
+    }
+
+    /**
+     * @param dir a directory on the file system of the templates
+     * @return <code>true</code> if a read-only link keeps the browser from writing to the template's entry.
+     */
+    static boolean linksProtected(Path dir) throws IOException {
+        // the read-only attribute belongs to the file, clearing it to delete a link would clear it for the template.
+        if (JvmUtil.getJvmProperty("os.name").toLowerCase().contains("win")) return false;
+
+        Files.createDirectories(dir);
+        Path probe = Files.createTempFile(dir, "read-only", ".probe");
+        try {
+            probe.toFile().setWritable(false, false);
+            // root may write to read-only files.
+            return !Files.isWritable(probe);
+        } finally {
+            probe.toFile().setWritable(true);
+            Files.deleteIfExists(probe);
+        }
+    }
+
+    File sessions() {
+        return new File(root, "sessions");
+    }
+
+    /**
+     * @return The template of the browser, warmed up now unless it's recent and warmed up with the same pages.
+     */
+    synchronized File template(Browser browser, List<String> warmupUrls) throws IOException {
+        String name = browser.name().toLowerCase();
+        File template = new File(root, "templates/" + name);
+        File marker = new File(root, "templates/" + name + ".properties");
+        String urls = StringUtils.join(warmupUrls, ",");
+
+        Properties properties = load(marker);
+        if (template.isDirectory() && urls.equals(properties.getProperty("urls"))
+                && System.currentTimeMillis() - Long.parseLong(properties.getProperty("created", "0")) < MAX_AGE_MILLIS) {
+            return template;
+        }
+
+        long start = System.currentTimeMillis();
+        delete(template);
+        marker.delete();
+        if (!template.mkdirs()) throw new IOException("Couldn't create " + template);
+        warmer.warm(browser, template, warmupUrls);
+        readOnlyCache(template.toPath());
+
+        properties = new Properties();
+        properties.setProperty("urls", urls);
+        properties.setProperty("created", String.valueOf(System.currentTimeMillis()));
+        OutputStream out = new FileOutputStream(marker);
+        try {
+            properties.store(out, "conductor: profile template");
+        } finally {
+            out.close();
+        }
+        log.info(String.format("Warmed up the %s profile template with %d pages in %dms", name, warmupUrls.size(), System.currentTimeMillis() - start));
+        return template;
+    }
+
+    private static Properties load(File file) throws IOException {
+        Properties properties = new Properties();
+        if (!file.isFile()) return properties;
+        InputStream in = new FileInputStream(file);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        return properties;
+    }
+
+    static boolean isCacheEntry(Path relative) {
+        String name = relative.getFileName().toString();
+        if (name.startsWith("index")) return false; // rewritten in place
+        for (Path parent = relative.getParent(); parent != null; parent = parent.getParent()) {
+            String dir = parent.getFileName().toString();
+            if (dir.equals("index-dir") || dir.equals("doomed")) return false;
+            if (CACHE_DIRECTORIES.contains(dir)) return true;
+        }
+        return false;
+    }
+
+    private static void readOnlyCache(final Path template) throws IOException {
+        Files.walkFileTree(template, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (isCacheEntry(template.relativize(file))) file.toFile().setWritable(false, false);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Copy a profile: cache entries are linked if asked, locks are left out, the rest is copied.
+     */
+    static void copyTree(final Path from, final Path to, final boolean linkCache) throws IOException {
+        Files.walkFileTree(from, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(to.resolve(from.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Path relative = from.relativize(file);
+                if (LOCKS.contains(relative.getFileName().toString()) || attrs.isSymbolicLink()) return FileVisitResult.CONTINUE;
+
+                Path target = to.resolve(relative.toString());
+                if (linkCache && isCacheEntry(relative)) try {
+                    Files.createLink(target, file);
+                    return FileVisitResult.CONTINUE;
+                } catch (IOException | UnsupportedOperationException x) {
+                    // e.g. another file system, or links not supported: copy it.
+                }
+                Files.copy(file, target, StandardCopyOption.COPY_ATTRIBUTES);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    static void delete(File file) {
+        if (!file.exists()) return;
+        try {
+            Files.walkFileTree(file.toPath(), new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (AccessDeniedException e) {
+                        // a read-only copy of a cache entry, on Windows.
+                        file.toFile().setWritable(true);
+                        Files.deleteIfExists(file);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                    Files.deleteIfExists(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            log.debug("Couldn't delete " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Fills a new profile.
+     */
+    interface Warmer {
+        void warm(Browser browser, File profile, List<String> urls) throws IOException;
+    }
+
+    /**
+     * Opens the pages in a local browser, and quits it so the profile is written.
+     */
+    static class LocalWarmer implements Warmer {
+        @Override
+        public void warm(Browser browser, File profile, List<String> urls) throws IOException {
+            DesiredCapabilities capabilities = browser == Browser.CHROME ? DesiredCapabilities.chrome() : DesiredCapabilities.firefox();
+            use(browser, capabilities, profile);
+
+            WebDriver driver = browser == Browser.CHROME ? new ChromeDriver(capabilities) : new FirefoxDriver(capabilities);
+            try {
+                for (String url : urls) {
+                    try {
+                        driver.navigate().to(url);
+                    } catch (RuntimeException x) {
+                        log.warn("Couldn't warm the profile template up with " + url + ": " + x.getMessage());
+                    }
+                }
+            } finally {
+                driver.quit();
+            }
+        }
+    }
+
+    /**
+     * The profile directory of one session.
+     */
+    public static class Profile {
+        private final File directory;
+
+        Profile(File directory) {
+            this.directory = directory;
+        }
+
+        public File getDirectory() {
+            return directory;
+        }
+
+        public void delete() {
+            ProfileTemplates.delete(directory);
+        }
+    }
+}
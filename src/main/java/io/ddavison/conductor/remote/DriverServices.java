@@ -0,0 +1,239 @@
+package io.ddavison.conductor.remote;
+
+import io.ddavison.conductor.Browser;
+import io.ddavison.conductor.Constants;
+import io.ddavison.conductor.util.JvmUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.chrome.ChromeDriverService;
+import org.openqa.selenium.edge.EdgeDriverService;
+import org.openqa.selenium.firefox.GeckoDriverService;
+import org.openqa.selenium.ie.InternetExplorerDriverService;
+import org.openqa.selenium.phantomjs.PhantomJSDriverService;
+import org.openqa.selenium.remote.service.DriverService;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * One driver process per browser for the whole JVM, instead of one per test.<br><br>
+ * On with <code>CONDUCTOR_SHARE_DRIVER_SERVICES=true</code>.  The first local session of a browser starts its driver
+ * process (chromedriver, geckodriver, ...), the following ones open their own browser through it, so each test still
+ * gets a fresh browser but no longer pays for spawning the driver and waiting for its port.<br><br>
+ * Before handing a process out it is checked to be alive, and every {@value #DEFAULT_PROBE_INTERVAL_MILLIS}ms to answer
+ * on <code>/status</code>; a process that crashed or hangs is restarted.  Every process is stopped when the JVM exits.
+ */
+public class DriverServices {
+
+    private static final Logger log = LogManager.getLogger(DriverServices.class);
+
+    public static final long DEFAULT_PROBE_INTERVAL_MILLIS = 30000;
+    static final int PROBE_TIMEOUT_MILLIS = 2000;
+
+    private static DriverServices instance;
+
+    private final Launcher launcher;
+    private final long probeIntervalMillis;
+    private final Map<Browser, Shared> services = new EnumMap<Browser, Shared>(Browser.class);
+    private int restarts;
+
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(JvmUtil.getJvmProperty(Constants.JVM_CONDUCTOR_SHARE_DRIVER_SERVICES));
+    }
+
+    public static synchronized DriverServices get() {
+        if (instance == null) {
+            instance = new DriverServices(new LocalServices(), DEFAULT_PROBE_INTERVAL_MILLIS);
+
+            Runtime.getRuntime().addShutdownHook(new Thread("conductor-driver-services-shutdown") {
+                @Override
+                public void run() {
+                    instance.stop();
+                }
+            });
+        }
+        return instance;
+    }
+
+    DriverServices(Launcher launcher, long probeIntervalMillis) {
+        this.launcher = launcher;
+        this.probeIntervalMillis = probeIntervalMillis;
+    }
+
+    /**
+     * @return <code>true</code> if the browser is driven through a driver process that can be shared.
+     */
+    public static boolean supports(Browser browser) {
+        switch (browser) {
+            case CHROME:
+            case FIREFOX:
+            case INTERNET_EXPLORER:
+            case EDGE:
+            case PHANTOMJS:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @param browser the browser
+     * @return The url of the driver process of the browser, started or restarted if needed.
+     * @throws IOException if the process couldn't be started
+     */
+    public synchronized URL url(Browser browser) throws IOException {
+        Shared shared = services.get(browser);
+        if (shared != null && !healthy(shared)) {
+            log.warn("The " + browser + " driver process at " + shared.service.url() + " stopped answering, restarting it");
+            discard(browser);
+            shared = null;
+        }
+        if (shared == null) {
+            shared = new Shared(launcher.start(browser));
+            services.put(browser, shared);
+            log.debug("Started the shared " + browser + " driver process at " + shared.service.url());
+        }
+        return shared.service.url();
+    }
+
+    /**
+     * A session failed to open through the driver process of a browser.  The browsers of the other sessions are attached
+     * to the process too, so it is only restarted if it died or stopped answering: otherwise the failure is the
+     * session's own.
+     * @param browser the browser
+     * @return <code>true</code> if the process was restarted.
+     */
+    public synchronized boolean sessionFailed(Browser browser) {
+        Shared shared = services.get(browser);
+        if (shared == null) return false;
+        shared.probedAt = 0; // probe it now
+        if (healthy(shared)) return false;
+
+        log.warn("The " + browser + " driver process at " + shared.service.url() + " died, restarting it");
+        discard(browser);
+        return true;
+    }
+
+    /**
+     * Stop the driver process of a browser.  The next session starts a new one.
+     */
+    private void discard(Browser browser) {
+        Shared shared = services.remove(browser);
+        if (shared == null) return;
+        restarts++;
+        try {
+            shared.service.stop();
+        } catch (RuntimeException x) {
+            log.debug("Couldn't stop the " + browser + " driver process: " + x.getMessage());
+        }
+    }
+
+    /**
+     * @return How many driver processes were replaced since the start.
+     */
+    public synchronized int restarts() {
+        return restarts;
+    }
+
+    public synchronized void stop() {
+        for (Browser browser : new ArrayList<Browser>(services.keySet())) {
+            services.remove(browser).service.stop();
+        }
+    }
+
+    private boolean healthy(Shared shared) {
+        if (!shared.service.isRunning()) return false;
+
+        long now = System.currentTimeMillis();
+        if (now - shared.probedAt < probeIntervalMillis) return true;
+        shared.probedAt = now;
+        return responds(shared.service.url());
+    }
+
+    static boolean responds(URL url) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(url, "status").openConnection();
+            connection.setConnectTimeout(PROBE_TIMEOUT_MILLIS);
+            connection.setReadTimeout(PROBE_TIMEOUT_MILLIS);
+            try {
+                return connection.getResponseCode() == 200;
+            } finally {
+                connection.disconnect();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Starts driver processes.
+     */
+    interface Launcher {
+        Service start(Browser browser) throws IOException;
+    }
+
+    /**
+     * A running driver process.
+     */
+    interface Service {
+        /**
+         * @return the url sessions are opened on, ending with a slash.
+         */
+        URL url();
+
+        boolean isRunning();
+
+        void stop();
+    }
+
+    private static class Shared {
+        final Service service;
+        long probedAt = System.currentTimeMillis();
+
+        Shared(Service service) {
+            this.service = service;
+        }
+    }
+
+    static class LocalServices implements Launcher {
+        @Override
+        public Service start(Browser browser) throws IOException {
+            final DriverService service;
+            switch (browser) {
+                case CHROME: service = ChromeDriverService.createDefaultService(); break;
+                case FIREFOX: service = GeckoDriverService.createDefaultService(); break;
+                case INTERNET_EXPLORER: service = InternetExplorerDriverService.createDefaultService(); break;
+                case EDGE: service = EdgeDriverService.createDefaultService(); break;
+                case PHANTOMJS: service = PhantomJSDriverService.createDefaultService(); break;
+                default: throw new IOException("No driver process to share for " + browser);
+            }
+
+            service.start();
+            return new Service() {
+                @Override
+                public URL url() {
+                    URL url = service.getUrl();
+                    try {
+                        return url.getPath().endsWith("/") ? url : new URL(url, url.getPath() + "/");
+                    } catch (IOException e) {
+                        return url;
+                    }
+                }
+
+                @Override
+                public boolean isRunning() {
+                    return service.isRunning();
+                }
+
+                @Override
+                public void stop() {
+                    service.stop();
+                }
+            };
+        }
+    }
+}
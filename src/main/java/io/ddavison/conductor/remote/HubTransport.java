@@ -0,0 +1,254 @@
+package io.ddavison.conductor.remote;
+
+import io.ddavison.conductor.Constants;
+import io.ddavison.conductor.Watchdog;
+import io.ddavison.conductor.trace.Tracer;
+import io.ddavison.conductor.util.Histogram;
+import io.ddavison.conductor.util.JvmUtil;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.entity.GzipCompressingEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.CommandInfo;
+import org.openqa.selenium.remote.HttpCommandExecutor;
+import org.openqa.selenium.remote.http.HttpClient;
+import org.openqa.selenium.remote.http.HttpRequest;
+import org.openqa.selenium.remote.http.HttpResponse;
+import org.openqa.selenium.remote.internal.ApacheHttpClient;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The HTTP transport used to talk to a Selenium hub.
+ *
+ * Every remote session in the JVM shares one bounded, keep-alive connection pool, so parallel
+ * sessions reuse warm connections to the hub instead of opening a new one per command.
+ * Latency of every command is recorded per endpoint (ids stripped from the path).
+ *
+ * Tunable through JVM properties / environment variables:
+ * <ul>
+ *     <li>{@value Constants#JVM_CONDUCTOR_HUB_MAX_CONNECTIONS} - pool size (default {@value #DEFAULT_MAX_CONNECTIONS})</li>
+ *     <li>{@value Constants#JVM_CONDUCTOR_HUB_CONNECT_TIMEOUT} - connect timeout in ms (default {@value #DEFAULT_CONNECT_TIMEOUT})</li>
+ *     <li>{@value Constants#JVM_CONDUCTOR_HUB_SOCKET_TIMEOUT} - read timeout in ms (default {@value #DEFAULT_SOCKET_TIMEOUT})</li>
+ *     <li>{@value Constants#JVM_CONDUCTOR_HUB_COMPRESS_REQUESTS} - gzip request bodies (default false, the hub or a proxy in front of it must accept <code>Content-Encoding: gzip</code>)</li>
+ * </ul>
+ * Responses are always requested compressed.
+ */
+public class HubTransport {
+
+    private static final Logger log = LogManager.getLogger(HubTransport.class);
+
+    public static final int DEFAULT_MAX_CONNECTIONS = 128;
+    public static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+    public static final int DEFAULT_SOCKET_TIMEOUT = 180000;
+
+    // request bodies smaller than this are not worth compressing
+    private static final int COMPRESSION_THRESHOLD = 1024;
+
+    private static HubTransport instance;
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient client;
+    private final HttpClient.Factory factory;
+    private final ConcurrentMap<String, Histogram> latencies = new ConcurrentHashMap<String, Histogram>();
+
+    /**
+     * @return The JVM-wide transport, created on first use.
+     */
+    public static synchronized HubTransport get() {
+        if (instance == null) {
+            instance = new HubTransport(
+                    JvmUtil.getJvmIntProperty(Constants.JVM_CONDUCTOR_HUB_MAX_CONNECTIONS, DEFAULT_MAX_CONNECTIONS),
+                    JvmUtil.getJvmIntProperty(Constants.JVM_CONDUCTOR_HUB_CONNECT_TIMEOUT, DEFAULT_CONNECT_TIMEOUT),
+                    JvmUtil.getJvmIntProperty(Constants.JVM_CONDUCTOR_HUB_SOCKET_TIMEOUT, DEFAULT_SOCKET_TIMEOUT),
+                    Boolean.parseBoolean(JvmUtil.getJvmProperty(Constants.JVM_CONDUCTOR_HUB_COMPRESS_REQUESTS)));
+
+            Runtime.getRuntime().addShutdownHook(new Thread("conductor-hub-transport-shutdown") {
+                @Override
+                public void run() {
+                    instance.close();
+                }
+            });
+        }
+        return instance;
+    }
+
+    HubTransport(int maxConnections, int connectTimeout, int socketTimeout, boolean compressRequests) {
+        connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        // all sessions talk to the same hub, so a single route may use the whole pool.
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+        connectionManager.setValidateAfterInactivity(2000);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeout)
+                .setSocketTimeout(socketTimeout)
+                .setConnectionRequestTimeout(connectTimeout)
+                .build();
+
+        HttpClientBuilder builder = HttpClientBuilder.create()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .evictIdleConnections(60, TimeUnit.SECONDS);
+
+        if (compressRequests) builder.addInterceptorFirst(new GzipRequestInterceptor());
+
+        client = builder.build();
+        factory = new Factory();
+
+        log.debug(String.format("Hub transport: maxConnections=%d connectTimeout=%dms socketTimeout=%dms compressRequests=%s",
+                maxConnections, connectTimeout, socketTimeout, compressRequests));
+    }
+
+    /**
+     * @return A Selenium http client factory backed by the shared pool.
+     */
+    public HttpClient.Factory factory() {
+        return factory;
+    }
+
+    /**
+     * Create a command executor for a remote end (a hub, or a local driver server).
+     * @param remoteAddress the address of the remote end
+     * @return A command executor sending every command through the shared pool.
+     */
+    public CommandExecutor executor(URL remoteAddress) {
+        return new HttpCommandExecutor(Collections.<String, CommandInfo>emptyMap(), remoteAddress, factory);
+    }
+
+    /**
+     * @return Latency of each endpoint in microseconds, keyed by <code>METHOD /path</code> with ids replaced.
+     */
+    public Map<String, Histogram> latencies() {
+        return Collections.unmodifiableMap(latencies);
+    }
+
+    /**
+     * @return A human readable summary of pool usage and per endpoint latencies.
+     */
+    public String report() {
+        PoolStats stats = connectionManager.getTotalStats();
+        StringBuilder sb = new StringBuilder(String.format("\n=== Hub transport ===\n\tPool: leased=%d available=%d pending=%d max=%d\n",
+                stats.getLeased(), stats.getAvailable(), stats.getPending(), stats.getMax()));
+
+        for (Map.Entry<String, Histogram> entry : new TreeMap<String, Histogram>(latencies).entrySet()) {
+            sb.append(String.format("\t%-60s %s (us)\n", entry.getKey(), entry.getValue()));
+        }
+        return sb.toString();
+    }
+
+    void close() {
+        if (!latencies.isEmpty()) log.info(report());
+        try {
+            client.close();
+        } catch (IOException e) {
+            log.debug("Couldn't close the hub transport cleanly", e);
+        }
+    }
+
+    void record(HttpRequest request, long elapsedNanos) {
+        String endpoint = request.getMethod() + " " + normalize(request.getUri());
+        Histogram.in(latencies, endpoint).record(TimeUnit.NANOSECONDS.toMicros(elapsedNanos));
+    }
+
+    /**
+     * Replace session and element ids in a command path, so that latencies of the same command aggregate.
+     * @param uri e.g. <code>/session/8b1e.../element/0.51-1/click</code>
+     * @return e.g. <code>/session/:sessionId/element/:id/click</code>
+     */
+    static String normalize(String uri) {
+        int query = uri.indexOf('?');
+        if (query >= 0) uri = uri.substring(0, query);
+
+        String[] segments = uri.split("/");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < segments.length; i++) {
+            if (segments[i].isEmpty()) continue;
+            sb.append('/');
+            if (i > 0 && "session".equals(segments[i - 1])) sb.append(":sessionId");
+            else if (i > 0 && ("element".equals(segments[i - 1]) || "elements".equals(segments[i - 1]))
+                    && !isCommandName(segments[i])) sb.append(":id");
+            else sb.append(segments[i]);
+        }
+        return sb.length() == 0 ? "/" : sb.toString();
+    }
+
+    private static boolean isCommandName(String segment) {
+        // e.g. /element/active
+        return "active".equals(segment);
+    }
+
+    private class Factory extends ApacheHttpClient.Factory {
+        @Override
+        public HttpClient createClient(URL url) {
+            return new PooledHttpClient(url);
+        }
+    }
+
+    /**
+     * A Selenium http client that borrows connections from the shared pool, and times every command.
+     */
+    private class PooledHttpClient extends ApacheHttpClient {
+
+        PooledHttpClient(URL url) {
+            super(client, url);
+        }
+
+        @Override
+        public HttpResponse execute(HttpRequest request, boolean followRedirects) throws IOException {
+            long start = System.nanoTime();
+            String command = request.getMethod() + " " + normalize(request.getUri());
+            Watchdog.commandStarted(command);
+            HttpResponse response = null;
+            try {
+                response = super.execute(request, followRedirects);
+                return response;
+            } finally {
+                Watchdog.commandFinished();
+                long end = System.nanoTime();
+                record(request, end - start);
+                Tracer.span(Tracer.COMMAND, command, start, end,
+                        "requestBytes", request.getContent() == null ? 0 : request.getContent().length,
+                        "responseBytes", response == null || response.getContent() == null ? null : response.getContent().length);
+            }
+        }
+
+        /**
+         * The pool is shared by every session, so closing one client must not close it.
+         */
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class GzipRequestInterceptor implements HttpRequestInterceptor {
+        @Override
+        public void process(org.apache.http.HttpRequest request, HttpContext context) throws HttpException, IOException {
+            if (!(request instanceof HttpEntityEnclosingRequest)) return;
+
+            HttpEntityEnclosingRequest enclosing = (HttpEntityEnclosingRequest) request;
+            HttpEntity entity = enclosing.getEntity();
+            if (entity == null || entity.getContentEncoding() != null) return;
+            if (entity.getContentLength() >= 0 && entity.getContentLength() < COMPRESSION_THRESHOLD) return;
+
+            enclosing.setEntity(new GzipCompressingEntity(entity));
+        }
+    }
+}
@@ -0,0 +1,630 @@
+package io.ddavison.conductor.remote;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import io.ddavison.conductor.Constants;
+import io.ddavison.conductor.util.Histogram;
+import io.ddavison.conductor.util.JvmUtil;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.chrome.ChromeDriverService;
+import org.openqa.selenium.edge.EdgeDriverService;
+import org.openqa.selenium.firefox.GeckoDriverService;
+import org.openqa.selenium.ie.InternetExplorerDriverService;
+import org.openqa.selenium.phantomjs.PhantomJSDriverService;
+import org.openqa.selenium.remote.service.DriverService;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An in-JVM stand-in for a Selenium hub, for parallel runs on a single machine.  Point the tests at it with
+ * <code>hub = "embedded"</code> (or <code>CONDUCTOR_HUB=embedded</code>).<br><br>
+ * The router starts a local driver process per session, and never more than
+ * <code>CONDUCTOR_ROUTER_MAX_SESSIONS</code> (default: the number of processors) at once.  New session requests
+ * wait in line for a free slot, first come first served.  A deleted session is cleaned (extra windows closed, storage
+ * and cookies cleared, left on <code>about:blank</code>) and kept idle for the next request of the same capabilities, unless a request is waiting for a slot; idle sessions are quit after
+ * {@value #IDLE_TIMEOUT_SECONDS}s.  Every other command is passed as is to the driver of its session, through a
+ * keep-alive connection pool.<br><br>
+ * Tunable through JVM properties / environment variables:
+ * <ul>
+ *     <li>{@value Constants#JVM_CONDUCTOR_ROUTER_PORT} - port (default any free port)</li>
+ *     <li>{@value Constants#JVM_CONDUCTOR_ROUTER_MAX_SESSIONS} - concurrent sessions</li>
+ *     <li>{@value Constants#JVM_CONDUCTOR_ROUTER_QUEUE_TIMEOUT} - how long a new session request waits for a slot, in ms (default {@value #DEFAULT_QUEUE_TIMEOUT})</li>
+ * </ul>
+ */
+public class SessionRouter {
+
+    private static final Logger log = LogManager.getLogger(SessionRouter.class);
+
+    /**
+     * The hub of the tests using the embedded router.
+     */
+    public static final String EMBEDDED = "embedded";
+
+    public static final int DEFAULT_QUEUE_TIMEOUT = 300000;
+    public static final long IDLE_TIMEOUT_SECONDS = 60;
+
+    private static final String PREFIX = "/wd/hub";
+    private static final Pattern SESSION_ID = Pattern.compile("\"sessionId\"\\s*:\\s*\"([^\"]+)\"");
+    private static final Pattern BROWSER_NAME = Pattern.compile("\"browserName\"\\s*:\\s*\"([^\"]*)\"");
+    private static final Pattern VALUE = Pattern.compile("\"value\"\\s*:\\s*(\"[^\"]*\"|\\[[^\\]]*\\])");
+    private static final Pattern STRING = Pattern.compile("\"([^\"]*)\"");
+    private static final String CLEAR_STORAGE = "{\"script\":\"try { window.localStorage.clear(); } catch (e) {}"
+            + " try { window.sessionStorage.clear(); } catch (e) {}\",\"args\":[]}";
+
+    private static SessionRouter instance;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService reaper;
+    private final CloseableHttpClient client;
+    private final Launcher launcher;
+    private final int maxSessions;
+    private final long queueTimeoutMillis;
+    private final long idleTimeoutMillis;
+
+    private final Semaphore slots;
+    private final Map<String, RoutedSession> sessions = new ConcurrentHashMap<String, RoutedSession>();
+    private final Map<String, Deque<RoutedSession>> idle = new HashMap<String, Deque<RoutedSession>>();
+    private final Histogram queued = new Histogram();
+    // requests waiting for a slot, guarded by idle: a session released meanwhile is quit rather than kept idle.
+    private int waiting;
+    private final AtomicInteger started = new AtomicInteger();
+    private final AtomicInteger reused = new AtomicInteger();
+    private volatile boolean closed;
+
+    /**
+     * @param hub the configured hub
+     * @return The url of the embedded router, started on first use, if the hub is {@value #EMBEDDED}.  The hub otherwise.
+     */
+    public static String resolve(String hub) {
+        return EMBEDDED.equalsIgnoreCase(hub) ? get().url().toString() : hub;
+    }
+
+    /**
+     * @return The JVM-wide router, started on first use.
+     */
+    public static synchronized SessionRouter get() {
+        if (instance == null) {
+            try {
+                instance = new SessionRouter(
+                        JvmUtil.getJvmIntProperty(Constants.JVM_CONDUCTOR_ROUTER_PORT, 0),
+                        JvmUtil.getJvmIntProperty(Constants.JVM_CONDUCTOR_ROUTER_MAX_SESSIONS, Runtime.getRuntime().availableProcessors()),
+                        JvmUtil.getJvmIntProperty(Constants.JVM_CONDUCTOR_ROUTER_QUEUE_TIMEOUT, DEFAULT_QUEUE_TIMEOUT),
+                        TimeUnit.SECONDS.toMillis(IDLE_TIMEOUT_SECONDS),
+                        new LocalDrivers());
+            } catch (IOException e) {
+                throw new IllegalStateException("Couldn't start the embedded session router", e);
+            }
+            instance.start();
+
+            Runtime.getRuntime().addShutdownHook(new Thread("conductor-session-router-shutdown") {
+                @Override
+                public void run() {
+                    instance.stop();
+                }
+            });
+        }
+        return instance;
+    }
+
+    SessionRouter(int port, int maxSessions, long queueTimeoutMillis, long idleTimeoutMillis, Launcher launcher) throws IOException {
+        this.maxSessions = Math.max(1, maxSessions);
+        this.queueTimeoutMillis = queueTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.launcher = launcher;
+        this.slots = new Semaphore(this.maxSessions, true);
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        // a driver process per session: at most a couple of connections to each.
+        connectionManager.setMaxTotal(this.maxSessions * 4);
+        connectionManager.setDefaultMaxPerRoute(4);
+        client = HttpClientBuilder.create()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(HubTransport.DEFAULT_CONNECT_TIMEOUT)
+                        .setSocketTimeout(HubTransport.DEFAULT_SOCKET_TIMEOUT)
+                        .build())
+                .build();
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/", new Handler());
+        // requests for a new session block until there is a slot, so threads are not bounded here.
+        executor = Executors.newCachedThreadPool(daemon("conductor-session-router"));
+        server.setExecutor(executor);
+        reaper = Executors.newSingleThreadScheduledExecutor(daemon("conductor-session-router-reaper"));
+    }
+
+    void start() {
+        server.start();
+        reaper.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                quitExpired();
+            }
+        }, idleTimeoutMillis / 2, idleTimeoutMillis / 2, TimeUnit.MILLISECONDS);
+        log.info(String.format("Embedded session router on %s, %d sessions at most", url(), maxSessions));
+    }
+
+    /**
+     * @return The url to use as the hub.
+     */
+    public URL url() {
+        try {
+            return new URL("http://127.0.0.1:" + server.getAddress().getPort() + PREFIX);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Quit every session and stop listening.
+     */
+    public void stop() {
+        closed = true;
+        server.stop(0);
+        reaper.shutdownNow();
+
+        List<RoutedSession> all = new ArrayList<RoutedSession>(sessions.values());
+        for (RoutedSession session : all) quit(session);
+        executor.shutdownNow();
+        try {
+            client.close();
+        } catch (IOException e) {
+            log.debug("Couldn't close the session router client cleanly", e);
+        }
+        if (started.get() > 0) log.info(report());
+    }
+
+    /**
+     * @return A human readable summary of the sessions routed.
+     */
+    public String report() {
+        return String.format("\n=== Session router ===\n\tSessions: started=%d reused=%d max=%d\n\tWaited for a slot: %s (ms)\n",
+                started.get(), reused.get(), maxSessions, queued);
+    }
+
+    int activeSessions() {
+        return maxSessions - slots.availablePermits();
+    }
+
+    private void newSession(HttpExchange exchange, byte[] body) throws IOException {
+        String browser = browserName(body);
+        String capabilities = capabilities(body);
+
+        RoutedSession session;
+        RoutedSession oldest = null;
+        synchronized (idle) {
+            session = takeIdle(capabilities);
+            if (session == null) {
+                // from now on, released sessions are quit for this request, and the ones idle until now make room.
+                waiting++;
+                if (slots.availablePermits() == 0) oldest = takeOldestIdle();
+            }
+        }
+        if (session != null) {
+            reused.incrementAndGet();
+            respond(exchange, 200, session.created);
+            return;
+        }
+        if (oldest != null) quit(oldest);
+
+        long waitStart = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = slots.tryAcquire(queueTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        } finally {
+            synchronized (idle) {
+                waiting--;
+            }
+        }
+        queued.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - waitStart));
+        if (!acquired) {
+            respond(exchange, 500, error(33, "No free session slot after " + queueTimeoutMillis + "ms, " + maxSessions + " sessions at most"));
+            return;
+        }
+
+        Driver driver = null;
+        try {
+            driver = launcher.launch(browser);
+            Reply reply = send(driver.url(), "POST", "/session", body);
+            Matcher matcher = SESSION_ID.matcher(new String(reply.body, "UTF-8"));
+            if (reply.status >= 400 || !matcher.find()) {
+                driver.stop();
+                slots.release();
+                respond(exchange, reply.status >= 400 ? reply.status : 500, reply.body);
+                return;
+            }
+
+            session = new RoutedSession(matcher.group(1), browser, capabilities, driver, reply.body);
+            sessions.put(session.id, session);
+            started.incrementAndGet();
+            log.debug(String.format("Routed new %s session %s to %s", browser, session.id, driver.url()));
+            respond(exchange, reply.status, reply.body);
+        } catch (IOException e) {
+            if (driver != null) driver.stop();
+            slots.release();
+            respond(exchange, 500, error(33, "Couldn't start a " + browser + " session: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Keep a session for the next request of the same capabilities, or quit it if a request is waiting for a slot.
+     */
+    private void release(RoutedSession session) {
+        try {
+            clean(session);
+        } catch (IOException e) {
+            log.debug("Not reusing a session that couldn't be cleaned: " + e.getMessage());
+            quit(session);
+            return;
+        }
+
+        synchronized (idle) {
+            if (!closed && waiting == 0) {
+                Deque<RoutedSession> deque = idle.get(session.capabilities);
+                if (deque == null) {
+                    deque = new ArrayDeque<RoutedSession>();
+                    idle.put(session.capabilities, deque);
+                }
+                session.idleSince = System.currentTimeMillis();
+                deque.addFirst(session);
+                return;
+            }
+        }
+        quit(session);
+    }
+
+    /**
+     * Leave the session as a new one: a single window on <code>about:blank</code>, without the cookies and the storage
+     * of the page its client ended on.
+     */
+    private void clean(RoutedSession session) throws IOException {
+        URL url = session.driver.url();
+        String path = "/session/" + session.id;
+
+        List<String> main = strings(command(url, "GET", path + "/window_handle", null));
+        List<String> handles = strings(command(url, "GET", path + "/window_handles", null));
+        if (main.size() != 1) throw new IOException("no current window");
+        for (String handle : handles) {
+            if (handle.equals(main.get(0))) continue;
+            command(url, "POST", path + "/window", window(handle));
+            command(url, "DELETE", path + "/window", null);
+        }
+        if (handles.size() > 1) command(url, "POST", path + "/window", window(main.get(0)));
+        command(url, "POST", path + "/frame", "{\"id\":null}".getBytes("UTF-8"));
+
+        command(url, "POST", path + "/execute", CLEAR_STORAGE.getBytes("UTF-8"));
+        command(url, "DELETE", path + "/cookie", null);
+        command(url, "POST", path + "/url", "{\"url\":\"about:blank\"}".getBytes("UTF-8"));
+    }
+
+    private byte[] command(URL driver, String method, String path, byte[] body) throws IOException {
+        Reply reply = send(driver, method, path, body);
+        if (reply.status >= 400) throw new IOException(method + " " + path + ": status " + reply.status);
+        return reply.body;
+    }
+
+    /**
+     * @return The body to switch to a window, for both the JSON wire protocol and W3C drivers.
+     */
+    private static byte[] window(String handle) throws IOException {
+        return String.format("{\"name\":\"%s\",\"handle\":\"%s\"}", handle, handle).getBytes("UTF-8");
+    }
+
+    /**
+     * @return The string, or the strings of the array, of the value of a response.
+     */
+    static List<String> strings(byte[] response) throws IOException {
+        List<String> strings = new ArrayList<String>();
+        Matcher value = VALUE.matcher(new String(response, "UTF-8"));
+        if (!value.find()) return strings;
+        Matcher string = STRING.matcher(value.group(1));
+        while (string.find()) strings.add(string.group(1));
+        return strings;
+    }
+
+    /**
+     * Called holding the lock of {@link #idle}.
+     */
+    private RoutedSession takeIdle(String capabilities) {
+        Deque<RoutedSession> deque = idle.get(capabilities);
+        return deque == null ? null : deque.pollFirst();
+    }
+
+    /**
+     * Take the session idle for the longest, to quit it to make room for other capabilities.  Called holding the lock
+     * of {@link #idle}.
+     */
+    private RoutedSession takeOldestIdle() {
+        RoutedSession oldest = null;
+        for (Deque<RoutedSession> deque : idle.values()) {
+            RoutedSession last = deque.peekLast();
+            if (last != null && (oldest == null || last.idleSince < oldest.idleSince)) oldest = last;
+        }
+        if (oldest != null) idle.get(oldest.capabilities).remove(oldest);
+        return oldest;
+    }
+
+    private void quitExpired() {
+        List<RoutedSession> expired = new ArrayList<RoutedSession>();
+        long now = System.currentTimeMillis();
+        synchronized (idle) {
+            for (Deque<RoutedSession> deque : idle.values()) {
+                for (Iterator<RoutedSession> it = deque.iterator(); it.hasNext(); ) {
+                    RoutedSession session = it.next();
+                    if (now - session.idleSince >= idleTimeoutMillis) {
+                        it.remove();
+                        expired.add(session);
+                    }
+                }
+            }
+        }
+        for (RoutedSession session : expired) quit(session);
+    }
+
+    private void quit(RoutedSession session) {
+        if (sessions.remove(session.id) == null) return;
+        try {
+            send(session.driver.url(), "DELETE", "/session/" + session.id, null);
+        } catch (IOException e) {
+            log.debug("Couldn't quit session " + session.id + ": " + e.getMessage());
+        }
+        session.driver.stop();
+        slots.release();
+    }
+
+    private Reply send(URL driver, String method, String path, byte[] body) throws IOException {
+        String base = driver.toString();
+        if (base.endsWith("/")) base = base.substring(0, base.length() - 1);
+
+        ForwardedRequest request = new ForwardedRequest(method, URI.create(base + path));
+        if (body != null && body.length > 0) request.setEntity(new ByteArrayEntity(body, ContentType.APPLICATION_JSON));
+
+        CloseableHttpResponse response = client.execute(request);
+        try {
+            byte[] content = response.getEntity() == null ? new byte[0] : EntityUtils.toByteArray(response.getEntity());
+            return new Reply(response.getStatusLine().getStatusCode(), content);
+        } finally {
+            response.close();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        OutputStream out = exchange.getResponseBody();
+        try {
+            out.write(body);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static byte[] error(int status, String message) throws IOException {
+        return String.format("{\"status\":%d,\"value\":{\"message\":\"%s\"}}", status, message.replace("\\", "\\\\").replace("\"", "\\\"")).getBytes("UTF-8");
+    }
+
+    /**
+     * @return The requested capabilities, without the whitespace between the tokens of their JSON: sessions are only
+     * reused for requests of the same capabilities (options, proxy, platform, profile...), not just the same browser.
+     */
+    static String capabilities(byte[] body) throws IOException {
+        String json = new String(body, "UTF-8");
+        StringBuilder normalized = new StringBuilder(json.length());
+        boolean inString = false;
+        for (int i = 0; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (inString) {
+                normalized.append(c);
+                if (c == '\\' && i + 1 < json.length()) normalized.append(json.charAt(++i));
+                else if (c == '"') inString = false;
+            } else if (!Character.isWhitespace(c)) {
+                normalized.append(c);
+                if (c == '"') inString = true;
+            }
+        }
+        return normalized.toString();
+    }
+
+    static String browserName(byte[] body) throws IOException {
+        Matcher matcher = BROWSER_NAME.matcher(new String(body, "UTF-8"));
+        return matcher.find() ? matcher.group(1) : "";
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) out.write(buffer, 0, read);
+        in.close();
+        return out.toByteArray();
+    }
+
+    private static ThreadFactory daemon(final String name) {
+        return new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    private class Handler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                String method = exchange.getRequestMethod();
+                String path = exchange.getRequestURI().getRawPath();
+                if (path.startsWith(PREFIX)) path = path.substring(PREFIX.length());
+                if (path.endsWith("/") && path.length() > 1) path = path.substring(0, path.length() - 1);
+                byte[] body = read(exchange.getRequestBody());
+
+                if (path.equals("/status")) {
+                    respond(exchange, 200, String.format("{\"status\":0,\"value\":{\"ready\":%s,\"message\":\"%d of %d sessions in use\"}}",
+                            slots.availablePermits() > 0, activeSessions(), maxSessions).getBytes("UTF-8"));
+                    return;
+                }
+                if (path.equals("/session") && method.equals("POST")) {
+                    newSession(exchange, body);
+                    return;
+                }
+                if (!path.startsWith("/session/")) {
+                    respond(exchange, 404, error(9, "Unknown command " + method + " " + path));
+                    return;
+                }
+
+                int end = path.indexOf('/', "/session/".length());
+                String id = path.substring("/session/".length(), end < 0 ? path.length() : end);
+                RoutedSession session = sessions.get(id);
+                if (session == null) {
+                    respond(exchange, 404, error(6, "No active session with id " + id));
+                    return;
+                }
+                if (end < 0 && method.equals("DELETE")) {
+                    release(session);
+                    respond(exchange, 200, String.format("{\"sessionId\":\"%s\",\"status\":0,\"value\":null}", id).getBytes("UTF-8"));
+                    return;
+                }
+
+                String query = exchange.getRequestURI().getRawQuery();
+                Reply reply = send(session.driver.url(), method, query == null ? path : path + "?" + query, body);
+                respond(exchange, reply.status, reply.body);
+            } catch (IOException e) {
+                log.debug("Couldn't route " + exchange.getRequestMethod() + " " + exchange.getRequestURI() + ": " + e.getMessage());
+                respond(exchange, 500, error(13, e.getMessage() == null ? e.toString() : e.getMessage()));
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+
+    /**
+     * Starts the driver process of a new session.
+     */
+    interface Launcher {
+        /**
+         * @param browserName the browser name of the requested capabilities, e.g. <code>chrome</code>
+         * @return The started driver
+         * @throws IOException if the driver couldn't start
+         */
+        Driver launch(String browserName) throws IOException;
+    }
+
+    interface Driver {
+        URL url();
+
+        void stop();
+    }
+
+    /**
+     * The driver executables of the machine, found the same way as for local sessions.
+     */
+    static class LocalDrivers implements Launcher {
+        @Override
+        public Driver launch(String browserName) throws IOException {
+            final DriverService service;
+            if (browserName.equals("chrome")) service = ChromeDriverService.createDefaultService();
+            else if (browserName.equals("firefox")) service = GeckoDriverService.createDefaultService();
+            else if (browserName.equals("internet explorer")) service = InternetExplorerDriverService.createDefaultService();
+            else if (browserName.equals("MicrosoftEdge")) service = EdgeDriverService.createDefaultService();
+            else if (browserName.equals("phantomjs")) service = PhantomJSDriverService.createDefaultService();
+            else throw new IOException("The embedded router can't start " + (browserName.isEmpty() ? "unnamed" : browserName) + " browsers");
+
+            service.start();
+            return new Driver() {
+                @Override
+                public URL url() {
+                    return service.getUrl();
+                }
+
+                @Override
+                public void stop() {
+                    service.stop();
+                }
+            };
+        }
+    }
+
+    private static class RoutedSession {
+        final String id;
+        final String browser;
+        final String capabilities;
+        final Driver driver;
+        final byte[] created;
+        volatile long idleSince;
+
+        RoutedSession(String id, String browser, String capabilities, Driver driver, byte[] created) {
+            this.id = id;
+            this.browser = browser;
+            this.capabilities = capabilities;
+            this.driver = driver;
+            this.created = created;
+        }
+    }
+
+    private static class Reply {
+        final int status;
+        final byte[] body;
+
+        Reply(int status, byte[] body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    private static class ForwardedRequest extends HttpEntityEnclosingRequestBase {
+        private final String method;
+
+        ForwardedRequest(String method, URI uri) {
+            this.method = method;
+            setURI(uri);
+        }
+
+        @Override
+        public String getMethod() {
+            return method;
+        }
+    }
+}
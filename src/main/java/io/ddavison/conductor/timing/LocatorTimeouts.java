@@ -0,0 +1,258 @@
+package io.ddavison.conductor.timing;
+
+import io.ddavison.conductor.Constants;
+import io.ddavison.conductor.util.Histogram;
+import io.ddavison.conductor.util.JvmUtil;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.By;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * How long elements take to appear, per page (url pattern, see {@link PageTiming#pattern(String)}) and locator,
+ * learned across runs to size the waits for elements.<br><br>
+ * On with <code>CONDUCTOR_ADAPTIVE_TIMEOUTS=true</code>.  Latencies are kept in <code>CONDUCTOR_LOCATOR_HISTORY</code>
+ * (default {@value Constants#DEFAULT_LOCATOR_HISTORY}), merged with those of the run when the JVM exits.  Once a locator
+ * was seen {@value #MIN_SAMPLES} times, waiting for it times out after {@value #MARGIN} times its p99 (between
+ * {@value #MIN_TIMEOUT_MILLIS}ms and {@value #MAX_TIMEOUT_MILLIS}ms) and polls every quarter of its median (between
+ * {@value #MIN_POLL_MILLIS}ms and {@value #MAX_POLL_MILLIS}ms).  Locators seen less are waited for as usual.<br><br>
+ * A wait that times out is recorded as a sample of its timeout, so that the history of a page that got slower catches
+ * up with it.  For the rest of the run that locator is then waited for at least as usual, and {@value #MARGIN} times as
+ * long as the wait that timed out.<br><br>
+ * Locators that got slower in this run (p90 over {@value #DRIFT} times their p99 so far) are reported at the end.
+ */
+public class LocatorTimeouts {
+
+    private static final Logger log = LogManager.getLogger(LocatorTimeouts.class);
+
+    public static final int MIN_SAMPLES = 5;
+    public static final double MARGIN = 3;
+    public static final long MIN_TIMEOUT_MILLIS = 1000;
+    public static final long MAX_TIMEOUT_MILLIS = 60000;
+    public static final long MIN_POLL_MILLIS = 50;
+    public static final long MAX_POLL_MILLIS = 1000;
+    public static final double DRIFT = 2;
+
+    // past this many samples the history is halved when saved, so that it follows the application as it changes.
+    static final long MAX_SAMPLES = 1000;
+
+    private static LocatorTimeouts instance;
+
+    private final File file;
+    private final Map<String, Histogram> history;
+    private final ConcurrentMap<String, Histogram> run = new ConcurrentHashMap<String, Histogram>();
+    // the longest wait that timed out in this run, per key.
+    private final ConcurrentMap<String, Long> timedOut = new ConcurrentHashMap<String, Long>();
+
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(JvmUtil.getJvmProperty(Constants.JVM_CONDUCTOR_ADAPTIVE_TIMEOUTS));
+    }
+
+    public static synchronized LocatorTimeouts get() {
+        if (instance == null) {
+            String file = JvmUtil.getJvmProperty(Constants.JVM_CONDUCTOR_LOCATOR_HISTORY);
+            instance = new LocatorTimeouts(new File(StringUtils.isEmpty(file) ? Constants.DEFAULT_LOCATOR_HISTORY : file));
+
+            Runtime.getRuntime().addShutdownHook(new Thread("conductor-locator-timeouts") {
+                @Override
+                public void run() {
+                    String drifted = instance.report();
+                    if (!drifted.isEmpty()) log.warn(drifted);
+                    instance.save();
+                }
+            });
+        }
+        return instance;
+    }
+
+    LocatorTimeouts(File file) {
+        this.file = file;
+        this.history = load(file);
+    }
+
+    /**
+     * @param page the url pattern of the page
+     * @param by the locator
+     * @param defaultTimeoutMillis the timeout until the locator has enough history
+     * @param defaultPollMillis the poll interval until the locator has enough history
+     * @return How long to wait for the locator, and how often to look for it
+     */
+    public Wait waitFor(String page, By by, long defaultTimeoutMillis, long defaultPollMillis) {
+        Long failed = timedOut.get(key(page, by));
+        if (failed != null) {
+            long widened = Math.min(MAX_TIMEOUT_MILLIS, (long) Math.ceil(failed * MARGIN));
+            return new Wait(Math.max(defaultTimeoutMillis, widened), defaultPollMillis, false);
+        }
+
+        Histogram latencies = history.get(key(page, by));
+        if (latencies == null || latencies.getCount() < MIN_SAMPLES) return new Wait(defaultTimeoutMillis, defaultPollMillis, false);
+
+        long timeout = clamp((long) Math.ceil(latencies.getValueAtPercentile(99) * MARGIN), MIN_TIMEOUT_MILLIS, MAX_TIMEOUT_MILLIS);
+        long poll = clamp(latencies.getValueAtPercentile(50) / 4, MIN_POLL_MILLIS, MAX_POLL_MILLIS);
+        return new Wait(timeout, poll, true);
+    }
+
+    /**
+     * @param page the url pattern of the page
+     * @param by the locator
+     * @param millis how long the element took to appear
+     */
+    public void record(String page, By by, long millis) {
+        Histogram.in(run, key(page, by)).record(millis);
+    }
+
+    /**
+     * @param page the url pattern of the page
+     * @param by the locator
+     * @param timeoutMillis how long the element was waited for, in vain
+     */
+    public void timedOut(String page, By by, long timeoutMillis) {
+        String key = key(page, by);
+        // the element took at least that long, the best sample there is.
+        Histogram.in(run, key).record(timeoutMillis);
+
+        synchronized (timedOut) {
+            Long failed = timedOut.get(key);
+            if (failed == null || failed < timeoutMillis) timedOut.put(key, timeoutMillis);
+        }
+    }
+
+    /**
+     * @return The locators that got slower in this run, one per line.  Empty if none did.
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Histogram> entry : new TreeMap<String, Histogram>(run).entrySet()) {
+            Histogram before = history.get(entry.getKey());
+            Histogram now = entry.getValue();
+            if (before == null || before.getCount() < MIN_SAMPLES || now.getCount() < MIN_SAMPLES) continue;
+
+            long p99 = before.getValueAtPercentile(99);
+            long p90 = now.getValueAtPercentile(90);
+            if (p90 > Math.max(p99 * DRIFT, MIN_POLL_MILLIS)) {
+                sb.append(String.format("\t%-80s p90 now %dms, p99 before %dms\n", entry.getKey(), p90, p99));
+            }
+        }
+        return sb.length() == 0 ? "" : "\n=== Locators slower than usual ===\n" + sb;
+    }
+
+    /**
+     * Merge the latencies of this run into the history file.
+     */
+    void save() {
+        if (run.isEmpty()) return;
+
+        Map<String, Histogram> merged = load(file);
+        for (Map.Entry<String, Histogram> entry : run.entrySet()) {
+            Histogram histogram = merged.get(entry.getKey());
+            if (histogram == null) histogram = new Histogram();
+            else if (histogram.getCount() >= MAX_SAMPLES) histogram = halve(histogram);
+            histogram.add(entry.getValue());
+            merged.put(entry.getKey(), histogram);
+        }
+
+        Properties properties = new Properties();
+        for (Map.Entry<String, Histogram> entry : merged.entrySet()) properties.setProperty(entry.getKey(), entry.getValue().encode());
+        try {
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (!parent.isDirectory() && !parent.mkdirs()) throw new IOException("Couldn't create " + parent);
+            OutputStream out = new FileOutputStream(file);
+            try {
+                properties.store(out, "conductor: how long elements take to appear, in ms, per page and locator");
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            log.warn("Couldn't save the locator history " + file + ": " + e.getMessage());
+        }
+    }
+
+    static Map<String, Histogram> load(File file) {
+        Map<String, Histogram> histograms = new HashMap<String, Histogram>();
+        if (!file.isFile()) return histograms;
+
+        Properties properties = new Properties();
+        try {
+            InputStream in = new FileInputStream(file);
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            log.warn("Couldn't read the locator history " + file + ": " + e.getMessage());
+        }
+        for (String key : properties.stringPropertyNames()) {
+            try {
+                histograms.put(key, Histogram.decode(properties.getProperty(key)));
+            } catch (NumberFormatException e) {
+                log.debug("Ignoring the corrupt history of " + key);
+            }
+        }
+        return histograms;
+    }
+
+    /**
+     * @return The same distribution, from half the samples.
+     */
+    static Histogram halve(Histogram histogram) {
+        Histogram halved = new Histogram();
+        for (String pair : histogram.encode().split(",")) {
+            int sep = pair.indexOf(':');
+            if (sep < 0) continue;
+            halved.record(Long.parseLong(pair.substring(0, sep)), (Long.parseLong(pair.substring(sep + 1)) + 1) / 2);
+        }
+        return halved;
+    }
+
+    static String key(String page, By by) {
+        return page + " " + by;
+    }
+
+    private static long clamp(long value, long min, long max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * The timeout and poll interval of a wait.
+     */
+    public static class Wait {
+        private final long timeoutMillis;
+        private final long pollMillis;
+        private final boolean adaptive;
+
+        public Wait(long timeoutMillis, long pollMillis, boolean adaptive) {
+            this.timeoutMillis = timeoutMillis;
+            this.pollMillis = pollMillis;
+            this.adaptive = adaptive;
+        }
+
+        public long getTimeoutMillis() {
+            return timeoutMillis;
+        }
+
+        public long getPollMillis() {
+            return pollMillis;
+        }
+
+        /**
+         * @return <code>true</code> if learned from the history of the locator.
+         */
+        public boolean isAdaptive() {
+            return adaptive;
+        }
+    }
+}
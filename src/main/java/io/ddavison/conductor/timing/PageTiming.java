@@ -0,0 +1,168 @@
+package io.ddavison.conductor.timing;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Timing of one page load, as reported by the browser (Navigation Timing, Paint Timing and Resource Timing).<br>
+ * Every metric is in milliseconds since the navigation started, except the resource count and transfer size.
+ */
+public class PageTiming {
+
+    public static final String TIME_TO_FIRST_BYTE = "timeToFirstByte";
+    public static final String DOM_INTERACTIVE = "domInteractive";
+    public static final String DOM_CONTENT_LOADED = "domContentLoaded";
+    public static final String LOAD = "load";
+    public static final String FIRST_PAINT = "firstPaint";
+    public static final String FIRST_CONTENTFUL_PAINT = "firstContentfulPaint";
+    public static final String RESOURCE_COUNT = "resourceCount";
+    public static final String TRANSFER_SIZE = "transferSize";
+    public static final String SLOWEST_RESOURCE = "slowestResource";
+
+    /**
+     * Returns null while the load event hasn't finished, or when the browser has no Navigation Timing.
+     */
+    private static final String SCRIPT =
+            "var p = window.performance;" +
+            "if (!p || !p.timing || !p.timing.loadEventEnd) return null;" +
+            "var t = p.timing, start = t.navigationStart, r = {};" +
+            "r.navigationStart = start;" +
+            "r." + TIME_TO_FIRST_BYTE + " = t.responseStart - start;" +
+            "r." + DOM_INTERACTIVE + " = t.domInteractive - start;" +
+            "r." + DOM_CONTENT_LOADED + " = t.domContentLoadedEventEnd - start;" +
+            "r." + LOAD + " = t.loadEventEnd - start;" +
+            "if (p.getEntriesByType) {" +
+            "  var paints = p.getEntriesByType('paint');" +
+            "  for (var i = 0; i < paints.length; i++) {" +
+            "    if (paints[i].name === 'first-paint') r." + FIRST_PAINT + " = Math.round(paints[i].startTime);" +
+            "    if (paints[i].name === 'first-contentful-paint') r." + FIRST_CONTENTFUL_PAINT + " = Math.round(paints[i].startTime);" +
+            "  }" +
+            "  var resources = p.getEntriesByType('resource'), size = 0, slowest = 0;" +
+            "  for (var j = 0; j < resources.length; j++) {" +
+            "    size += resources[j].transferSize || 0;" +
+            "    slowest = Math.max(slowest, resources[j].duration);" +
+            "  }" +
+            "  r." + RESOURCE_COUNT + " = resources.length;" +
+            "  r." + TRANSFER_SIZE + " = size;" +
+            "  r." + SLOWEST_RESOURCE + " = Math.round(slowest);" +
+            "}" +
+            "return r;";
+
+    // how long to wait for the load event to finish, after WebDriver returned from the navigation.
+    private static final int LOAD_EVENT_ATTEMPTS = 10;
+    private static final long LOAD_EVENT_POLL_MILLIS = 50;
+
+    private static final Pattern NUMBER = Pattern.compile("\\d+");
+    private static final Pattern HEX_ID = Pattern.compile("(?i)[0-9a-f]{8,}|[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+
+    private final String url;
+    private final long navigationStart;
+    private final Map<String, Long> metrics;
+
+    PageTiming(String url, long navigationStart, Map<String, Long> metrics) {
+        this.url = url;
+        this.navigationStart = navigationStart;
+        this.metrics = Collections.unmodifiableMap(metrics);
+    }
+
+    /**
+     * Read the timing of the page currently loaded.
+     * @param driver the session
+     * @return the timing, <code>null</code> if the browser doesn't report it.
+     */
+    public static PageTiming collect(WebDriver driver) {
+        if (!(driver instanceof JavascriptExecutor)) return null;
+
+        try {
+            Object result = null;
+            for (int i = 0; i < LOAD_EVENT_ATTEMPTS && result == null; i++) {
+                if (i > 0) Thread.sleep(LOAD_EVENT_POLL_MILLIS);
+                result = ((JavascriptExecutor) driver).executeScript(SCRIPT);
+            }
+            if (!(result instanceof Map)) return null;
+
+            Map<String, Long> metrics = new LinkedHashMap<String, Long>();
+            long navigationStart = 0;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) result).entrySet()) {
+                if (!(entry.getValue() instanceof Number)) continue;
+                long value = ((Number) entry.getValue()).longValue();
+                if ("navigationStart".equals(entry.getKey())) navigationStart = value;
+                else if (value >= 0) metrics.put(String.valueOf(entry.getKey()), value);
+            }
+            return new PageTiming(driver.getCurrentUrl(), navigationStart, metrics);
+        } catch (WebDriverException x) {
+            return null;
+        } catch (InterruptedException x) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Turn a url into the pattern its timings are aggregated under: no query nor fragment, and numeric or hex ids
+     * replaced.
+     * @param url e.g. <code>https://shop.example.com/orders/1234/items?page=2</code>
+     * @return e.g. <code>shop.example.com/orders/:id/items</code>
+     */
+    public static String pattern(String url) {
+        if (url == null) return "";
+
+        String path = url;
+        int scheme = path.indexOf("://");
+        if (scheme >= 0) path = path.substring(scheme + 3);
+        int end = path.length();
+        for (char c : new char[] { '?', '#', ';' }) {
+            int i = path.indexOf(c);
+            if (i >= 0 && i < end) end = i;
+        }
+        path = path.substring(0, end);
+
+        StringBuilder sb = new StringBuilder();
+        String[] segments = path.split("/", -1);
+        for (int i = 0; i < segments.length; i++) {
+            if (i > 0) sb.append('/');
+            String segment = segments[i];
+            if (i > 0 && (NUMBER.matcher(segment).matches() || HEX_ID.matcher(segment).matches())) sb.append(":id");
+            else sb.append(segment);
+        }
+        return sb.toString();
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getPattern() {
+        return pattern(url);
+    }
+
+    /**
+     * @return The epoch millis the navigation started at, tells two page loads of the same url apart.
+     */
+    public long getNavigationStart() {
+        return navigationStart;
+    }
+
+    /**
+     * @param metric e.g. {@link #LOAD}
+     * @return the value of the metric, <code>null</code> if the browser doesn't report it.
+     */
+    public Long get(String metric) {
+        return metrics.get(metric);
+    }
+
+    public Map<String, Long> getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public String toString() {
+        return url + " " + metrics;
+    }
+}
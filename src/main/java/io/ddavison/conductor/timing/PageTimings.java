@@ -0,0 +1,107 @@
+package io.ddavison.conductor.timing;
+
+import io.ddavison.conductor.Constants;
+import io.ddavison.conductor.util.Histogram;
+import io.ddavison.conductor.util.JvmUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Page timings of every test in the JVM, aggregated per url pattern (see {@link PageTiming#pattern(String)}) and metric.
+ * The summary is logged when the JVM exits.<br><br>
+ * Opt-in with <code>CONDUCTOR_PAGE_TIMING=true</code>: reading the timing of every page load takes a few scripts per
+ * navigation.  Page timing validations read the timing of the current page either way.
+ */
+public class PageTimings {
+
+    private static final Logger log = LogManager.getLogger(PageTimings.class);
+
+    private static PageTimings instance;
+
+    private final ConcurrentMap<String, ConcurrentMap<String, Histogram>> patterns = new ConcurrentHashMap<String, ConcurrentMap<String, Histogram>>();
+
+    /**
+     * @return <code>true</code> when every page load of the tests is recorded.
+     */
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(JvmUtil.getJvmProperty(Constants.JVM_CONDUCTOR_PAGE_TIMING));
+    }
+
+    public static synchronized PageTimings get() {
+        if (instance == null) {
+            instance = new PageTimings();
+
+            Runtime.getRuntime().addShutdownHook(new Thread("conductor-page-timings-report") {
+                @Override
+                public void run() {
+                    if (!instance.patterns.isEmpty()) log.info(instance.report());
+                }
+            });
+        }
+        return instance;
+    }
+
+    PageTimings() {
+    }
+
+    public void record(PageTiming timing) {
+        ConcurrentMap<String, Histogram> metrics = patterns.get(timing.getPattern());
+        if (metrics == null) {
+            ConcurrentMap<String, Histogram> created = new ConcurrentHashMap<String, Histogram>();
+            metrics = patterns.putIfAbsent(timing.getPattern(), created);
+            if (metrics == null) metrics = created;
+        }
+
+        for (Map.Entry<String, Long> entry : timing.getMetrics().entrySet()) {
+            Histogram.in(metrics, entry.getKey()).record(entry.getValue());
+        }
+    }
+
+    /**
+     * @param pattern the url pattern
+     * @param metric e.g. {@link PageTiming#LOAD}
+     * @return every value recorded for the metric on pages of the pattern so far, <code>null</code> if none.
+     */
+    public Histogram histogram(String pattern, String metric) {
+        Map<String, Histogram> metrics = patterns.get(pattern);
+        return metrics == null ? null : metrics.get(metric);
+    }
+
+    /**
+     * @return Metric histograms keyed by url pattern.
+     */
+    public Map<String, Map<String, Histogram>> snapshot() {
+        Map<String, Map<String, Histogram>> snapshot = new TreeMap<String, Map<String, Histogram>>();
+        for (Map.Entry<String, ConcurrentMap<String, Histogram>> entry : patterns.entrySet()) {
+            snapshot.put(entry.getKey(), Collections.<String, Histogram>unmodifiableMap(new TreeMap<String, Histogram>(entry.getValue())));
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return A human readable summary of every metric of every url pattern.
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder("\n=== Page timings ===\n");
+        for (Map.Entry<String, Map<String, Histogram>> pattern : snapshot().entrySet()) {
+            sb.append('\t').append(pattern.getKey()).append('\n');
+            for (Map.Entry<String, Histogram> metric : pattern.getValue().entrySet()) {
+                Histogram histogram = metric.getValue();
+                sb.append(String.format("\t\t%-22s count=%d p50=%d p90=%d p95=%d max=%d\n",
+                        metric.getKey(),
+                        histogram.getCount(),
+                        histogram.getValueAtPercentile(50),
+                        histogram.getValueAtPercentile(90),
+                        histogram.getValueAtPercentile(95),
+                        histogram.getMax()));
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,244 @@
+package io.ddavison.conductor.trace;
+
+import io.ddavison.conductor.Action;
+import io.ddavison.conductor.ConductorListener;
+import io.ddavison.conductor.Constants;
+import io.ddavison.conductor.Locomotive;
+import io.ddavison.conductor.util.JvmUtil;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes a timeline of tests, actions, waits and WebDriver commands in the Chrome trace event format, to open in
+ * <code>chrome://tracing</code> or Perfetto.<br><br>
+ * On with <code>CONDUCTOR_TRACE=true</code> (written to {@value Constants#DEFAULT_TRACE}) or
+ * <code>CONDUCTOR_TRACE=&lt;file&gt;</code>.  Test threads only queue their spans, a background thread formats and
+ * writes them; when the queue is full spans are dropped rather than slowing the tests down, and the count of dropped
+ * spans is logged at the end.
+ */
+public class Tracer {
+
+    private static final Logger log = LogManager.getLogger(Tracer.class);
+
+    public static final String TEST = "test";
+    public static final String ACTION = "action";
+    public static final String WAIT = "wait";
+    public static final String COMMAND = "command";
+
+    private static final int QUEUE_CAPACITY = 1 << 16;
+
+    private static volatile Tracer instance;
+
+    private final BlockingQueue<Span> queue = new ArrayBlockingQueue<Span>(QUEUE_CAPACITY);
+    private final AtomicLong dropped = new AtomicLong();
+    private final File file;
+    private final Thread writer;
+    private volatile boolean closed;
+    private boolean installed;
+
+    public static boolean isEnabled() {
+        String trace = JvmUtil.getJvmProperty(Constants.JVM_CONDUCTOR_TRACE);
+        return StringUtils.isNotEmpty(trace) && !"false".equalsIgnoreCase(trace);
+    }
+
+    public static Tracer get() {
+        if (instance == null) {
+            synchronized (Tracer.class) {
+                if (instance == null) {
+                    String trace = JvmUtil.getJvmProperty(Constants.JVM_CONDUCTOR_TRACE);
+                    instance = new Tracer(new File("true".equalsIgnoreCase(trace) ? Constants.DEFAULT_TRACE : trace));
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Record a span if tracing is on.  Cheap enough to call from anywhere: nothing is formatted on the calling thread.
+     * @param category e.g. {@link #ACTION}
+     * @param name e.g. <code>click</code>
+     * @param startNanos start, from {@link System#nanoTime()}
+     * @param endNanos end, from {@link System#nanoTime()}
+     * @param args extra details, as name/value pairs. May be empty.
+     */
+    public static void span(String category, String name, long startNanos, long endNanos, Object... args) {
+        Tracer tracer = instance;
+        if (tracer != null) tracer.add(new Span(category, name, Thread.currentThread(), startNanos, endNanos, args));
+    }
+
+    Tracer(File file) {
+        this.file = file;
+        this.writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        }, "conductor-trace-writer");
+        writer.setDaemon(true);
+    }
+
+    /**
+     * Start writing, and record the actions of every test.
+     */
+    public synchronized void install() {
+        if (installed) return;
+        installed = true;
+
+        start();
+        Locomotive.addListener(new ConductorListener() {
+            @Override
+            public void actionStarted(Action action) {
+            }
+
+            @Override
+            public void actionFinished(Action action) {
+                span(ACTION, action.getName(), action.getStartNanos(), action.getStartNanos() + action.getDurationNanos(),
+                        "target", action.getTarget(),
+                        "failure", action.getFailure() == null ? null : String.valueOf(action.getFailure().getMessage()));
+            }
+        });
+        Runtime.getRuntime().addShutdownHook(new Thread("conductor-trace-shutdown") {
+            @Override
+            public void run() {
+                close();
+            }
+        });
+        log.info("Tracing to " + file.getAbsolutePath());
+    }
+
+    void start() {
+        writer.start();
+    }
+
+    void add(Span span) {
+        if (closed || !queue.offer(span)) dropped.incrementAndGet();
+    }
+
+    /**
+     * Write the spans still queued and end the file.
+     */
+    void close() {
+        closed = true;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (dropped.get() > 0) log.warn(String.format("Trace: %d spans dropped, the writer couldn't keep up", dropped.get()));
+    }
+
+    private void write() {
+        try {
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (!parent.isDirectory() && !parent.mkdirs()) throw new IOException("Couldn't create " + parent);
+
+            Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), 1 << 16);
+            try {
+                out.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[\n");
+                boolean first = true;
+                List<Span> batch = new ArrayList<Span>();
+                while (!closed || !queue.isEmpty()) {
+                    Span span = queue.poll(200, TimeUnit.MILLISECONDS);
+                    if (span == null) {
+                        out.flush();
+                        continue;
+                    }
+                    batch.add(span);
+                    queue.drainTo(batch);
+                    for (Span s : batch) {
+                        if (!first) out.write(",\n");
+                        s.appendTo(out);
+                        first = false;
+                    }
+                    batch.clear();
+                }
+                out.write("\n]}\n");
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            log.error("Couldn't write the trace to " + file, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static class Span {
+        final String category;
+        final String name;
+        final long threadId;
+        final String threadName;
+        final long startNanos;
+        final long endNanos;
+        final Object[] args;
+
+        Span(String category, String name, Thread thread, long startNanos, long endNanos, Object[] args) {
+            this.category = category;
+            this.name = name;
+            this.threadId = thread.getId();
+            this.threadName = thread.getName();
+            this.startNanos = startNanos;
+            this.endNanos = endNanos;
+            this.args = args;
+        }
+
+        /**
+         * A complete event (<code>"ph":"X"</code>), times in microseconds.
+         */
+        void appendTo(Writer out) throws IOException {
+            out.write("{\"ph\":\"X\",\"pid\":1,\"tid\":");
+            out.write(String.valueOf(threadId));
+            out.write(",\"cat\":");
+            quote(out, category);
+            out.write(",\"name\":");
+            quote(out, name);
+            out.write(",\"ts\":");
+            out.write(String.valueOf(TimeUnit.NANOSECONDS.toMicros(startNanos)));
+            out.write(",\"dur\":");
+            out.write(String.valueOf(Math.max(0, TimeUnit.NANOSECONDS.toMicros(endNanos - startNanos))));
+            out.write(",\"args\":{\"thread\":");
+            quote(out, threadName);
+            for (int i = 0; i + 1 < args.length; i += 2) {
+                if (args[i + 1] == null) continue;
+                out.write(',');
+                quote(out, String.valueOf(args[i]));
+                out.write(':');
+                if (args[i + 1] instanceof Number) out.write(String.valueOf(args[i + 1]));
+                else quote(out, String.valueOf(args[i + 1]));
+            }
+            out.write("}}");
+        }
+
+        static void quote(Writer out, String value) throws IOException {
+            out.write('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"':  out.write("\\\""); break;
+                    case '\\': out.write("\\\\"); break;
+                    case '\n': out.write("\\n"); break;
+                    case '\r': out.write("\\r"); break;
+                    case '\t': out.write("\\t"); break;
+                    default:
+                        if (c < 0x20) out.write(String.format("\\u%04x", (int) c));
+                        else out.write(c);
+                }
+            }
+            out.write('"');
+        }
+    }
+}
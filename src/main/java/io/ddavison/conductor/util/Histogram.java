@@ -0,0 +1,188 @@
+package io.ddavison.conductor.util;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free, log-linear histogram of non-negative long values.
+ *
+ * Values are bucketed with 4 bits of sub-bucket precision (HDR style), which keeps the
+ * relative error of any reported percentile under ~6% while using a fixed ~8KB footprint,
+ * regardless of how many values are recorded.  Safe to record into from many threads.
+ */
+public class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * @param histograms histograms by key, shared by several threads
+     * @param key the key
+     * @return The histogram of the key, added to the map if it had none.
+     */
+    public static <K> Histogram in(ConcurrentMap<K, Histogram> histograms, K key) {
+        Histogram histogram = histograms.get(key);
+        if (histogram == null) {
+            Histogram created = new Histogram();
+            histogram = histograms.putIfAbsent(key, created);
+            if (histogram == null) histogram = created;
+        }
+        return histogram;
+    }
+
+    /**
+     * Record a value.  Negative values are recorded as 0.
+     * @param value the value to record
+     */
+    public void record(long value) {
+        record(value, 1);
+    }
+
+    /**
+     * Record the same value several times.
+     * @param value the value to record
+     * @param times how many times the value was observed
+     */
+    public void record(long value, long times) {
+        if (times <= 0) return;
+        if (value < 0) value = 0;
+
+        counts.addAndGet(indexOf(value), times);
+        count.addAndGet(times);
+        total.addAndGet(value * times);
+
+        long current;
+        while (value < (current = min.get()) && !min.compareAndSet(current, value)) { }
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) { }
+    }
+
+    /**
+     * Add every value recorded in another histogram into this one.
+     * @param other the histogram to merge in
+     */
+    public void add(Histogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long c = other.counts.get(i);
+            if (c > 0) counts.addAndGet(i, c);
+        }
+        count.addAndGet(other.count.get());
+        total.addAndGet(other.total.get());
+
+        long current;
+        long otherMin = other.min.get();
+        long otherMax = other.max.get();
+        while (otherMin < (current = min.get()) && !min.compareAndSet(current, otherMin)) { }
+        while (otherMax > (current = max.get()) && !max.compareAndSet(current, otherMax)) { }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMin() {
+        return count.get() == 0 ? 0 : min.get();
+    }
+
+    public long getMax() {
+        return count.get() == 0 ? 0 : max.get();
+    }
+
+    public double getMean() {
+        long c = count.get();
+        return c == 0 ? 0 : (double) total.get() / c;
+    }
+
+    /**
+     * Get the value at a given percentile.
+     * @param percentile between 0 and 100
+     * @return the highest value equivalent to the bucket the percentile falls in, capped at the max recorded value.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long c = count.get();
+        if (c == 0) return 0;
+
+        long rank = (long) Math.ceil(Math.min(Math.max(percentile, 0), 100) / 100.0 * c);
+        if (rank < 1) rank = 1;
+
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(highestValueIn(i), getMax());
+        }
+        return getMax();
+    }
+
+    /**
+     * Snapshot of the non-empty buckets, as <code>value:count</code> pairs separated by commas.
+     * @return the encoded histogram, readable with {@link #decode(String)}
+     */
+    public String encode() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < BUCKETS; i++) {
+            long c = counts.get(i);
+            if (c == 0) continue;
+            if (sb.length() > 0) sb.append(',');
+            sb.append(lowestValueIn(i)).append(':').append(c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Rebuild a histogram from {@link #encode()}.
+     * @param encoded the encoded histogram
+     * @return a new histogram
+     */
+    public static Histogram decode(String encoded) {
+        Histogram histogram = new Histogram();
+        if (encoded == null || encoded.trim().isEmpty()) return histogram;
+
+        for (String pair : encoded.trim().split(",")) {
+            int sep = pair.indexOf(':');
+            if (sep < 0) continue;
+            histogram.record(Long.parseLong(pair.substring(0, sep)), Long.parseLong(pair.substring(sep + 1)));
+        }
+        return histogram;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d min=%d p50=%d p90=%d p99=%d max=%d mean=%.1f",
+                getCount(),
+                getMin(),
+                getValueAtPercentile(50),
+                getValueAtPercentile(90),
+                getValueAtPercentile(99),
+                getMax(),
+                getMean());
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int sub = (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+        return (shift + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long lowestValueIn(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int shift = index / SUB_BUCKETS - 1;
+        long sub = index % SUB_BUCKETS;
+        return (SUB_BUCKETS + sub) << shift;
+    }
+
+    static long highestValueIn(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int shift = index / SUB_BUCKETS - 1;
+        long sub = index % SUB_BUCKETS;
+        long highest = ((SUB_BUCKETS + sub + 1) << shift) - 1;
+        return highest < 0 ? Long.MAX_VALUE : highest;
+    }
+}
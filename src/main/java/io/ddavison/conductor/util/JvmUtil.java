@@ -1,10 +1,16 @@
 package io.ddavison.conductor.util;
 
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
 /**
  * Created on 7/29/16.
  */
 public class JvmUtil {
 
+    private static final Logger log = LogManager.getLogger(JvmUtil.class);
+
     /**
      * Get a Jvm property / environment variable
      * @param prop the property to get
@@ -14,4 +20,21 @@ public class JvmUtil {
         return (System.getProperty(prop, System.getenv(prop)));
     }
 
+    /**
+     * Get a Jvm property / environment variable that is a number
+     * @param prop the property to get
+     * @param defaultValue the value if it's not set, or not a number
+     * @return the property value
+     */
+    public static int getJvmIntProperty(String prop, int defaultValue) {
+        String value = getJvmProperty(prop);
+        if (StringUtils.isEmpty(value)) return defaultValue;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn(String.format("Ignoring %s=%s, not a number. Using %d", prop, value, defaultValue));
+            return defaultValue;
+        }
+    }
+
 }
@@ -0,0 +1,219 @@
+package io.ddavison.conductor.visual;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares two images, tile by tile, on all available cores.<br><br>
+ * Pixels are packed ARGB ints (alpha ignored).  A pixel differs when any of its color channels is off by more
+ * than {@link #channelTolerance(int)}, and a tile differs when more than {@link #pixelTolerance(double)} of its
+ * pixels do.  As soon as one worker finds a differing tile, every worker stops; this is an assertion, not a report.
+ * <br><br>
+ * Nothing is allocated per pixel or per tile, so comparing 1080p+ screenshots only costs the arrays they're stored in.
+ */
+public class PixelDiff {
+
+    public static final int DEFAULT_TILE_SIZE = 64;
+
+    // images smaller than this are not worth handing to other threads
+    private static final int PARALLEL_THRESHOLD = 256 * 256;
+
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(THREADS, new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "conductor-pixel-diff-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private int tileSize = DEFAULT_TILE_SIZE;
+    private int channelTolerance = 0;
+    private double pixelTolerance = 0;
+    private List<Rectangle> ignored = new ArrayList<Rectangle>();
+
+    /**
+     * @param tileSize width and height of a tile, in pixels
+     * @return this
+     */
+    public PixelDiff tileSize(int tileSize) {
+        if (tileSize < 1) throw new IllegalArgumentException("Tile size must be positive");
+        this.tileSize = tileSize;
+        return this;
+    }
+
+    /**
+     * @param channelTolerance how much a color channel (0-255) may differ before the pixel is counted as different
+     * @return this
+     */
+    public PixelDiff channelTolerance(int channelTolerance) {
+        this.channelTolerance = channelTolerance;
+        return this;
+    }
+
+    /**
+     * @param pixelTolerance the ratio (0-1) of different pixels allowed within a tile
+     * @return this
+     */
+    public PixelDiff pixelTolerance(double pixelTolerance) {
+        this.pixelTolerance = pixelTolerance;
+        return this;
+    }
+
+    /**
+     * @param region a region, in image pixels, that is not compared.
+     * @return this
+     */
+    public PixelDiff ignore(Rectangle region) {
+        ignored.add(region);
+        return this;
+    }
+
+    public List<Rectangle> ignored() {
+        return Collections.unmodifiableList(ignored);
+    }
+
+    /**
+     * Compare two images of the same size.
+     * @param expected the baseline pixels, row by row
+     * @param actual the pixels to check, row by row
+     * @param width width of both images
+     * @param height height of both images
+     * @return The first differing tile found, or {@link Result#MATCH}
+     */
+    public Result compare(final int[] expected, final int[] actual, final int width, final int height) {
+        final int columns = (width + tileSize - 1) / tileSize;
+        final int tiles = columns * ((height + tileSize - 1) / tileSize);
+
+        if (width * height < PARALLEL_THRESHOLD || THREADS == 1) {
+            for (int tile = 0; tile < tiles; tile++) {
+                Result result = compareTile(expected, actual, width, height, columns, tile);
+                if (result != null) return result;
+            }
+            return Result.MATCH;
+        }
+
+        final AtomicInteger next = new AtomicInteger();
+        final Result[] found = new Result[1];
+        List<Callable<Void>> workers = new ArrayList<Callable<Void>>(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            workers.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    int tile;
+                    // tiles are handed out one at a time, so a worker never scans far past a difference found elsewhere.
+                    while ((tile = next.getAndIncrement()) < tiles) {
+                        Result result = compareTile(expected, actual, width, height, columns, tile);
+                        if (result != null) {
+                            synchronized (found) {
+                                if (found[0] == null) found[0] = result;
+                            }
+                            next.set(tiles);
+                            return null;
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+
+        try {
+            for (Future<Void> future : EXECUTOR.invokeAll(workers)) future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while comparing images", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Couldn't compare images", e.getCause());
+        }
+
+        synchronized (found) {
+            return found[0] == null ? Result.MATCH : found[0];
+        }
+    }
+
+    /**
+     * @return The result for a differing tile, or <code>null</code> if the tile matches.
+     */
+    private Result compareTile(int[] expected, int[] actual, int width, int height, int columns, int tile) {
+        int x0 = (tile % columns) * tileSize;
+        int y0 = (tile / columns) * tileSize;
+        int x1 = Math.min(x0 + tileSize, width);
+        int y1 = Math.min(y0 + tileSize, height);
+
+        int compared = 0;
+        int different = 0;
+        for (int y = y0; y < y1; y++) {
+            int row = y * width;
+            for (int x = x0; x < x1; x++) {
+                // ignored pixels don't count, even identical ones, or they would dilute the differences.
+                if (isIgnored(x, y)) continue;
+
+                int i = row + x;
+                int e = expected[i];
+                int a = actual[i];
+                compared++;
+                if (e == a) continue;
+                if (Math.abs(((e >> 16) & 0xff) - ((a >> 16) & 0xff)) > channelTolerance
+                        || Math.abs(((e >> 8) & 0xff) - ((a >> 8) & 0xff)) > channelTolerance
+                        || Math.abs((e & 0xff) - (a & 0xff)) > channelTolerance) {
+                    different++;
+                }
+            }
+        }
+
+        if (different > 0 && different > compared * pixelTolerance) {
+            return new Result(new Rectangle(x0, y0, x1 - x0, y1 - y0), different, compared);
+        }
+        return null;
+    }
+
+    private boolean isIgnored(int x, int y) {
+        for (int i = 0; i < ignored.size(); i++) {
+            if (ignored.get(i).contains(x, y)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Outcome of a comparison.
+     */
+    public static class Result {
+        public static final Result MATCH = new Result(null, 0, 0);
+
+        /**
+         * The first differing tile found, <code>null</code> when the images match.
+         */
+        public final Rectangle tile;
+        public final int differentPixels;
+        public final int comparedPixels;
+
+        Result(Rectangle tile, int differentPixels, int comparedPixels) {
+            this.tile = tile;
+            this.differentPixels = differentPixels;
+            this.comparedPixels = comparedPixels;
+        }
+
+        public boolean matches() {
+            return tile == null;
+        }
+
+        @Override
+        public String toString() {
+            if (matches()) return "images match";
+            return String.format("%d of %d pixels differ in the tile at (%d,%d) %dx%d",
+                    differentPixels, comparedPixels, tile.x, tile.y, tile.width, tile.height);
+        }
+    }
+}
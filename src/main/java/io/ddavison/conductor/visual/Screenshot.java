@@ -0,0 +1,164 @@
+package io.ddavison.conductor.visual;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * An image as packed RGB ints, row by row.<br><br>
+ * Images the reader can decode into packed ints (PNGs with 8 bits per channel, as WebDriver returns them) are decoded
+ * straight into a caller supplied array when it's large enough, so a test taking many screenshots keeps reusing the
+ * same two buffers instead of allocating ~8MB per 1080p capture.  Other images are decoded into a new image first.
+ */
+public class Screenshot {
+
+    static {
+        // decode from memory, never through a temp file
+        ImageIO.setUseCache(false);
+    }
+
+    public final int[] pixels;
+    public final int width;
+    public final int height;
+
+    public Screenshot(int[] pixels, int width, int height) {
+        this.pixels = pixels;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Decode an encoded image (PNG, as returned by WebDriver).
+     * @param encoded the image bytes
+     * @param reuse an array to decode into when it's large enough, may be <code>null</code>
+     * @return the decoded screenshot, whose pixels may be larger than <code>width * height</code>
+     * @throws IOException if the image can't be decoded
+     */
+    public static Screenshot decode(byte[] encoded, int[] reuse) throws IOException {
+        return decode(new ByteArrayInputStream(encoded), reuse, "");
+    }
+
+    /**
+     * Read an image file.
+     * @param file the image to read
+     * @param reuse an array to decode into when it's large enough, may be <code>null</code>
+     * @return the decoded screenshot
+     * @throws IOException if the image can't be read
+     */
+    public static Screenshot read(File file, int[] reuse) throws IOException {
+        if (!file.canRead()) throw new IOException("Can't read " + file);
+        return decode(file, reuse, ": " + file);
+    }
+
+    private static Screenshot decode(Object input, int[] reuse, String what) throws IOException {
+        ImageInputStream in = ImageIO.createImageInputStream(input);
+        if (in == null) throw new IOException("Can't open the image" + what);
+        try {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) throw new IOException("Unsupported image format" + what);
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int bands = packedBands(reader);
+                if (bands == 0) return from(reader.read(0), reuse);
+
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                int size = width * height;
+                int[] pixels = reuse != null && reuse.length >= size ? reuse : new int[size];
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setDestination(packed(pixels, width, height, bands == 4));
+                reader.read(0, param);
+                if (bands == 4) {
+                    for (int i = 0; i < size; i++) pixels[i] &= 0xffffff;
+                }
+                return new Screenshot(pixels, width, height);
+            } finally {
+                reader.dispose();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @return 3 or 4 if the reader can decode the image into packed RGB or ARGB ints, 0 otherwise.
+     */
+    private static int packedBands(ImageReader reader) throws IOException {
+        for (Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0); types.hasNext(); ) {
+            int type = types.next().getBufferedImageType();
+            if (type == BufferedImage.TYPE_INT_RGB) return 3;
+            if (type == BufferedImage.TYPE_INT_ARGB) return 4;
+        }
+        return 0;
+    }
+
+    /**
+     * @return An image whose pixels are the given array.
+     */
+    private static BufferedImage packed(int[] pixels, int width, int height, boolean alpha) {
+        int[] masks = alpha
+                ? new int[] { 0xff0000, 0xff00, 0xff, 0xff000000 }
+                : new int[] { 0xff0000, 0xff00, 0xff };
+        WritableRaster raster = Raster.createPackedRaster(new DataBufferInt(pixels, width * height), width, height, width, masks, null);
+        ColorModel colors = alpha ? ColorModel.getRGBdefault() : new DirectColorModel(24, 0xff0000, 0xff00, 0xff);
+        return new BufferedImage(colors, raster, false, null);
+    }
+
+    static Screenshot from(BufferedImage image, int[] reuse) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int size = width * height;
+        int[] pixels = reuse != null && reuse.length >= size ? reuse : new int[size];
+
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        boolean packed = image.getRaster().getMinX() == 0 && image.getRaster().getMinY() == 0;
+
+        if (packed && buffer instanceof DataBufferInt && (image.getType() == BufferedImage.TYPE_INT_RGB || image.getType() == BufferedImage.TYPE_INT_ARGB)) {
+            System.arraycopy(((DataBufferInt) buffer).getData(), 0, pixels, 0, size);
+        } else if (packed && buffer instanceof DataBufferByte && image.getType() == BufferedImage.TYPE_3BYTE_BGR) {
+            byte[] data = ((DataBufferByte) buffer).getData();
+            for (int i = 0, j = 0; i < size; i++, j += 3) {
+                pixels[i] = (data[j] & 0xff) | (data[j + 1] & 0xff) << 8 | (data[j + 2] & 0xff) << 16;
+            }
+        } else if (packed && buffer instanceof DataBufferByte && image.getType() == BufferedImage.TYPE_4BYTE_ABGR) {
+            byte[] data = ((DataBufferByte) buffer).getData();
+            for (int i = 0, j = 0; i < size; i++, j += 4) {
+                pixels[i] = (data[j + 1] & 0xff) | (data[j + 2] & 0xff) << 8 | (data[j + 3] & 0xff) << 16;
+            }
+        } else {
+            image.getRGB(0, 0, width, height, pixels, 0, width);
+        }
+
+        return new Screenshot(pixels, width, height);
+    }
+
+    /**
+     * Write this screenshot as a PNG, the format baselines are stored in.
+     * @param file where to write
+     * @throws IOException if the file can't be written
+     */
+    public void write(File file) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, width, height, pixels, 0, width);
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) throw new IOException("Couldn't create " + parent);
+        ImageIO.write(image, "png", file);
+    }
+}
@@ -0,0 +1,90 @@
+package io.ddavison.conductor;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openqa.selenium.Cookie;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+@Config(browser = Browser.HTMLUNIT)
+public class ApiClientTest extends Locomotive {
+
+    private static StubServer server;
+    private static String url;
+
+    @BeforeClass
+    public static void startServer() throws IOException {
+        server = StubServer.start(new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String path = exchange.getRequestURI().getPath();
+                int status = 200;
+                String body = "<html><body>app</body></html>";
+                if (path.equals("/api/login")) {
+                    exchange.getResponseHeaders().add("Set-Cookie", "session=abc; Path=/");
+                    status = 201;
+                    body = "{\"user\":\"admin\"}";
+                } else if (path.equals("/api/logout")) {
+                    exchange.getResponseHeaders().add("Set-Cookie", "session=; Path=/; Max-Age=0");
+                    body = "{}";
+                } else if (path.equals("/api/me")) {
+                    body = "{\"cookies\":\"" + exchange.getRequestHeaders().getFirst("Cookie") + "\"}";
+                } else if (path.equals("/shop/api/cart")) {
+                    body = "{\"items\":0}";
+                }
+                StubServer.respond(exchange, status, body);
+            }
+        });
+        url = server.url();
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        server.stop();
+    }
+
+    @Test
+    public void testCookiesSetByTheApiAreSetInTheBrowser() throws Exception {
+        navigateTo(url);
+        api().post("/api/login", "{\"user\":\"admin\",\"password\":\"secret\"}")
+                .validateStatus(201)
+                .validateBodyContains("admin");
+
+        assertEquals("abc", driver.manage().getCookieNamed("session").getValue());
+    }
+
+    @Test
+    public void testBrowserCookiesAreSentWithApiCalls() throws Exception {
+        navigateTo(url);
+        driver.manage().addCookie(new Cookie("theme", "dark"));
+
+        api().get("/api/me")
+                .validateSuccess()
+                .validateBodyContains("theme=dark");
+    }
+
+    @Test
+    public void testCookiesExpiredByTheApiAreDeletedFromTheBrowser() throws Exception {
+        navigateTo(url);
+        driver.manage().addCookie(new Cookie("session", "abc"));
+
+        api().post("/api/logout", null).validateSuccess();
+
+        assertNull(driver.manage().getCookieNamed("session"));
+    }
+
+    @Test
+    public void testPathsAreResolvedAgainstThePage() throws Exception {
+        navigateTo(url + "shop/checkout.html");
+
+        // rooted: the origin of the page, not the page
+        api().get("/api/me").validateSuccess().validateBodyContains("cookies");
+        // relative: next to the page
+        api().get("api/cart").validateSuccess().validateBodyContains("\"items\":0");
+    }
+}
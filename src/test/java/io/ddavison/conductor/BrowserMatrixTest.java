@@ -0,0 +1,54 @@
+package io.ddavison.conductor;
+
+import org.junit.Test;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+import org.junit.runner.notification.Failure;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class BrowserMatrixTest {
+
+    static final Set<Browser> browsers = Collections.newSetFromMap(new ConcurrentHashMap<Browser, Boolean>());
+    static CountDownLatch running;
+
+    @RunWith(BrowserMatrix.class)
+    @Config(browsers = { Browser.CHROME, Browser.FIREFOX })
+    public static class Matrix {
+        @Test
+        public void test() throws Exception {
+            browsers.add(LocomotiveConfig.forClass(Matrix.class).browser());
+            running.countDown();
+            assertTrue("The browsers didn't run concurrently", running.await(5, TimeUnit.SECONDS));
+        }
+
+        @Test
+        public void fails() {
+            fail("on purpose");
+        }
+    }
+
+    @Test
+    public void testEveryBrowserRunsTheClassConcurrently() throws Exception {
+        browsers.clear();
+        running = new CountDownLatch(2);
+
+        Result result = new JUnitCore().run(Matrix.class);
+
+        assertEquals(4, result.getRunCount());
+        assertEquals(new HashSet<Browser>(Arrays.asList(Browser.CHROME, Browser.FIREFOX)), browsers);
+
+        Set<String> failed = new HashSet<String>();
+        for (Failure failure : result.getFailures()) failed.add(failure.getDescription().getMethodName());
+        assertEquals(new HashSet<String>(Arrays.asList("fails[chrome]", "fails[firefox]")), failed);
+    }
+}
@@ -0,0 +1,168 @@
+package io.ddavison.conductor;
+
+import org.junit.Test;
+import org.openqa.selenium.WebDriverException;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class CircuitBreakerTest {
+
+    private static final String APP = CircuitBreaker.application("http://app.example.com:8080/login");
+
+    @Test
+    public void testEnvironmentsDownAtTheStartTripAtOnce() throws Exception {
+        FakeProber prober = new FakeProber("ConnectException: Connection refused");
+        CircuitBreaker breaker = new CircuitBreaker(3, 100, prober);
+
+        try {
+            breaker.check(APP, "http://app.example.com:8080/");
+            fail("Started a test against an environment that is down");
+        } catch (CircuitBreaker.OpenException x) {
+            assertTrue(x.getMessage(), x.getMessage().contains("application http://app.example.com:8080 is down"));
+            assertTrue(x.getMessage(), x.getMessage().contains("Connection refused"));
+        }
+        try {
+            breaker.check(APP, "http://app.example.com:8080/");
+            fail("Started a second test against an environment that is down");
+        } catch (CircuitBreaker.OpenException x) {
+            // probed once only
+            assertEquals(1, prober.probes.get());
+        }
+    }
+
+    @Test
+    public void testTripsAfterConsecutiveInfrastructureFailures() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(2, 60000, new FakeProber(null));
+
+        breaker.check(APP, "http://app.example.com:8080/");
+        breaker.failure(APP, new WebDriverException("unknown error: net::ERR_CONNECTION_REFUSED"));
+        breaker.success(APP);
+        breaker.failure(APP, new WebDriverException("unknown error: net::ERR_CONNECTION_REFUSED"));
+        breaker.failure(APP, new AssertionError("expected 42"));
+        breaker.check(APP, "http://app.example.com:8080/");
+
+        breaker.failure(APP, new WebDriverException(new ConnectException("Connection refused")));
+        try {
+            breaker.check(APP, "http://app.example.com:8080/");
+            fail("Started a test after 2 failures in a row");
+        } catch (CircuitBreaker.OpenException x) {
+            assertTrue(breaker.report(), breaker.report().contains("1 tests not started"));
+        }
+    }
+
+    @Test
+    public void testOneTestProbesAfterTheCooldown() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(1, 100, new FakeProber("HTTP 503"));
+        try {
+            breaker.check(APP, "http://app.example.com:8080/");
+            fail();
+        } catch (CircuitBreaker.OpenException expected) {
+        }
+        Thread.sleep(150);
+
+        breaker.check(APP, "http://app.example.com:8080/");
+        try {
+            breaker.check(APP, "http://app.example.com:8080/");
+            fail("Started a second test while probing");
+        } catch (CircuitBreaker.OpenException expected) {
+        }
+
+        breaker.success(APP);
+        breaker.check(APP, "http://app.example.com:8080/");
+        assertTrue(breaker.report(), breaker.report().contains("recovered"));
+    }
+
+    @Test
+    public void testApplicationsBehindAHubAreNotProbed() throws Exception {
+        // the test JVM can't reach the application, the nodes of the hub can.
+        FakeProber prober = new FakeProber("UnknownHostException: app.example.com");
+        CircuitBreaker breaker = new CircuitBreaker(2, 60000, prober);
+
+        breaker.checkApplication("http://app.example.com:8080/login", true);
+        breaker.checkApplication("http://app.example.com:8080/orders", true);
+        assertEquals(0, prober.probes.get());
+
+        // navigations from the nodes that fail still trip it.
+        breaker.failure(APP, new WebDriverException("unknown error: net::ERR_NAME_NOT_RESOLVED"));
+        breaker.failure(APP, new WebDriverException("unknown error: net::ERR_NAME_NOT_RESOLVED"));
+        try {
+            breaker.checkApplication("http://app.example.com:8080/login", true);
+            fail("Started a test after 2 failed navigations in a row");
+        } catch (CircuitBreaker.OpenException x) {
+            assertEquals(0, prober.probes.get());
+        }
+    }
+
+    @Test
+    public void testLocalApplicationsAreProbed() throws Exception {
+        FakeProber prober = new FakeProber("UnknownHostException: app.example.com");
+        CircuitBreaker breaker = new CircuitBreaker(3, 60000, prober);
+        try {
+            breaker.checkApplication("http://app.example.com:8080/login", false);
+            fail("Started a local test against an application that is down");
+        } catch (CircuitBreaker.OpenException x) {
+            assertEquals(1, prober.probes.get());
+        }
+    }
+
+    @Test
+    public void testProbesOnlyFindEnvironmentsDownWhenTheyCantBeReached() throws Exception {
+        ServerSocket closed = new ServerSocket(0);
+        int port = closed.getLocalPort();
+        closed.close();
+        String refused = new CircuitBreaker.HttpProber().probe("http://127.0.0.1:" + port + "/");
+        assertNotNull(refused);
+        assertTrue(refused, refused.startsWith("ConnectException"));
+
+        // the TLS handshake fails (like with a certificate the JVM doesn't trust): the browser may still get there.
+        final ServerSocket plain = new ServerSocket(0);
+        Thread answer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Socket socket = plain.accept();
+                    socket.getOutputStream().write("HTTP/1.1 400 Bad Request\r\n\r\n".getBytes("US-ASCII"));
+                    socket.close();
+                } catch (IOException e) {
+                    // the probe gave up.
+                }
+            }
+        };
+        answer.setDaemon(true);
+        answer.start();
+        try {
+            assertNull(new CircuitBreaker.HttpProber().probe("https://127.0.0.1:" + plain.getLocalPort() + "/"));
+        } finally {
+            plain.close();
+        }
+    }
+
+    @Test
+    public void testOnlyFailuresOfTheEnvironmentCount() throws Exception {
+        assertTrue(CircuitBreaker.isInfrastructure(new WebDriverException("Reached error page: about:neterror?e=connectionFailure")));
+        assertTrue(CircuitBreaker.isInfrastructure(new RuntimeException(new ConnectException("Connection refused"))));
+        assertFalse(CircuitBreaker.isInfrastructure(new WebDriverException("no such element: #total")));
+        assertFalse(CircuitBreaker.isInfrastructure(new AssertionError("expected 42")));
+    }
+
+    private static class FakeProber implements CircuitBreaker.Prober {
+        final String down;
+        final AtomicInteger probes = new AtomicInteger();
+
+        FakeProber(String down) {
+            this.down = down;
+        }
+
+        @Override
+        public String probe(String url) {
+            probes.incrementAndGet();
+            return down;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package io.ddavison.conductor;
+
+import com.google.common.base.Predicate;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.htmlunit.HtmlUnitDriver;
+import org.openqa.selenium.support.ui.ExpectedCondition;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ConditionsTest {
+
+    private static final String PAGE = "<html><head><title>conditions</title></head><body>" +
+            "<button id='enabled'>ok</button>" +
+            "<button id='disabled' disabled>no</button>" +
+            "<div style='display:none'><button id='nested'>hidden</button></div>" +
+            "<button id='invisible' style='visibility:hidden'>invisible</button>" +
+            "<a id='link' href='#'>Sign in</a>" +
+            "<div style='display:none'><a href='#'>Sign out</a></div>" +
+            "<button id='show' onclick=\"setTimeout(function () { document.getElementById('late').style.display = 'block'; }, 300)\">show</button>" +
+            "<p id='late' style='display:none'>late</p>" +
+            "</body></html>";
+
+    private static StubServer server;
+    private static WebDriver driver;
+
+    @BeforeClass
+    public static void openPage() throws IOException {
+        server = StubServer.start(new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+                StubServer.respond(exchange, 200, PAGE);
+            }
+        });
+        driver = new HtmlUnitDriver(true);
+        driver.get(server.url());
+    }
+
+    @AfterClass
+    public static void closePage() {
+        driver.quit();
+        server.stop();
+    }
+
+    @Test
+    public void testLocatorsEvaluatedInThePage() throws Exception {
+        assertArrayEquals(new String[] { "cssSelector", "#login > .button" }, Conditions.split(By.cssSelector("#login > .button")));
+        assertArrayEquals(new String[] { "id", "login" }, Conditions.split(By.id("login")));
+        assertArrayEquals(new String[] { "xpath", "//a[text()='a: b']" }, Conditions.split(By.xpath("//a[text()='a: b']")));
+    }
+
+    @Test
+    public void testOtherLocatorsFallBack() throws Exception {
+        assertNull(Conditions.split(By.linkText("Sign in")));
+        assertNull(Conditions.split(By.partialLinkText("Sign")));
+    }
+
+    @Test
+    public void testInteractableElements() throws Exception {
+        WebElement enabled = Conditions.interactable(By.id("enabled")).apply(driver);
+        assertNotNull(enabled);
+        assertEquals("ok", enabled.getText());
+        assertNotNull(Conditions.interactable(By.xpath("//button[text()='ok']")).apply(driver));
+        // not scriptable, found and checked with WebDriver calls.
+        assertNotNull(Conditions.interactable(By.linkText("Sign in")).apply(driver));
+    }
+
+    @Test
+    public void testHiddenOrDisabledElementsArentInteractable() throws Exception {
+        assertNull(Conditions.interactable(By.id("disabled")).apply(driver));
+        assertNull(Conditions.interactable(By.cssSelector("#nested")).apply(driver));
+        assertNull(Conditions.interactable(By.id("invisible")).apply(driver));
+        assertNull(Conditions.interactable(By.id("missing")).apply(driver));
+        assertNull(Conditions.interactable(By.linkText("Sign out")).apply(driver));
+    }
+
+    @Test
+    public void testAllStopsAtTheFirstConditionNotHoldingYet() throws Exception {
+        final AtomicInteger evaluated = new AtomicInteger();
+        ExpectedCondition<Boolean> all = Conditions.all(
+                Conditions.interactable(By.id("disabled")),
+                Conditions.when(new Predicate<WebDriver>() {
+                    @Override
+                    public boolean apply(WebDriver driver) {
+                        evaluated.incrementAndGet();
+                        return true;
+                    }
+                }));
+
+        assertFalse(all.apply(driver));
+        assertEquals(0, evaluated.get());
+    }
+
+    @Test
+    public void testAllHoldsOnceEveryConditionDoes() throws Exception {
+        final ExpectedCondition<Boolean> all = Conditions.all(
+                Conditions.interactable(By.id("late")),
+                Conditions.when(new Predicate<WebDriver>() {
+                    @Override
+                    public boolean apply(WebDriver driver) {
+                        return driver.getTitle().equals("conditions");
+                    }
+                }));
+
+        driver.findElement(By.id("show")).click();
+        // not yet: the element shows up a moment later.
+        assertFalse(all.apply(driver));
+
+        Boolean held = Polling.await(new Polling.Check<Boolean>() {
+            @Override
+            public Boolean poll() {
+                return all.apply(driver);
+            }
+        }, 5000, 50);
+        assertEquals(Boolean.TRUE, held);
+    }
+}
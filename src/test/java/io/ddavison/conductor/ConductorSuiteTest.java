@@ -0,0 +1,61 @@
+package io.ddavison.conductor;
+
+import org.junit.Test;
+import org.junit.runner.Description;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+public class ConductorSuiteTest {
+
+    @Config(browser = Browser.CHROME, url = "http://example.com/b")
+    static class ChromeOnB {}
+
+    @Config(browser = Browser.FIREFOX, url = "http://example.com/a")
+    static class FirefoxOnA {}
+
+    @Config(browser = Browser.CHROME, url = "http://example.com/a")
+    static class ChromeOnA {}
+
+    @Test
+    public void testGroupedBySessionThenUrl() throws Exception {
+        List<Description> descriptions = new ArrayList<Description>(Arrays.asList(
+                Description.createSuiteDescription(ChromeOnB.class),
+                Description.createSuiteDescription(FirefoxOnA.class),
+                Description.createSuiteDescription(ChromeOnA.class)));
+
+        Collections.sort(descriptions, new ConductorSuite.SessionOrder(null));
+
+        assertEquals(ChromeOnA.class, descriptions.get(0).getTestClass());
+        assertEquals(ChromeOnB.class, descriptions.get(1).getTestClass());
+        assertEquals(FirefoxOnA.class, descriptions.get(2).getTestClass());
+    }
+
+    @Test
+    public void testFailuresFirst() throws Exception {
+        File file = File.createTempFile("conductor-failures", ".properties");
+        file.deleteOnExit();
+        Properties properties = new Properties();
+        properties.setProperty("test(" + FirefoxOnA.class.getName() + ")", FirefoxOnA.class.getName());
+        OutputStream out = new FileOutputStream(file);
+        properties.store(out, null);
+        out.close();
+
+        List<Description> descriptions = new ArrayList<Description>(Arrays.asList(
+                Description.createSuiteDescription(ChromeOnA.class),
+                Description.createSuiteDescription(FirefoxOnA.class)));
+
+        Collections.sort(descriptions, new ConductorSuite.SessionOrder(new ConductorSuite.FailureHistory(file)));
+
+        assertEquals(FirefoxOnA.class, descriptions.get(0).getTestClass());
+        assertEquals(ChromeOnA.class, descriptions.get(1).getTestClass());
+    }
+}
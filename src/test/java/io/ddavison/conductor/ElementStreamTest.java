@@ -0,0 +1,111 @@
+package io.ddavison.conductor;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openqa.selenium.WebElement;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@Config(browser = Browser.HTMLUNIT)
+public class ElementStreamTest extends Locomotive {
+
+    private static StubServer server;
+    private static String url;
+
+    @BeforeClass
+    public static void startServer() throws IOException {
+        server = StubServer.start(new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String path = exchange.getRequestURI().getPath();
+                StringBuilder body = new StringBuilder("<html><body><ul id='results'>");
+                if (path.startsWith("/page/")) {
+                    // 3 pages of 10 rows
+                    int page = Integer.parseInt(path.substring(6));
+                    for (int i = 0; i < 10; i++) body.append("<li class='row'>").append((page - 1) * 10 + i).append("</li>");
+                    body.append("</ul>");
+                    if (page < 3) body.append("<a class='next' href='/page/").append(page + 1).append("'>next</a>");
+                } else {
+                    // 25 rows, and a button adding 10 more, twice
+                    for (int i = 0; i < 25; i++) body.append("<li class='row'>").append(i).append("</li>");
+                    body.append("</ul><button id='more' onclick=\"var ul = document.getElementById('results');" +
+                            " for (var i = 0; i < 10; i++) { var li = document.createElement('li'); li.className = 'row';" +
+                            " li.textContent = ul.children.length; ul.appendChild(li); }" +
+                            " if (ul.children.length >= 45) this.disabled = true;\">more</button>");
+                }
+                body.append("</body></html>");
+
+                StubServer.respond(exchange, 200, body.toString());
+            }
+        });
+        url = server.url().replaceAll("/$", "");
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        server.stop();
+    }
+
+    @Test
+    public void testEveryMatchIsIteratedInChunks() throws Exception {
+        navigateTo(url + "/list");
+
+        assertEquals(texts(25), texts(elements("li.row").chunksOf(7)));
+    }
+
+    @Test
+    public void testFirstMatch() throws Exception {
+        navigateTo(url + "/list");
+
+        assertEquals("0", elements("li.row").first().getText());
+        assertNull(elements("li.missing").first());
+    }
+
+    @Test
+    public void testNextPagesAreFollowed() throws Exception {
+        navigateTo(url + "/page/1");
+
+        assertEquals(texts(30), texts(elements("li.row").chunksOf(4).nextPage("a.next")));
+    }
+
+    @Test
+    public void testLoadMoreButtonsAddToTheList() throws Exception {
+        navigateTo(url + "/list");
+
+        assertEquals(texts(45), texts(elements("li.row").nextPage("#more")));
+    }
+
+    @Test
+    public void testScanStopsEarly() throws Exception {
+        navigateTo(url + "/page/1");
+
+        WebElement found = null;
+        for (WebElement row : elements("li.row").chunksOf(5).nextPage("a.next")) {
+            if (row.getText().equals("13")) {
+                found = row;
+                break;
+            }
+        }
+        assertNotNull(found);
+        assertTrue(driver.getCurrentUrl().endsWith("/page/2"));
+    }
+
+    private static List<String> texts(int count) {
+        List<String> texts = new ArrayList<String>();
+        for (int i = 0; i < count; i++) texts.add(String.valueOf(i));
+        return texts;
+    }
+
+    private static List<String> texts(Iterable<WebElement> elements) {
+        List<String> texts = new ArrayList<String>();
+        for (WebElement element : elements) texts.add(element.getText());
+        return texts;
+    }
+}
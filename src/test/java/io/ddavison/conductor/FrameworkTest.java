@@ -9,6 +9,7 @@
 
 package io.ddavison.conductor;
 
+import io.ddavison.conductor.timing.PageTiming;
 import org.junit.Test;
 import org.openqa.selenium.By;
 import org.openqa.selenium.support.ui.ExpectedConditions;
@@ -95,4 +96,33 @@ public class FrameworkTest extends Locomotive {
         .selectOptionByIndex(By.xpath("//*[@id='select']"), 0)
         .validateText("#select", "1");
     }
+
+    @Test
+    public void testGesture() throws Exception {
+        gesture()
+            .hoverOver("#click")
+            .click("#click")
+            .perform()
+        .validatePresent("#click.success");
+    }
+
+    @Test
+    public void testPageObjects() throws Exception {
+        GettingStartedPage page = new GettingStartedPageImpl(this);
+        page.textField()
+            .setText("test")
+            .validateText("test");
+        page.checkbox()
+            .check()
+            .uncheck();
+        page.clickBox().click();
+        validatePresent("#click.success");
+    }
+
+    @Test
+    public void testPageTiming() throws Exception {
+        refresh()
+        .validatePageLoadUnder(60000)
+        .validatePageTimingUnder(PageTiming.TIME_TO_FIRST_BYTE, 60000);
+    }
 }
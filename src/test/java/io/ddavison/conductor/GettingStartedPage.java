@@ -0,0 +1,29 @@
+/*
+ * Copyright 2014-2016 Daniel Davison (http://github.com/ddavison) and Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package io.ddavison.conductor;
+
+import io.ddavison.conductor.page.Element;
+import io.ddavison.conductor.page.Locate;
+import io.ddavison.conductor.page.Page;
+
+/**
+ * Page object of http://ddavison.io/tests/getting-started-with-selenium.htm
+ */
+@Page
+public interface GettingStartedPage {
+    @Locate(css = "#click")
+    Element clickBox();
+
+    @Locate(id = "setTextField")
+    Element textField();
+
+    @Locate(css = "#checkbox")
+    Element checkbox();
+}
@@ -0,0 +1,29 @@
+package io.ddavison.conductor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LocomotiveConfigTest {
+
+    @Config(browser = Browser.CHROME, hub = "http://grid.example.com:4444/wd/hub", browsers = { Browser.CHROME, Browser.FIREFOX })
+    static class OnGrid {}
+
+    @Test
+    public void testSmokeTierRunsInProcess() throws Exception {
+        System.setProperty(Constants.JVM_CONDUCTOR_SMOKE, "true");
+        try {
+            LocomotiveConfig config = LocomotiveConfig.forClass(OnGrid.class);
+            assertEquals(Browser.HTMLUNIT, config.browser());
+            assertEquals("", config.hub());
+            assertArrayEquals(new Browser[] { Browser.HTMLUNIT }, config.browsers());
+        } finally {
+            System.clearProperty(Constants.JVM_CONDUCTOR_SMOKE);
+        }
+
+        LocomotiveConfig config = LocomotiveConfig.forClass(OnGrid.class);
+        assertEquals(Browser.CHROME, config.browser());
+        assertEquals("http://grid.example.com:4444/wd/hub", config.hub());
+        assertArrayEquals(new Browser[] { Browser.CHROME, Browser.FIREFOX }, config.browsers());
+    }
+}
@@ -0,0 +1,86 @@
+package io.ddavison.conductor;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openqa.selenium.By;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+@Config(browser = Browser.HTMLUNIT)
+public class NetworkIdleTest extends Locomotive {
+
+    private static final String PAGE = "<html><body>" +
+            "<button id='load' onclick=\"var x = new XMLHttpRequest(); x.open('GET', '/api/slow');" +
+            " x.onload = function () { document.getElementById('total').textContent = x.responseText; }; x.send();\">load</button>" +
+            "<button id='tick' onclick=\"(function tick() { setTimeout(tick, 100); })();\">tick</button>" +
+            "<p id='total'>-</p>" +
+            "</body></html>";
+
+    private static StubServer server;
+    private static String url;
+
+    @BeforeClass
+    public static void startServer() throws IOException {
+        server = StubServer.start(new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String body = PAGE;
+                if (exchange.getRequestURI().getPath().equals("/api/slow")) {
+                    try {
+                        Thread.sleep(800);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    body = "42";
+                }
+                StubServer.respond(exchange, 200, body);
+            }
+        });
+        url = server.url();
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        server.stop();
+    }
+
+    @Test
+    public void testWaitsForRequestsInFlight() throws Exception {
+        navigateTo(url);
+        NetworkIdle.install(driver);
+        click("#load");
+
+        waitForNetworkIdle(100);
+        assertEquals("42", getText("#total"));
+    }
+
+    @Test
+    public void testClicksWaitForTheRequestsTheyStart() throws Exception {
+        System.setProperty(Constants.JVM_CONDUCTOR_WAIT_FOR_NETWORK_IDLE, "true");
+        try {
+            navigateTo(url);
+            click("#load");
+
+            // no wait of our own, the click returned once the response was in.
+            assertEquals("42", driver.findElement(By.id("total")).getText());
+        } finally {
+            System.clearProperty(Constants.JVM_CONDUCTOR_WAIT_FOR_NETWORK_IDLE);
+        }
+    }
+
+    @Test
+    public void testTimersKeepThePageBusy() throws Exception {
+        navigateTo(url);
+        NetworkIdle.install(driver);
+        click("#tick");
+
+        String pending = NetworkIdle.await(driver, 100, 1000);
+        assertNotNull(pending);
+        assertTrue(pending, pending.contains("timer 100ms"));
+    }
+}
@@ -0,0 +1,102 @@
+package io.ddavison.conductor;
+
+import org.junit.Test;
+import org.openqa.selenium.NoSuchElementException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class PollingTest {
+
+    @Test
+    public void testPollsUntilItHoldsOnTheCaller() throws Exception {
+        final Thread caller = Thread.currentThread();
+        final AtomicInteger polls = new AtomicInteger();
+        Boolean value = Polling.await(new Polling.Check<Boolean>() {
+            @Override
+            public Boolean poll() {
+                assertSame(caller, Thread.currentThread());
+                return polls.incrementAndGet() == 3;
+            }
+        }, 5000, 20);
+
+        assertEquals(Boolean.TRUE, value);
+        assertEquals(3, polls.get());
+    }
+
+    @Test
+    public void testTimesOut() throws Exception {
+        long start = System.nanoTime();
+        Object value = Polling.await(new Polling.Check<Object>() {
+            @Override
+            public Object poll() {
+                return null;
+            }
+        }, 100, 20);
+
+        assertNull(value);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    public void testNotFoundIsNotThereYet() throws Exception {
+        final AtomicInteger polls = new AtomicInteger();
+        String value = Polling.await(new Polling.Check<String>() {
+            @Override
+            public String poll() {
+                if (polls.incrementAndGet() < 2) throw new NoSuchElementException("not yet");
+                return "found";
+            }
+        }, 5000, 10);
+
+        assertEquals("found", value);
+    }
+
+    @Test
+    public void testOtherFailuresEndTheWait() throws Exception {
+        final AtomicInteger polls = new AtomicInteger();
+        try {
+            Polling.await(new Polling.Check<String>() {
+                @Override
+                public String poll() {
+                    if (polls.incrementAndGet() < 2) return null;
+                    throw new IllegalArgumentException("broken");
+                }
+            }, 5000, 10);
+            fail("The failure of the poll was swallowed");
+        } catch (IllegalArgumentException x) {
+            assertEquals(2, polls.get());
+        }
+    }
+
+    @Test
+    public void testAnInterruptEndsTheWait() throws Exception {
+        final Thread caller = Thread.currentThread();
+        Thread interrupter = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException ignored) {
+                }
+                caller.interrupt();
+            }
+        };
+        interrupter.start();
+
+        long start = System.nanoTime();
+        Object value = Polling.await(new Polling.Check<Object>() {
+            @Override
+            public Object poll() {
+                return null;
+            }
+        }, 10000, 1000);
+
+        assertNull(value);
+        assertTrue(Thread.interrupted());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        interrupter.join();
+    }
+}
@@ -0,0 +1,115 @@
+package io.ddavison.conductor;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.remote.service.DriverService;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.*;
+
+public class SessionMemoryTest {
+
+    private static final long MB = 1024 * 1024;
+
+    private File proc;
+    private SessionMemory memory;
+
+    @Before
+    public void setUp() throws Exception {
+        proc = Files.createTempDirectory("conductor-proc").toFile();
+        write("net/tcp",
+                "  sl  local_address rem_address   st tx_queue rx_queue tr tm->when retrnsmt   uid  timeout inode",
+                "   0: 0100007F:2328 00000000:0000 0A 00000000:00000000 00:00000000 00000000  1000        0 4242 1 0000000000000000 100 0 0 10 0",
+                "   1: 0100007F:2328 0100007F:D431 01 00000000:00000000 00:00000000 00000000  1000        0 4343 1 0000000000000000 20 4 30 10 -1");
+        process(100, 1, "chromedriver", 10 * 1024);
+        process(101, 100, "chrome (main)", 100 * 1024);
+        process(102, 101, "chrome", 50 * 1024);
+        process(200, 1, "java", 900 * 1024);
+        new File(proc, "100/fd").mkdirs();
+        Files.createSymbolicLink(new File(proc, "100/fd/7").toPath(), Paths.get("socket:[4242]"));
+
+        memory = new SessionMemory(proc, 1024 * MB, 64 * MB);
+    }
+
+    @Test
+    public void testResidentMemoryOfTheDriverAndEverythingItStarted() throws Exception {
+        assertEquals(100, memory.listeningPid(9000));
+        assertEquals(160 * MB, memory.treeRss(new FakeService(9000)));
+    }
+
+    @Test
+    public void testUnknownPortsHaveNoMemory() throws Exception {
+        assertEquals(-1, memory.listeningPid(9001));
+        assertEquals(-1, memory.treeRss(new FakeService(9001)));
+    }
+
+    @Test
+    public void testTheDriverProcessIsFoundOnce() throws Exception {
+        FakeService service = new FakeService(9000);
+        assertEquals(160 * MB, memory.treeRss(service));
+
+        // not looked up again: the fds aren't read, the tree is.
+        Files.delete(new File(proc, "100/fd/7").toPath());
+        process(103, 101, "chrome", 40 * 1024);
+        assertEquals(200 * MB, memory.treeRss(service));
+
+        // another service looks its process up.
+        assertEquals(-1, memory.treeRss(new FakeService(9000)));
+    }
+
+    @Test
+    public void testBloatedSessionsAreRecycled() throws Exception {
+        assertNotNull(memory.recycleReason(new SessionMemory.Sample(1100 * MB, -1), null));
+        assertNull(memory.recycleReason(new SessionMemory.Sample(900 * MB, -1), null));
+    }
+
+    @Test
+    public void testSessionsWhoseHeapGrewAreRecycled() throws Exception {
+        SessionMemory.Sample before = new SessionMemory.Sample(-1, 40 * MB);
+
+        assertNull(memory.recycleReason(new SessionMemory.Sample(-1, 90 * MB), before));
+        assertNotNull(memory.recycleReason(new SessionMemory.Sample(-1, 120 * MB), before));
+        // no growth to compare with on a new session.
+        assertNull(memory.recycleReason(new SessionMemory.Sample(-1, 120 * MB), null));
+    }
+
+    private static class FakeService extends DriverService {
+        private final int port;
+
+        FakeService(int port) throws IOException {
+            super(new File("fake-driver"), port, ImmutableList.<String>of(), ImmutableMap.<String, String>of());
+            this.port = port;
+        }
+
+        @Override
+        public URL getUrl() {
+            try {
+                return new URL("http://localhost:" + port);
+            } catch (MalformedURLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private void process(int pid, int ppid, String name, long rssKb) throws IOException {
+        write(pid + "/stat", pid + " (" + name + ") S " + ppid + " " + pid + " " + pid + " 0 -1 4194304");
+        write(pid + "/status", "Name:\t" + name, "VmPeak:\t  " + (rssKb * 2) + " kB", "VmRSS:\t  " + rssKb + " kB");
+    }
+
+    private void write(String path, String... lines) throws IOException {
+        File file = new File(proc, path);
+        file.getParentFile().mkdirs();
+        StringBuilder sb = new StringBuilder();
+        for (String line : lines) sb.append(line).append('\n');
+        Files.write(file.toPath(), sb.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+}
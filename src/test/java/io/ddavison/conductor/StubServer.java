@@ -0,0 +1,64 @@
+package io.ddavison.conductor;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+
+/**
+ * A local HTTP server for the tests, which is also the url of the tests started while it runs: tests against it never
+ * navigate to the default url of <code>default.properties</code>, and run offline.<br><br>
+ * Start it in a <code>@BeforeClass</code>, before the tests are created, and stop it in the <code>@AfterClass</code>.
+ */
+public class StubServer {
+
+    private final HttpServer server;
+    private final String previousUrl;
+
+    private StubServer(HttpServer server) {
+        this.server = server;
+        this.previousUrl = System.getProperty(Constants.JVM_CONDUCTOR_URL);
+        System.setProperty(Constants.JVM_CONDUCTOR_URL, url());
+    }
+
+    /**
+     * @param handler answers every request
+     * @return The running server.
+     */
+    public static StubServer start(HttpHandler handler) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", handler);
+        server.start();
+        return new StubServer(server);
+    }
+
+    /**
+     * @return The root of the server, with a trailing slash.
+     */
+    public String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    public void stop() {
+        if (previousUrl == null) System.clearProperty(Constants.JVM_CONDUCTOR_URL);
+        else System.setProperty(Constants.JVM_CONDUCTOR_URL, previousUrl);
+        server.stop(0);
+    }
+
+    /**
+     * Answer a request with a body.
+     */
+    public static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes("UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+}
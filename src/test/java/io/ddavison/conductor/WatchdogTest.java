@@ -0,0 +1,189 @@
+package io.ddavison.conductor;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.remote.service.DriverService;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class WatchdogTest {
+
+    @Test
+    public void testAStuckCommandIsReclaimed() throws Exception {
+        Watchdog watchdog = new Watchdog(20);
+        final FakeDriver driver = new FakeDriver();
+        final FakeService service = new FakeService();
+
+        Stuck stuck = new Stuck(watchdog, driver.proxy(), service, 0, 100);
+        stuck.start();
+
+        assertTrue("The guarded thread wasn't interrupted", stuck.interrupted.await(5, TimeUnit.SECONDS));
+        waitFor(service.stopped, 1);
+        assertEquals(1, driver.quit.get());
+        assertTrue(stuck.guard.get().reclaimed().contains("command [POST /session/1/element]"));
+    }
+
+    @Test
+    public void testATestPastItsDeadlineIsReclaimed() throws Exception {
+        Watchdog watchdog = new Watchdog(20);
+        FakeDriver driver = new FakeDriver();
+
+        Watchdog.Guard guard = watchdog.guard("slow", driver.proxy(), null, 100, 0);
+        try {
+            Thread.sleep(5000);
+            fail("The test thread wasn't interrupted");
+        } catch (InterruptedException e) {
+            // the watchdog woke us up.
+        }
+
+        waitFor(driver.quit, 1);
+        assertEquals("the test exceeded its deadline", guard.reclaimed());
+    }
+
+    @Test
+    public void testTheInterruptIsClearedWhenTheReclaimedTestIsOver() throws Exception {
+        Watchdog watchdog = new Watchdog(20);
+        FakeDriver driver = new FakeDriver();
+
+        Watchdog.Guard guard = watchdog.guard("reclaimed", driver.proxy(), null, 100, 0);
+        // like a wait of the test, which keeps the interrupt for its caller.
+        assertNull(Polling.await(new Polling.Check<Boolean>() {
+            @Override
+            public Boolean poll() {
+                return false;
+            }
+        }, 5000, 10));
+        assertTrue(Thread.currentThread().isInterrupted());
+        assertNotNull(guard.reclaimed());
+
+        // what the teardown of the test does.
+        guard.close();
+        assertFalse(Thread.currentThread().isInterrupted());
+        // the next test on the thread waits normally.
+        assertEquals(Boolean.TRUE, Polling.await(new Polling.Check<Boolean>() {
+            private int polls;
+
+            @Override
+            public Boolean poll() {
+                return ++polls == 3;
+            }
+        }, 5000, 10));
+    }
+
+    @Test
+    public void testCommandsAreTrackedOnTheirThread() throws Exception {
+        FakeDriver driver = new FakeDriver();
+        Watchdog.Guard guard = Watchdog.get().guard("tracked", driver.proxy(), null);
+        try {
+            long later = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(Watchdog.DEFAULT_COMMAND_TIMEOUT + 1);
+            assertNull(guard.overdue(later));
+
+            Watchdog.commandStarted("GET /session/1/title");
+            String overdue = guard.overdue(later);
+            assertNotNull(overdue);
+            assertTrue(overdue.contains("command [GET /session/1/title]"));
+
+            Watchdog.commandFinished();
+            assertNull(guard.overdue(later));
+        } finally {
+            guard.close();
+        }
+        assertEquals(0, driver.quit.get());
+    }
+
+    @Test
+    public void testClosedGuardsArentReclaimed() throws Exception {
+        Watchdog watchdog = new Watchdog(20);
+        FakeDriver driver = new FakeDriver();
+        FakeService service = new FakeService();
+
+        Watchdog.Guard guard = watchdog.guard("done", driver.proxy(), service, 100, 100);
+        guard.commandStarted("POST /session/1/url");
+        guard.close();
+        Thread.sleep(400);
+
+        assertFalse(Thread.interrupted());
+        assertNull(guard.reclaimed());
+        assertEquals(0, driver.quit.get());
+        assertEquals(0, service.stopped.get());
+    }
+
+    private static void waitFor(AtomicInteger count, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (count.get() < expected && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        assertEquals(expected, count.get());
+    }
+
+    /**
+     * A test thread stuck in a command.
+     */
+    private static class Stuck extends Thread {
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        final AtomicReference<Watchdog.Guard> guard = new AtomicReference<Watchdog.Guard>();
+        private final Watchdog watchdog;
+        private final WebDriver driver;
+        private final DriverService service;
+        private final long testTimeoutMillis;
+        private final long commandTimeoutMillis;
+
+        Stuck(Watchdog watchdog, WebDriver driver, DriverService service, long testTimeoutMillis, long commandTimeoutMillis) {
+            this.watchdog = watchdog;
+            this.driver = driver;
+            this.service = service;
+            this.testTimeoutMillis = testTimeoutMillis;
+            this.commandTimeoutMillis = commandTimeoutMillis;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            Watchdog.Guard stuck = watchdog.guard("stuck", driver, service, testTimeoutMillis, commandTimeoutMillis);
+            guard.set(stuck);
+            stuck.commandStarted("POST /session/1/element");
+            try {
+                Thread.sleep(10000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+        }
+    }
+
+    private static class FakeDriver implements InvocationHandler {
+        final AtomicInteger quit = new AtomicInteger();
+
+        WebDriver proxy() {
+            return (WebDriver) Proxy.newProxyInstance(WebDriver.class.getClassLoader(), new Class<?>[] {WebDriver.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getName().equals("quit")) quit.incrementAndGet();
+            return null;
+        }
+    }
+
+    private static class FakeService extends DriverService {
+        final AtomicInteger stopped = new AtomicInteger();
+
+        FakeService() throws IOException {
+            super(new File("fake-driver"), 0, ImmutableList.<String>of(), ImmutableMap.<String, String>of());
+        }
+
+        @Override
+        public void stop() {
+            stopped.incrementAndGet();
+        }
+    }
+}
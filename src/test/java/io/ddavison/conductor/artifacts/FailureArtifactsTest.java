@@ -0,0 +1,79 @@
+package io.ddavison.conductor.artifacts;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import io.ddavison.conductor.Browser;
+import io.ddavison.conductor.Config;
+import io.ddavison.conductor.Locomotive;
+import io.ddavison.conductor.StubServer;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+@Config(browser = Browser.HTMLUNIT)
+public class FailureArtifactsTest extends Locomotive {
+
+    private static StubServer server;
+    private static String url;
+
+    @BeforeClass
+    public static void startServer() throws IOException {
+        server = StubServer.start(new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                StubServer.respond(exchange, 200, "<html><body><p id='total'>42</p></body></html>");
+            }
+        });
+        url = server.url() + "cart";
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        server.stop();
+    }
+
+    @Test
+    public void testFirstFailureOfATestIsWrittenInTheBackground() throws Exception {
+        File directory = Files.createTempDirectory("conductor-failures").toFile();
+        FailureArtifacts artifacts = new FailureArtifacts(directory, 1, 2);
+
+        navigateTo(url);
+        artifacts.capture(this, "validateText By.cssSelector: #total", new AssertionError("expected 43"));
+        artifacts.capture(this, "validatePresent By.cssSelector: #other", new AssertionError("second failure"));
+        artifacts.drain(10, TimeUnit.SECONDS);
+
+        File test = artifacts.directoryOf(getTestName());
+        String failure = new String(Files.readAllBytes(new File(test, "failure.txt").toPath()), StandardCharsets.UTF_8);
+        assertTrue(failure, failure.contains("validateText By.cssSelector: #total"));
+        assertTrue(failure, failure.contains(url));
+        assertTrue(failure, failure.contains("expected 43"));
+        assertFalse(failure, failure.contains("second failure"));
+
+        assertTrue(gunzip(new File(test, "page.html.gz")).contains("42"));
+    }
+
+    private static String gunzip(File file) throws IOException {
+        InputStream in = new GZIPInputStream(new FileInputStream(file));
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) out.write(buffer, 0, read);
+            return out.toString("UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+}
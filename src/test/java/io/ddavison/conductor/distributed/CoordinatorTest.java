@@ -0,0 +1,144 @@
+package io.ddavison.conductor.distributed;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class CoordinatorTest {
+
+    public static class Passing {
+        @Test
+        public void passes() throws Exception {
+            Thread.sleep(100);
+        }
+    }
+
+    public static class Slow {
+        @Test
+        public void takesAWhile() throws Exception {
+            Thread.sleep(500);
+        }
+    }
+
+    public static class Broken {
+        @Test
+        public void fails() throws Exception {
+            fail("broken on purpose");
+        }
+    }
+
+    @Test
+    public void testIdleWorkerStealsTheTail() throws Exception {
+        Map<String, Long> durations = new HashMap<String, Long>();
+        durations.put("a", 400L);
+        durations.put("b", 300L);
+        durations.put("c", 200L);
+        durations.put("d", 100L);
+
+        WorkQueue queue = new WorkQueue(Arrays.asList("d", "c", "b", "a"), durations);
+        queue.join("one");
+        assertEquals(Arrays.asList("a", "b", "c", "d"), queue.snapshot().get("one"));
+
+        queue.join("two");
+        assertEquals("a", queue.next("one"));
+        assertEquals("d", queue.next("two"));
+        assertEquals(Arrays.asList("b", "c"), queue.snapshot().get("one"));
+
+        queue.finished("one");
+        queue.finished("two");
+        assertEquals("c", queue.next("two"));
+        assertEquals("b", queue.next("two"));
+        assertNull(queue.next("one"));
+
+        queue.finished("two");
+        assertTrue(queue.isDrained());
+    }
+
+    @Test
+    public void testClassOfDeadWorkerIsRequeued() throws Exception {
+        List<String> classes = Arrays.asList(Passing.class.getName(), Slow.class.getName(), Broken.class.getName());
+        Coordinator coordinator = new Coordinator(0, classes, 1000, null).start();
+        try {
+            // takes a class and never reports back nor sends a heartbeat
+            Socket zombie = new Socket("127.0.0.1", coordinator.getPort());
+            BufferedReader in = new BufferedReader(new InputStreamReader(zombie.getInputStream(), "UTF-8"));
+            PrintWriter out = new PrintWriter(zombie.getOutputStream(), true);
+            out.print(Coordinator.HELLO + " zombie\n");
+            out.flush();
+            assertEquals(Coordinator.OK, in.readLine());
+            out.print(Coordinator.PULL + "\n");
+            out.flush();
+            String taken = in.readLine();
+            assertTrue(taken, taken.startsWith(Coordinator.RUN));
+
+            Thread first = new Thread(new Worker("127.0.0.1", coordinator.getPort(), "first"));
+            Thread second = new Thread(new Worker("127.0.0.1", coordinator.getPort(), "second"));
+            first.start();
+            second.start();
+
+            List<ClassResult> results = coordinator.await(30, TimeUnit.SECONDS);
+            first.join(5000);
+            second.join(5000);
+            zombie.close();
+
+            assertEquals(3, results.size());
+            for (ClassResult result : results) {
+                assertFalse(result.worker.startsWith("zombie"));
+                assertEquals(1, result.runCount);
+                if (result.testClass.equals(Broken.class.getName())) {
+                    assertFalse(result.wasSuccessful());
+                    assertTrue(result.failures.get(0).contains("broken on purpose"));
+                } else {
+                    assertTrue(result.toString(), result.wasSuccessful());
+                }
+            }
+        } finally {
+            coordinator.stop();
+        }
+    }
+
+    @Test
+    public void testAWorkerSendingAMalformedResultIsDropped() throws Exception {
+        Coordinator coordinator = new Coordinator(0, Arrays.asList(Passing.class.getName()), 10000, null).start();
+        try {
+            Socket garbled = new Socket("127.0.0.1", coordinator.getPort());
+            BufferedReader in = new BufferedReader(new InputStreamReader(garbled.getInputStream(), "UTF-8"));
+            PrintWriter out = new PrintWriter(garbled.getOutputStream(), true);
+            out.print(Coordinator.HELLO + " garbled\n");
+            out.flush();
+            assertEquals(Coordinator.OK, in.readLine());
+            out.print(Coordinator.PULL + "\n");
+            out.flush();
+            assertEquals(Coordinator.RUN + Coordinator.SEPARATOR + Passing.class.getName(), in.readLine());
+            out.print(Coordinator.RESULT + Coordinator.SEPARATOR + Passing.class.getName() + Coordinator.SEPARATOR + "one\n");
+            out.flush();
+
+            assertNull("The coordinator should hang up", in.readLine());
+            garbled.close();
+            assertEquals(0, coordinator.getWorkers());
+            assertFalse(coordinator.isDone());
+
+            Thread worker = new Thread(new Worker("127.0.0.1", coordinator.getPort(), "sane"));
+            worker.start();
+            List<ClassResult> results = coordinator.await(30, TimeUnit.SECONDS);
+            worker.join(5000);
+
+            assertTrue(coordinator.isDone());
+            assertEquals(1, results.size());
+            assertTrue(results.get(0).worker.startsWith("sane"));
+            assertTrue(results.get(0).toString(), results.get(0).wasSuccessful());
+        } finally {
+            coordinator.stop();
+        }
+    }
+}
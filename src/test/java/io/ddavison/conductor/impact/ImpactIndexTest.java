@@ -0,0 +1,60 @@
+package io.ddavison.conductor.impact;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import io.ddavison.conductor.Browser;
+import io.ddavison.conductor.Config;
+import io.ddavison.conductor.Constants;
+import io.ddavison.conductor.Locomotive;
+import io.ddavison.conductor.StubServer;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+@Config(browser = Browser.HTMLUNIT)
+public class ImpactIndexTest extends Locomotive {
+
+    private static final String PAGE = "<html><body><p id='total'>42</p></body></html>";
+
+    private static StubServer server;
+    private static File index;
+
+    @BeforeClass
+    public static void startRecording() throws IOException {
+        index = File.createTempFile("conductor-impact", ".index");
+        index.deleteOnExit();
+        System.setProperty(Constants.JVM_CONDUCTOR_IMPACT_INDEX, index.getPath());
+
+        server = StubServer.start(new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                StubServer.respond(exchange, 200, PAGE);
+            }
+        });
+    }
+
+    @AfterClass
+    public static void stopRecording() {
+        server.stop();
+        System.clearProperty(Constants.JVM_CONDUCTOR_IMPACT_INDEX);
+    }
+
+    @Test
+    public void testLocatorsThatAreOnlyReadAreRecorded() throws Exception {
+        assertEquals("42", getText("#total"));
+
+        ImpactIndex.get().save();
+        Map<String, Set<String>> recorded = ImpactIndex.load(index);
+
+        assertTrue(recorded.get(getTestName()).contains(ImpactIndex.LOCATOR + ":By.cssSelector: #total"));
+        assertTrue(new ImpactSelector(Arrays.asList("locator:#total")).select(recorded).contains(getTestName()));
+    }
+}
@@ -0,0 +1,55 @@
+package io.ddavison.conductor.impact;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ImpactSelectorTest {
+
+    private Map<String, Set<String>> index() throws Exception {
+        File file = File.createTempFile("conductor-impact", ".index");
+        file.deleteOnExit();
+
+        ImpactIndex index = new ImpactIndex(file);
+        index.record("com.acme.CheckoutTest#pay", ImpactIndex.URL, "shop.example.com/checkout/:id");
+        index.record("com.acme.CheckoutTest#pay", ImpactIndex.LOCATOR, "By.cssSelector: #pay .button");
+        index.record("com.acme.CheckoutTest#pay", ImpactIndex.PAGE, "com.acme.pages.CheckoutPage");
+        index.record("com.acme.SearchTest#search", ImpactIndex.URL, "shop.example.com/search");
+        index.record("com.acme.SearchTest#search", ImpactIndex.LOCATOR, "By.id: query");
+        index.save();
+
+        return ImpactIndex.load(file);
+    }
+
+    @Test
+    public void testIndexRoundTrip() throws Exception {
+        Map<String, Set<String>> index = index();
+        assertEquals(2, index.size());
+        assertTrue(index.get("com.acme.CheckoutTest#pay").contains("locator:By.cssSelector: #pay .button"));
+    }
+
+    @Test
+    public void testSelection() throws Exception {
+        Map<String, Set<String>> index = index();
+
+        assertEquals(Arrays.asList("com.acme.CheckoutTest#pay"),
+                Arrays.asList(new ImpactSelector(Arrays.asList("url:*/checkout/*")).select(index).toArray()));
+        assertEquals(Arrays.asList("com.acme.CheckoutTest#pay"),
+                Arrays.asList(new ImpactSelector(Arrays.asList("locator:#pay")).select(index).toArray()));
+        assertEquals(Arrays.asList("com.acme.CheckoutTest#pay"),
+                Arrays.asList(new ImpactSelector(Arrays.asList("page:CheckoutPage")).select(index).toArray()));
+        assertEquals(Arrays.asList("com.acme.SearchTest#search"),
+                Arrays.asList(new ImpactSelector(Arrays.asList("url:/search", "page:HomePage")).select(index).toArray()));
+        assertTrue(new ImpactSelector(Arrays.asList("locator:#nothing")).select(index).isEmpty());
+    }
+
+    @Test
+    public void testUnknownTestsAreImpacted() throws Exception {
+        assertTrue(new ImpactSelector(Arrays.asList("locator:#nothing")).isImpacted(null));
+    }
+}
@@ -0,0 +1,68 @@
+package io.ddavison.conductor.load;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import io.ddavison.conductor.Browser;
+import io.ddavison.conductor.Locomotive;
+import io.ddavison.conductor.StubServer;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class LoadRunnerTest {
+
+    private static final String PAGE = "<html><body>" +
+            "<button id='go' onclick=\"document.body.insertAdjacentHTML('beforeend', '<p id=done>done</p>')\">Go</button>" +
+            "</body></html>";
+
+    private static StubServer server;
+
+    public static class Flow extends Locomotive {
+        @Test
+        public void browse() throws Exception {
+            navigateTo(server.url())
+            .click("#go")
+            .validatePresent("#done");
+        }
+    }
+
+    @BeforeClass
+    public static void startServer() throws IOException {
+        // also the url every virtual user starts on.
+        server = StubServer.start(new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+                StubServer.respond(exchange, 200, PAGE);
+            }
+        });
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        server.stop();
+    }
+
+    @Test
+    public void testActionsAndTransactionsAreRecorded() throws Exception {
+        LoadReport report = LoadRunner.of(Flow.class)
+                .users(2)
+                .rampUp(200, TimeUnit.MILLISECONDS)
+                .thinkTime(10, 50, TimeUnit.MILLISECONDS)
+                .iterations(2)
+                .browser(Browser.HTMLUNIT)
+                .run();
+
+        assertEquals(4, report.getIterations());
+        assertEquals(4, report.getTransactions().get("browse").getCount());
+        assertEquals(0, report.getErrors("browse"));
+        assertEquals(4, report.getActions().get("navigateTo").getCount());
+        assertEquals(4, report.getActions().get("click").getCount());
+        assertEquals(4, report.getActions().get("validatePresent").getCount());
+    }
+}
@@ -0,0 +1,153 @@
+package io.ddavison.conductor.page;
+
+import org.junit.Test;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the processor on page interfaces compiled in memory, no browser involved.
+ */
+public class PageProcessorTest {
+
+    @Test
+    public void testGeneratesThePageObject() throws Exception {
+        Compilation compilation = process("com.acme.LoginPage",
+                "package com.acme;\n" +
+                "import io.ddavison.conductor.page.*;\n" +
+                "@Page public interface LoginPage {\n" +
+                "    @Locate(css = \"#user [name=\\\"login\\\"]\") Element userName();\n" +
+                "    @Locate(id = \"submit\") Element submit();\n" +
+                "}\n");
+
+        assertTrue(compilation.errors(), compilation.succeeded);
+        String generated = compilation.generated("com/acme/LoginPageImpl.java");
+        assertTrue(generated.contains("public final class LoginPageImpl implements com.acme.LoginPage {"));
+        assertTrue(generated.contains("private static final org.openqa.selenium.By USER_NAME = "
+                + "org.openqa.selenium.By.cssSelector(\"#user [name=\\\"login\\\"]\");"));
+        assertTrue(generated.contains("private static final org.openqa.selenium.By SUBMIT = org.openqa.selenium.By.id(\"submit\");"));
+        assertTrue(generated.contains("locomotive.onPage(com.acme.LoginPage.class);"));
+        assertTrue(generated.contains("submit = new io.ddavison.conductor.page.Element(locomotive, SUBMIT);"));
+    }
+
+    @Test
+    public void testRejectsMethodsWithoutALocator() throws Exception {
+        Compilation compilation = process("com.acme.CartPage",
+                "package com.acme;\n" +
+                "import io.ddavison.conductor.page.*;\n" +
+                "@Page public interface CartPage {\n" +
+                "    @Locate(css = \"#pay\") Element pay();\n" +
+                "    Element total();\n" +
+                "}\n");
+
+        assertFalse(compilation.succeeded);
+        assertTrue(compilation.errors(), compilation.errors().contains("Every method of a @Page must be annotated with @Locate"));
+        assertNull(compilation.generated("com/acme/CartPageImpl.java"));
+    }
+
+    @Test
+    public void testRejectsSeveralStrategies() throws Exception {
+        Compilation compilation = process("com.acme.SearchPage",
+                "package com.acme;\n" +
+                "import io.ddavison.conductor.page.*;\n" +
+                "@Page public interface SearchPage {\n" +
+                "    @Locate(css = \"#query\", id = \"query\") Element query();\n" +
+                "}\n");
+
+        assertFalse(compilation.succeeded);
+        assertTrue(compilation.errors(), compilation.errors().contains("@Locate needs exactly one of"));
+    }
+
+    @Test
+    public void testRejectsNamesClashingInThePageObject() throws Exception {
+        Compilation compilation = process("com.acme.FormPage",
+                "package com.acme;\n" +
+                "import io.ddavison.conductor.page.*;\n" +
+                "@Page public interface FormPage {\n" +
+                "    @Locate(id = \"box\") Element clickBox();\n" +
+                "    @Locate(id = \"other-box\") Element click_box();\n" +
+                "    @Locate(id = \"ok\") Element OK();\n" +
+                "    @Locate(id = \"home\") Element locomotive();\n" +
+                "}\n");
+
+        assertFalse(compilation.succeeded);
+        String errors = compilation.errors();
+        assertTrue(errors, errors.contains("The constant CLICK_BOX generated for click_box() clashes with that of clickBox()"));
+        assertTrue(errors, errors.contains("The constant OK generated for OK() clashes with its own field"));
+        assertTrue(errors, errors.contains("A @Page can't have a method named locomotive"));
+        assertNull(compilation.generated("com/acme/FormPageImpl.java"));
+    }
+
+    @Test
+    public void testLiteral() throws Exception {
+        assertEquals("\"a\\\"b\\\\c\\n\\u00e9\"", PageProcessor.literal("a\"b\\c\n\u00e9"));
+    }
+
+    private static Compilation process(String className, String source) throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        File generated = Files.createTempDirectory("conductor-pages").toFile();
+        // the conductor classes, wherever the test runner put them on the class path.
+        String classPath = new File(Element.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+        JavaCompiler.CompilationTask task = compiler.getTask(null, null, diagnostics,
+                Arrays.asList("-proc:only", "-s", generated.getPath(), "-classpath", classPath), null,
+                Collections.singletonList(new Source(className, source)));
+        task.setProcessors(Collections.singletonList(new PageProcessor()));
+
+        return new Compilation(task.call(), diagnostics, generated);
+    }
+
+    private static class Source extends SimpleJavaFileObject {
+        private final String code;
+
+        Source(String className, String code) {
+            super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.code = code;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return code;
+        }
+    }
+
+    private static class Compilation {
+        final boolean succeeded;
+        final DiagnosticCollector<JavaFileObject> diagnostics;
+        final File generated;
+
+        Compilation(boolean succeeded, DiagnosticCollector<JavaFileObject> diagnostics, File generated) {
+            this.succeeded = succeeded;
+            this.diagnostics = diagnostics;
+            this.generated = generated;
+        }
+
+        String errors() {
+            StringBuilder errors = new StringBuilder();
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                if (diagnostic.getKind() == Diagnostic.Kind.ERROR) errors.append(diagnostic.getMessage(null)).append('\n');
+            }
+            return errors.toString();
+        }
+
+        /**
+         * @return The generated source, <code>null</code> if it wasn't generated.
+         */
+        String generated(String path) throws Exception {
+            File file = new File(generated, path);
+            return file.isFile() ? new String(Files.readAllBytes(file.toPath()), "UTF-8") : null;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package io.ddavison.conductor.profile;
+
+import io.ddavison.conductor.Browser;
+import io.ddavison.conductor.Constants;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ProfileTemplatesTest {
+
+    private File root;
+    private FakeWarmer warmer;
+    private ProfileTemplates templates;
+
+    @Before
+    public void setUp() throws Exception {
+        root = Files.createTempDirectory("conductor-profiles").toFile();
+        warmer = new FakeWarmer();
+        templates = new ProfileTemplates(root, warmer, true);
+    }
+
+    @Test
+    public void testCacheEntriesAreSharedAndTheRestIsCopied() throws Exception {
+        ProfileTemplates.Profile profile = templates.copy(Browser.CHROME, Collections.singletonList("http://app/"));
+        File template = new File(root, "templates/chrome");
+        File copy = profile.getDirectory();
+
+        assertEquals(key(new File(template, "Default/Cache/Cache_Data/f_000001")), key(new File(copy, "Default/Cache/Cache_Data/f_000001")));
+        assertNotEquals(key(new File(template, "Default/Cache/Cache_Data/index")), key(new File(copy, "Default/Cache/Cache_Data/index")));
+        assertNotEquals(key(new File(template, "Default/Preferences")), key(new File(copy, "Default/Preferences")));
+        assertEquals("{\"homepage\":\"http://app/\"}", read(new File(copy, "Default/Preferences")));
+        assertFalse(new File(copy, "SingletonLock").exists());
+
+        profile.delete();
+        assertFalse(copy.exists());
+        assertTrue(new File(template, "Default/Cache/Cache_Data/f_000001").isFile());
+    }
+
+    @Test
+    public void testCacheEntriesAreCopiedWhereLinksCantBeProtected() throws Exception {
+        ProfileTemplates.Profile profile = new ProfileTemplates(root, warmer, false).copy(Browser.CHROME, Collections.singletonList("http://app/"));
+        File template = new File(root, "templates/chrome");
+        File copy = profile.getDirectory();
+
+        assertNotEquals(key(new File(template, "Default/Cache/Cache_Data/f_000001")), key(new File(copy, "Default/Cache/Cache_Data/f_000001")));
+        assertEquals("app.js", read(new File(copy, "Default/Cache/Cache_Data/f_000001")));
+
+        profile.delete();
+        assertFalse(copy.exists());
+    }
+
+    @Test
+    public void testLinksArentProtectedForRoot() throws Exception {
+        if ("root".equals(System.getProperty("user.name"))) assertFalse(ProfileTemplates.linksProtected(root.toPath()));
+        // the probe is cleaned up.
+        assertEquals(0, root.list().length);
+    }
+
+    @Test
+    public void testTemplatesAreWarmedUpOnceForTheSamePages() throws Exception {
+        List<String> urls = Arrays.asList("http://app/", "http://app/login");
+        templates.copy(Browser.CHROME, urls);
+        templates.copy(Browser.CHROME, urls);
+        assertEquals(1, warmer.warmed);
+
+        templates.copy(Browser.CHROME, Collections.singletonList("http://app/"));
+        assertEquals(2, warmer.warmed);
+
+        // kept across runs
+        new ProfileTemplates(root, warmer).copy(Browser.CHROME, Collections.singletonList("http://app/"));
+        assertEquals(2, warmer.warmed);
+    }
+
+    @Test
+    public void testCacheEntries() throws Exception {
+        assertTrue(ProfileTemplates.isCacheEntry(new File("Default/Cache/Cache_Data/f_000001").toPath()));
+        assertTrue(ProfileTemplates.isCacheEntry(new File("cache2/entries/0A1B2C").toPath()));
+        assertFalse(ProfileTemplates.isCacheEntry(new File("cache2/index").toPath()));
+        assertFalse(ProfileTemplates.isCacheEntry(new File("Default/Cache/Cache_Data/index-dir/the-real-index").toPath()));
+        assertFalse(ProfileTemplates.isCacheEntry(new File("Default/Cookies").toPath()));
+    }
+
+    @Test
+    public void testWarmupUrlsAreRelativeToTheTest() throws Exception {
+        assertEquals(Collections.singletonList("http://app/"), ProfileTemplates.warmupUrls("http://app/"));
+
+        System.setProperty(Constants.JVM_CONDUCTOR_WARMUP_URLS, "/, login, https://cdn.example.com/app.js");
+        try {
+            assertEquals(Arrays.asList("http://app/", "http://app/login", "https://cdn.example.com/app.js"),
+                    ProfileTemplates.warmupUrls("http://app/"));
+        } finally {
+            System.clearProperty(Constants.JVM_CONDUCTOR_WARMUP_URLS);
+        }
+    }
+
+    private static Object key(File file) throws IOException {
+        return Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes what a browser would.
+     */
+    private static class FakeWarmer implements ProfileTemplates.Warmer {
+        int warmed;
+
+        @Override
+        public void warm(Browser browser, File profile, List<String> urls) throws IOException {
+            warmed++;
+            write(new File(profile, "Default/Cache/Cache_Data/f_000001"), "app.js");
+            write(new File(profile, "Default/Cache/Cache_Data/index"), "index");
+            write(new File(profile, "Default/Preferences"), "{\"homepage\":\"" + urls.get(0) + "\"}");
+            write(new File(profile, "SingletonLock"), "");
+        }
+
+        private static void write(File file, String content) throws IOException {
+            file.getParentFile().mkdirs();
+            Path path = file.toPath();
+            Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
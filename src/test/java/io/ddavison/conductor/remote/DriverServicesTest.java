@@ -0,0 +1,147 @@
+package io.ddavison.conductor.remote;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import io.ddavison.conductor.Browser;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DriverServicesTest {
+
+    private final FakeServices launcher = new FakeServices();
+
+    @After
+    public void tearDown() {
+        for (FakeService service : launcher.started) service.stop();
+    }
+
+    @Test
+    public void testOneProcessPerBrowser() throws Exception {
+        DriverServices services = new DriverServices(launcher, 60000);
+
+        URL chrome = services.url(Browser.CHROME);
+        assertEquals(chrome, services.url(Browser.CHROME));
+        assertNotEquals(chrome, services.url(Browser.FIREFOX));
+        assertEquals(2, launcher.started.size());
+    }
+
+    @Test
+    public void testCrashedProcessesAreRestarted() throws Exception {
+        DriverServices services = new DriverServices(launcher, 60000);
+
+        URL first = services.url(Browser.CHROME);
+        launcher.started.get(0).stop();
+
+        assertNotEquals(first, services.url(Browser.CHROME));
+        assertEquals(1, services.restarts());
+    }
+
+    @Test
+    public void testHungProcessesAreRestarted() throws Exception {
+        DriverServices services = new DriverServices(launcher, 0);
+
+        URL first = services.url(Browser.CHROME);
+        assertEquals(first, services.url(Browser.CHROME));
+
+        // still running, but no longer answering.
+        launcher.started.get(0).answering = false;
+        assertNotEquals(first, services.url(Browser.CHROME));
+        assertEquals(2, launcher.started.size());
+    }
+
+    @Test
+    public void testAFailedSessionDoesntStopTheProcessOfTheOthers() throws Exception {
+        DriverServices services = new DriverServices(launcher, 60000);
+
+        // two sessions attached to the chrome process, a third one fails to open.
+        URL first = services.url(Browser.CHROME);
+        URL second = services.url(Browser.CHROME);
+        assertFalse(services.sessionFailed(Browser.CHROME));
+
+        assertTrue(launcher.started.get(0).running);
+        assertEquals(first, second);
+        assertEquals(first, services.url(Browser.CHROME));
+        assertEquals(0, services.restarts());
+        assertEquals(1, launcher.started.size());
+    }
+
+    @Test
+    public void testAFailedSessionRestartsADeadProcess() throws Exception {
+        DriverServices services = new DriverServices(launcher, 60000);
+
+        URL first = services.url(Browser.CHROME);
+        // still running, but no longer answering: only seen by a probe, not due for a minute.
+        launcher.started.get(0).answering = false;
+        assertTrue(services.sessionFailed(Browser.CHROME));
+
+        assertFalse(launcher.started.get(0).running);
+        assertNotEquals(first, services.url(Browser.CHROME));
+        assertEquals(1, services.restarts());
+    }
+
+    @Test
+    public void testOnlyBrowsersWithADriverProcessAreShared() throws Exception {
+        assertTrue(DriverServices.supports(Browser.CHROME));
+        assertFalse(DriverServices.supports(Browser.HTMLUNIT));
+        assertFalse(DriverServices.supports(Browser.SAFARI));
+    }
+
+    /**
+     * Driver processes answering <code>/status</code>.
+     */
+    private static class FakeServices implements DriverServices.Launcher {
+        final List<FakeService> started = new ArrayList<FakeService>();
+
+        @Override
+        public DriverServices.Service start(Browser browser) throws IOException {
+            FakeService service = new FakeService();
+            started.add(service);
+            return service;
+        }
+    }
+
+    private static class FakeService implements DriverServices.Service {
+        final HttpServer server;
+        final URL url;
+        volatile boolean running = true;
+        volatile boolean answering = true;
+
+        FakeService() throws IOException {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/status", new HttpHandler() {
+                @Override
+                public void handle(HttpExchange exchange) throws IOException {
+                    exchange.sendResponseHeaders(answering ? 200 : 500, -1);
+                    exchange.close();
+                }
+            });
+            server.start();
+            url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+        }
+
+        @Override
+        public URL url() {
+            return url;
+        }
+
+        @Override
+        public boolean isRunning() {
+            return running;
+        }
+
+        @Override
+        public void stop() {
+            if (running) server.stop(0);
+            running = false;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package io.ddavison.conductor.remote;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import io.ddavison.conductor.util.Histogram;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.DesiredCapabilities;
+import org.openqa.selenium.remote.DriverCommand;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import static org.junit.Assert.*;
+
+public class HubTransportTest {
+
+    private HttpServer hub;
+    private Set<Integer> clientPorts;
+    private HubTransport transport;
+
+    @Before
+    public void setUp() throws Exception {
+        clientPorts = new CopyOnWriteArraySet<Integer>();
+        hub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        hub.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                clientPorts.add(exchange.getRemoteAddress().getPort());
+                InputStream in = exchange.getRequestBody();
+                while (in.read() != -1) { }
+
+                byte[] body = "{\"sessionId\":\"8b1e\",\"status\":0,\"value\":{\"browserName\":\"chrome\"}}".getBytes("UTF-8");
+                exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        hub.start();
+        transport = new HubTransport(4, 5000, 5000, false);
+    }
+
+    @After
+    public void tearDown() {
+        transport.close();
+        hub.stop(0);
+    }
+
+    @Test
+    public void testSessionAndElementIdsAreNormalized() throws Exception {
+        assertEquals("/session/:sessionId/element/:id/click", HubTransport.normalize("/session/8b1e/element/0.51-1/click"));
+        assertEquals("/session/:sessionId/elements", HubTransport.normalize("/session/8b1e/elements"));
+        assertEquals("/session/:sessionId/element/:id/elements", HubTransport.normalize("/session/8b1e/element/0.51-1/elements"));
+        assertEquals("/session/:sessionId/element/active", HubTransport.normalize("/session/8b1e/element/active"));
+        assertEquals("/session/:sessionId", HubTransport.normalize("/session/8b1e"));
+        assertEquals("/wd/hub/session/:sessionId/url", HubTransport.normalize("/wd/hub/session/8b1e/url"));
+    }
+
+    @Test
+    public void testPathsWithoutIdsAreKept() throws Exception {
+        assertEquals("/session", HubTransport.normalize("/session"));
+        assertEquals("/status", HubTransport.normalize("/status?verbose=true"));
+        assertEquals("/", HubTransport.normalize(""));
+        assertEquals("/", HubTransport.normalize("/?a=b"));
+    }
+
+    @Test
+    public void testExecutorsShareThePooledClient() throws Exception {
+        URL url = new URL("http://127.0.0.1:" + hub.getAddress().getPort() + "/wd/hub");
+        CommandExecutor first = transport.executor(url);
+        CommandExecutor second = transport.executor(url);
+
+        first.execute(newSession());
+        second.execute(newSession());
+
+        // both commands went through the timed client, over one kept-alive connection.
+        Histogram latency = transport.latencies().get("POST /wd/hub/session");
+        assertNotNull(transport.latencies().toString(), latency);
+        assertEquals(2, latency.getCount());
+        assertEquals(1, clientPorts.size());
+    }
+
+    private static Command newSession() {
+        return new Command(null, DriverCommand.NEW_SESSION,
+                Collections.singletonMap("desiredCapabilities", new DesiredCapabilities()));
+    }
+}
@@ -0,0 +1,251 @@
+package io.ddavison.conductor.remote;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SessionRouterTest {
+
+    private static final String CHROME = "{\"desiredCapabilities\":{\"browserName\":\"chrome\"}}";
+    private static final String FIREFOX = "{\"desiredCapabilities\":{\"browserName\":\"firefox\"}}";
+
+    private FakeDrivers drivers;
+    private SessionRouter router;
+
+    @Before
+    public void setUp() throws Exception {
+        drivers = new FakeDrivers();
+        router = new SessionRouter(0, 1, 5000, 60000, drivers);
+        router.start();
+    }
+
+    @After
+    public void tearDown() {
+        router.stop();
+        drivers.stopAll();
+    }
+
+    @Test
+    public void testCommandsAreRoutedToTheDriverOfTheSession() throws Exception {
+        String session = newSession(CHROME);
+
+        assertEquals("{\"sessionId\":\"" + session + "\",\"status\":0,\"value\":\"GET /session/" + session + "/url\"}",
+                call("GET", "/session/" + session + "/url", null));
+        assertEquals(1, router.activeSessions());
+    }
+
+    @Test
+    public void testDeletedSessionsAreReusedByTheSameBrowser() throws Exception {
+        String first = newSession(CHROME);
+        call("DELETE", "/session/" + first, null);
+        String second = newSession(CHROME);
+
+        assertEquals(first, second);
+        assertEquals(1, drivers.launched.get());
+        assertEquals(1, drivers.cookiesDeleted.get());
+    }
+
+    @Test
+    public void testDeletedSessionsAreCleanedBeforeTheirReuse() throws Exception {
+        String session = newSession(CHROME);
+        drivers.commands.clear();
+        call("DELETE", "/session/" + session, null);
+
+        String path = "/session/" + session;
+        assertEquals("POST " + path + "/window {\"name\":\"popup\",\"handle\":\"popup\"}", drivers.commands.get(2));
+        assertEquals("DELETE " + path + "/window ", drivers.commands.get(3));
+        assertEquals("POST " + path + "/window {\"name\":\"main\",\"handle\":\"main\"}", drivers.commands.get(4));
+        assertTrue(drivers.commands.get(6).startsWith("POST " + path + "/execute {\"script\":\"try { window.localStorage.clear();"));
+        assertEquals("DELETE " + path + "/cookie ", drivers.commands.get(7));
+        assertEquals("POST " + path + "/url {\"url\":\"about:blank\"}", drivers.commands.get(8));
+        assertEquals(session, newSession(CHROME));
+    }
+
+    @Test
+    public void testIdleSessionsMakeRoomForOtherBrowsers() throws Exception {
+        String chrome = newSession(CHROME);
+        call("DELETE", "/session/" + chrome, null);
+        String firefox = newSession(FIREFOX);
+
+        assertNotEquals(chrome, firefox);
+        assertEquals(1, drivers.stopped.get());
+        assertEquals(1, router.activeSessions());
+    }
+
+    @Test
+    public void testRequestsWaitForAFreeSlot() throws Exception {
+        final String first = newSession(CHROME);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> second = executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return newSession(FIREFOX);
+                }
+            });
+            Thread.sleep(300);
+            assertFalse("Only one session at a time", second.isDone());
+
+            call("DELETE", "/session/" + first, null);
+            assertNotEquals(first, second.get(5, TimeUnit.SECONDS));
+            // someone was waiting: the session was quit, not kept idle.
+            assertEquals(1, drivers.stopped.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testIdleSessionsAreOnlyReusedByTheSameCapabilities() throws Exception {
+        String first = newSession(CHROME);
+        call("DELETE", "/session/" + first, null);
+        String headless = newSession("{\"desiredCapabilities\":{\"browserName\":\"chrome\","
+                + "\"chromeOptions\":{\"args\":[\"headless\"]}}}");
+        call("DELETE", "/session/" + headless, null);
+        String again = newSession("{ \"desiredCapabilities\" : {\n  \"browserName\" : \"chrome\",\n"
+                + "  \"chromeOptions\" : { \"args\" : [ \"headless\" ] } } }");
+
+        assertNotEquals(first, headless);
+        assertEquals(headless, again);
+        assertEquals(2, drivers.launched.get());
+    }
+
+    @Test
+    public void testCapabilitiesIgnoreWhitespaceOutsideOfStrings() throws Exception {
+        assertEquals("{\"a\":[\"x y\",\"\\\" z \"]}",
+                SessionRouter.capabilities(" { \"a\" :\n [ \"x y\" , \"\\\" z \" ] }".getBytes("UTF-8")));
+    }
+
+    @Test
+    public void testReleasedSessionsDontKeepWaitersInLine() throws Exception {
+        // with a single slot, every release races with the request of the other browser: a session kept idle while
+        // that request waits would hold the slot until the idle timeout, and the request would time out.
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<Void>> users = new CopyOnWriteArrayList<Future<Void>>();
+            for (final String capabilities : new String[] {CHROME, FIREFOX}) {
+                users.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (int i = 0; i < 20; i++) {
+                            SessionRouterTest.this.call("DELETE", "/session/" + newSession(capabilities), null);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> user : users) user.get(30, TimeUnit.SECONDS);
+            assertTrue(router.activeSessions() <= 1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private String newSession(String capabilities) throws IOException {
+        String response = call("POST", "/session", capabilities);
+        int start = response.indexOf("\"sessionId\":\"") + "\"sessionId\":\"".length();
+        return response.substring(start, response.indexOf('"', start));
+    }
+
+    private String call(String method, String path, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(router.url() + path).openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            OutputStream out = connection.getOutputStream();
+            out.write(body.getBytes("UTF-8"));
+            out.close();
+        }
+        assertEquals(200, connection.getResponseCode());
+        return read(connection.getInputStream());
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) out.write(buffer, 0, read);
+        in.close();
+        return out.toString("UTF-8");
+    }
+
+    /**
+     * Driver processes answering every command with its method and path, with a second window open.
+     */
+    private static class FakeDrivers implements SessionRouter.Launcher {
+        final AtomicInteger launched = new AtomicInteger();
+        final AtomicInteger stopped = new AtomicInteger();
+        final AtomicInteger cookiesDeleted = new AtomicInteger();
+        final List<String> commands = new CopyOnWriteArrayList<String>();
+        final AtomicInteger ids = new AtomicInteger();
+        final List<HttpServer> servers = new CopyOnWriteArrayList<HttpServer>();
+
+        @Override
+        public SessionRouter.Driver launch(String browserName) throws IOException {
+            launched.incrementAndGet();
+            final String id = browserName + "-" + ids.incrementAndGet();
+            final HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/", new HttpHandler() {
+                @Override
+                public void handle(HttpExchange exchange) throws IOException {
+                    String command = exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath();
+                    if (command.endsWith("/cookie")) cookiesDeleted.incrementAndGet();
+                    commands.add(command + " " + read(exchange.getRequestBody()));
+                    String value = "\"" + command + "\"";
+                    if (command.endsWith("/window_handle")) value = "\"main\"";
+                    if (command.endsWith("/window_handles")) value = "[\"main\",\"popup\"]";
+                    byte[] body = String.format("{\"sessionId\":\"%s\",\"status\":0,\"value\":%s}", id, value).getBytes("UTF-8");
+                    exchange.sendResponseHeaders(200, body.length);
+                    OutputStream out = exchange.getResponseBody();
+                    out.write(body);
+                    out.close();
+                }
+            });
+            server.start();
+            servers.add(server);
+
+            return new SessionRouter.Driver() {
+                @Override
+                public URL url() {
+                    try {
+                        return new URL("http://127.0.0.1:" + server.getAddress().getPort());
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+
+                @Override
+                public void stop() {
+                    stopped.incrementAndGet();
+                    server.stop(0);
+                }
+            };
+        }
+
+        void stopAll() {
+            for (HttpServer server : servers) server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package io.ddavison.conductor.timing;
+
+import io.ddavison.conductor.util.Histogram;
+import org.junit.Test;
+import org.openqa.selenium.By;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class LocatorTimeoutsTest {
+
+    private static final String PAGE = "shop.example.com/orders/:id";
+    private static final By SLOW = By.cssSelector("#report");
+    private static final By FAST = By.cssSelector("#menu");
+
+    @Test
+    public void testWaitsAreLearnedFromTheHistory() throws Exception {
+        File file = history();
+        LocatorTimeouts timeouts = new LocatorTimeouts(file);
+        for (int i = 0; i < 10; i++) timeouts.record(PAGE, SLOW, 2048);
+        for (int i = 0; i < 10; i++) timeouts.record(PAGE, FAST, 20);
+        timeouts.record(PAGE, By.id("rare"), 20);
+        timeouts.save();
+
+        timeouts = new LocatorTimeouts(file);
+
+        LocatorTimeouts.Wait slow = timeouts.waitFor(PAGE, SLOW, 5000, 1000);
+        assertTrue(slow.isAdaptive());
+        assertEquals(6144, slow.getTimeoutMillis());
+        assertEquals(512, slow.getPollMillis());
+
+        LocatorTimeouts.Wait fast = timeouts.waitFor(PAGE, FAST, 5000, 1000);
+        assertEquals(LocatorTimeouts.MIN_TIMEOUT_MILLIS, fast.getTimeoutMillis());
+        assertEquals(LocatorTimeouts.MIN_POLL_MILLIS, fast.getPollMillis());
+
+        LocatorTimeouts.Wait rare = timeouts.waitFor(PAGE, By.id("rare"), 5000, 1000);
+        assertFalse("Not enough samples", rare.isAdaptive());
+        assertEquals(5000, rare.getTimeoutMillis());
+    }
+
+    @Test
+    public void testTimedOutWaitsWidenTheTimeout() throws Exception {
+        File file = history();
+        LocatorTimeouts timeouts = new LocatorTimeouts(file);
+        for (int i = 0; i < 10; i++) timeouts.record(PAGE, FAST, 20);
+        timeouts.save();
+
+        timeouts = new LocatorTimeouts(file);
+        assertEquals(LocatorTimeouts.MIN_TIMEOUT_MILLIS, timeouts.waitFor(PAGE, FAST, 5000, 1000).getTimeoutMillis());
+
+        // the page got slower: the rest of the run waits longer.
+        timeouts.timedOut(PAGE, FAST, LocatorTimeouts.MIN_TIMEOUT_MILLIS);
+        LocatorTimeouts.Wait widened = timeouts.waitFor(PAGE, FAST, 5000, 1000);
+        assertFalse(widened.isAdaptive());
+        assertEquals(5000, widened.getTimeoutMillis());
+        timeouts.timedOut(PAGE, FAST, 5000);
+        assertEquals(15000, timeouts.waitFor(PAGE, FAST, 5000, 1000).getTimeoutMillis());
+        timeouts.save();
+
+        // and so do the next runs, the timeouts are in the history.
+        timeouts = new LocatorTimeouts(file);
+        LocatorTimeouts.Wait learned = timeouts.waitFor(PAGE, FAST, 5000, 1000);
+        assertTrue(learned.isAdaptive());
+        // histogram buckets are coarser than the samples.
+        assertTrue(String.valueOf(learned.getTimeoutMillis()), learned.getTimeoutMillis() > 2 * 5000);
+    }
+
+    @Test
+    public void testLocatorsThatGotSlowerAreReported() throws Exception {
+        File file = history();
+        LocatorTimeouts timeouts = new LocatorTimeouts(file);
+        for (int i = 0; i < 10; i++) timeouts.record(PAGE, FAST, 20);
+        for (int i = 0; i < 10; i++) timeouts.record(PAGE, SLOW, 2048);
+        timeouts.save();
+
+        timeouts = new LocatorTimeouts(file);
+        for (int i = 0; i < 10; i++) timeouts.record(PAGE, FAST, 900);
+        for (int i = 0; i < 10; i++) timeouts.record(PAGE, SLOW, 2100);
+
+        String report = timeouts.report();
+        assertTrue(report, report.contains(LocatorTimeouts.key(PAGE, FAST)));
+        assertFalse(report, report.contains(LocatorTimeouts.key(PAGE, SLOW)));
+    }
+
+    @Test
+    public void testHalvedHistoryKeepsItsDistribution() {
+        Histogram histogram = new Histogram();
+        histogram.record(100, 900);
+        histogram.record(3072, 100);
+
+        Histogram halved = LocatorTimeouts.halve(histogram);
+
+        assertEquals(500, halved.getCount());
+        assertEquals(histogram.getValueAtPercentile(50), halved.getValueAtPercentile(50));
+        assertEquals(histogram.getValueAtPercentile(99), halved.getValueAtPercentile(99));
+    }
+
+    private static File history() throws Exception {
+        File file = File.createTempFile("conductor-locators", ".properties");
+        file.delete();
+        file.deleteOnExit();
+        return file;
+    }
+}
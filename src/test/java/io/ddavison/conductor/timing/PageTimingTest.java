@@ -0,0 +1,33 @@
+package io.ddavison.conductor.timing;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class PageTimingTest {
+    @Test
+    public void testPattern() throws Exception {
+        assertEquals("shop.example.com/orders/:id/items", PageTiming.pattern("https://shop.example.com/orders/1234/items?page=2#top"));
+        assertEquals("shop.example.com/users/:id", PageTiming.pattern("http://shop.example.com/users/3f2504e0-4f89-11d3-9a0c-0305e82c3301"));
+        assertEquals("shop.example.com/", PageTiming.pattern("http://shop.example.com/"));
+        assertEquals("localhost:8080/v2/search", PageTiming.pattern("http://localhost:8080/v2/search;jsessionid=abc"));
+    }
+
+    @Test
+    public void testAggregatedPerPattern() throws Exception {
+        PageTimings timings = new PageTimings();
+        for (int i = 1; i <= 10; i++) {
+            Map<String, Long> metrics = new HashMap<String, Long>();
+            metrics.put(PageTiming.LOAD, i * 100L);
+            timings.record(new PageTiming("https://shop.example.com/orders/" + i, i, metrics));
+        }
+
+        assertEquals(10, timings.histogram("shop.example.com/orders/:id", PageTiming.LOAD).getCount());
+        assertEquals(1000, timings.histogram("shop.example.com/orders/:id", PageTiming.LOAD).getMax());
+        assertNull(timings.histogram("shop.example.com/orders/:id", PageTiming.FIRST_PAINT));
+        assertTrue(timings.report().contains("shop.example.com/orders/:id"));
+    }
+}
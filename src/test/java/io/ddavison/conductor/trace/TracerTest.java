@@ -0,0 +1,33 @@
+package io.ddavison.conductor.trace;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class TracerTest {
+    @Test
+    public void testSpansAreWrittenAsTraceEvents() throws Exception {
+        File file = File.createTempFile("conductor-trace", ".json");
+        file.deleteOnExit();
+
+        Tracer tracer = new Tracer(file);
+        tracer.start();
+        tracer.add(new Tracer.Span(Tracer.ACTION, "click", Thread.currentThread(), 1000000, 3000000,
+                new Object[] { "target", "By.cssSelector: a[title=\"x\"]", "failure", null }));
+        tracer.add(new Tracer.Span(Tracer.COMMAND, "GET /session/:sessionId/source", Thread.currentThread(), 1500000, 2500000,
+                new Object[] { "responseBytes", 819200 }));
+        tracer.close();
+
+        String json = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        assertTrue(json, json.startsWith("{\"displayTimeUnit\":\"ms\",\"traceEvents\":["));
+        assertTrue(json, json.trim().endsWith("]}"));
+        assertTrue(json, json.contains("\"name\":\"click\",\"ts\":1000,\"dur\":2000"));
+        assertTrue(json, json.contains("\"target\":\"By.cssSelector: a[title=\\\"x\\\"]\""));
+        assertFalse(json, json.contains("\"failure\""));
+        assertTrue(json, json.contains("\"responseBytes\":819200"));
+    }
+}
@@ -0,0 +1,70 @@
+package io.ddavison.conductor.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.junit.Assert.*;
+
+public class HistogramTest {
+    @Test
+    public void testPercentiles() throws Exception {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 1000; i++) histogram.record(i);
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1, histogram.getMin());
+        assertEquals(1000, histogram.getMax());
+        assertEquals(500.5, histogram.getMean(), 0.001);
+
+        // within the precision of a bucket
+        assertTrue(Math.abs(histogram.getValueAtPercentile(50) - 500) <= 500 / 16);
+        assertTrue(Math.abs(histogram.getValueAtPercentile(99) - 990) <= 990 / 16);
+        assertEquals(1000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testSmallValuesAreExact() throws Exception {
+        Histogram histogram = new Histogram();
+        for (int i = 0; i < 16; i++) histogram.record(i);
+
+        assertEquals(7, histogram.getValueAtPercentile(50));
+        assertEquals(15, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testEncodeDecode() throws Exception {
+        Histogram histogram = new Histogram();
+        histogram.record(3);
+        histogram.record(250, 4);
+        histogram.record(1000000);
+
+        Histogram decoded = Histogram.decode(histogram.encode());
+        assertEquals(histogram.getCount(), decoded.getCount());
+        assertEquals(histogram.getValueAtPercentile(50), decoded.getValueAtPercentile(50));
+    }
+
+    @Test
+    public void testAdd() throws Exception {
+        Histogram a = new Histogram();
+        Histogram b = new Histogram();
+        a.record(10);
+        b.record(20);
+        a.add(b);
+
+        assertEquals(2, a.getCount());
+        assertEquals(10, a.getMin());
+        assertEquals(20, a.getMax());
+    }
+
+    @Test
+    public void testIn() throws Exception {
+        ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<String, Histogram>();
+        Histogram.in(histograms, "a").record(1);
+        Histogram.in(histograms, "a").record(2);
+
+        assertEquals(1, histograms.size());
+        assertEquals(2, histograms.get("a").getCount());
+    }
+}
@@ -0,0 +1,116 @@
+package io.ddavison.conductor.visual;
+
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class PixelDiffTest {
+    private static final int WIDTH = 1920;
+    private static final int HEIGHT = 1080;
+
+    @Test
+    public void testIdenticalImagesMatch() throws Exception {
+        int[] expected = image(0x336699);
+        assertTrue(new PixelDiff().compare(expected, expected.clone(), WIDTH, HEIGHT).matches());
+    }
+
+    @Test
+    public void testFindsTheDifferingTile() throws Exception {
+        int[] expected = image(0x336699);
+        int[] actual = expected.clone();
+        actual[700 * WIDTH + 1000] = 0xff0000;
+
+        PixelDiff.Result result = new PixelDiff().compare(expected, actual, WIDTH, HEIGHT);
+        assertFalse(result.matches());
+        assertTrue(result.tile.contains(1000, 700));
+        assertEquals(1, result.differentPixels);
+    }
+
+    @Test
+    public void testTolerances() throws Exception {
+        int[] expected = image(0x336699);
+        int[] actual = expected.clone();
+        actual[0] = 0x34669a; // off by one on every channel
+        actual[1] = 0xffffff;
+
+        assertFalse(new PixelDiff().channelTolerance(1).compare(expected, actual, WIDTH, HEIGHT).matches());
+        assertTrue(new PixelDiff().channelTolerance(1).pixelTolerance(0.01).compare(expected, actual, WIDTH, HEIGHT).matches());
+    }
+
+    @Test
+    public void testIgnoredRegions() throws Exception {
+        int[] expected = image(0x336699);
+        int[] actual = expected.clone();
+        for (int y = 10; y < 20; y++) Arrays.fill(actual, y * WIDTH + 10, y * WIDTH + 20, 0);
+
+        assertFalse(new PixelDiff().compare(expected, actual, WIDTH, HEIGHT).matches());
+        assertTrue(new PixelDiff().ignore(new Rectangle(10, 10, 10, 10)).compare(expected, actual, WIDTH, HEIGHT).matches());
+    }
+
+    @Test
+    public void testIgnoredPixelsDontCountTowardsTheTolerance() throws Exception {
+        int[] expected = image(0x336699);
+        int[] actual = expected.clone();
+        // 100 of the 256 pixels of the first tile that aren't ignored.
+        for (int i = 0; i < 100; i++) actual[(60 + i / 64) * WIDTH + i % 64] = 0;
+
+        PixelDiff.Result result = new PixelDiff().pixelTolerance(0.1).ignore(new Rectangle(0, 0, 64, 60))
+                .compare(expected, actual, WIDTH, HEIGHT);
+        assertFalse(result.matches());
+        assertEquals(100, result.differentPixels);
+    }
+
+    @Test
+    public void testDecodesIntoTheBufferGiven() throws Exception {
+        int[] buffer = new int[16];
+
+        Screenshot rgb = Screenshot.decode(png(BufferedImage.TYPE_INT_RGB, 0x123456), buffer);
+        assertSame(buffer, rgb.pixels);
+        assertEquals(4, rgb.width);
+        assertEquals(2, rgb.height);
+        assertEquals(0x123456, rgb.pixels[5]);
+        assertEquals(0, rgb.pixels[0]);
+
+        Screenshot argb = Screenshot.decode(png(BufferedImage.TYPE_INT_ARGB, 0x80123456), buffer);
+        assertSame(buffer, argb.pixels);
+        assertEquals(0x123456, argb.pixels[5]);
+
+        // not decodable into ints: decoded, then copied.
+        Screenshot gray = Screenshot.decode(png(BufferedImage.TYPE_BYTE_GRAY, 0xffffff), buffer);
+        assertSame(buffer, gray.pixels);
+        assertEquals(0xffffff, gray.pixels[5] & 0xffffff);
+
+        assertNotSame(buffer, Screenshot.decode(png(BufferedImage.TYPE_INT_RGB, 0x123456), new int[4]).pixels);
+    }
+
+    @Test
+    public void testDecodingReusesBuffers() throws Exception {
+        BufferedImage image = new BufferedImage(4, 2, BufferedImage.TYPE_3BYTE_BGR);
+        image.setRGB(1, 1, 0x123456);
+        int[] buffer = new int[16];
+
+        Screenshot screenshot = Screenshot.from(image, buffer);
+        assertSame(buffer, screenshot.pixels);
+        assertEquals(0x123456, screenshot.pixels[5]);
+    }
+
+    private static byte[] png(int type, int color) throws Exception {
+        BufferedImage image = new BufferedImage(4, 2, type);
+        image.setRGB(1, 1, color);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private static int[] image(int color) {
+        int[] pixels = new int[WIDTH * HEIGHT];
+        Arrays.fill(pixels, color);
+        return pixels;
+    }
+}